@@ -3,6 +3,7 @@ package nablarch.test;
 import nablarch.core.dataformat.DataRecord;
 import nablarch.core.db.statement.SqlResultSet;
 import nablarch.core.db.statement.SqlRow;
+import nablarch.core.repository.SystemRepository;
 import nablarch.core.util.ObjectUtil;
 import nablarch.core.util.StringUtil;
 import nablarch.core.util.annotation.Published;
@@ -16,9 +17,11 @@ import org.junit.ComparisonFailure;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import static nablarch.core.util.Builder.concat;
@@ -34,6 +37,9 @@ import static nablarch.core.util.Builder.concat;
 @Published
 public final class Assertion {
 
+    /** テーブルの比較を、DBのデータを1行ずつ取得しながら行うか否かを設定するリポジトリのキー */
+    static final String STREAMING_TABLE_ASSERTION_KEY = "nablarch.test.streaming-table-assertion";
+
     /**
      * 複数のTableDataの比較を行う。<br/>
      * 期待値として与えられたTableDataと、それに対応するテーブルの状態が等しいことを表明する。
@@ -77,11 +83,98 @@ public final class Assertion {
      * @param expected 期待値
      */
     public static void assertTableEquals(String message, TableData expected) {
+        if (SystemRepository.getBoolean(STREAMING_TABLE_ASSERTION_KEY)) {
+            assertTableEqualsByStreaming(message, expected);
+            return;
+        }
         TableData actual = expected.getClone();
         actual.loadData();
         assertTableEquals(message, expected, actual);
     }
 
+    /**
+     * TableDataの比較を、DBのデータを1行ずつ取得しながら行う。<br/>
+     * 期待値として与えられたTableDataと、それに対応するテーブルの状態が等しいことを表明する。
+     * <p>
+     * {@link #assertTableEquals(String, TableData)}とは異なり、テーブルの全データをメモリ上に保持しない。
+     * DBのデータを主キーの順に1行ずつ取得し、主キーが同じ期待値の行と比較する。
+     * 保持するのは、期待値と比較結果のみである。
+     * 比較に失敗した場合の通知内容は、{@link #assertTableEquals(String, TableData)}と同じである。
+     * </p>
+     * <p>
+     * コンポーネント定義に{@literal nablarch.test.streaming-table-assertion}というキーで
+     * 真偽値{@code true}が設定されていた場合、{@link #assertTableEquals(String, TableData)}も本メソッドで比較を行う。
+     * </p>
+     *
+     * @param message  比較失敗時のメッセージ
+     * @param expected 期待値
+     */
+    public static void assertTableEqualsByStreaming(final String message, final TableData expected) {
+        final String[] primaryKeys = expected.getPrimaryKeys();
+        final String[] columns = expected.getColumnNames();
+
+        // 主キーの値から、期待値の行を引けるようにする
+        final Map<List<String>, List<Integer>> expectedIndexes
+                = new HashMap<List<String>, List<Integer>>(expected.size() * 2);
+        for (int expIdx = 0; expIdx < expected.size(); expIdx++) {
+            List<String> pk = getPkValuesAsString(expected, expIdx, primaryKeys);
+            List<Integer> indexes = expectedIndexes.get(pk);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>(1);
+                expectedIndexes.put(pk, indexes);
+            }
+            indexes.add(expIdx);
+        }
+
+        // DBにあった期待値の行
+        final boolean[] expDataFound = createArray(expected.size(), false);
+        // 比較済みの主キー（同じ主キーの2行目以降は期待値にないデータとする）
+        final Set<List<String>> comparedPks = new HashSet<List<String>>();
+        // 最初に比較に失敗した期待値の行と、その失敗内容
+        final int[] firstFailedIdx = {Integer.MAX_VALUE};
+        final AssertionError[] firstFailure = new AssertionError[1];
+        // DBにあってExcelになかった最初のデータの主キー
+        final String[] firstUnexpectedPk = new String[1];
+
+        expected.loadDataByRow(new TableData.RowCallback() {
+            public void onRow(TableData actual) {
+                List<String> pk = getPkValuesAsString(actual, 0, primaryKeys);
+                List<Integer> indexes = expectedIndexes.get(pk);
+                if (indexes == null || !comparedPks.add(pk)) {
+                    if (firstUnexpectedPk[0] == null) {
+                        firstUnexpectedPk[0] = actual.getPkValues(0);
+                    }
+                    return;
+                }
+                for (int expIdx : indexes) {
+                    expDataFound[expIdx] = true;
+                    if (expIdx > firstFailedIdx[0]) {
+                        continue;   // より前の行で失敗済み
+                    }
+                    try {
+                        assertRowEquals(message, expected, expIdx, actual, 0, columns);
+                    } catch (AssertionError e) {
+                        firstFailedIdx[0] = expIdx;
+                        firstFailure[0] = e;
+                    }
+                }
+            }
+        });
+
+        // 期待値の順に、失敗を通知する
+        for (int expIdx = 0; expIdx < expected.size(); expIdx++) {
+            if (!expDataFound[expIdx]) {
+                failNoSuchRecord(message, expected, expIdx);
+            }
+            if (expIdx == firstFailedIdx[0]) {
+                throw firstFailure[0];
+            }
+        }
+        if (firstUnexpectedPk[0] != null) {
+            failUnexpectedRecord(message, expected, firstUnexpectedPk[0]);
+        }
+    }
+
     /**
      * TableDataの比較を行う。<br/>
      * 引数で与えられたtableDataが等価であることを表明する。
@@ -258,61 +351,109 @@ public final class Assertion {
         // DBにあってExcelにないデータをチェックするための配列
         boolean[] dbDataFound = createArray(actual.size(), false);
 
+        // 主キーの値から、DBのレコードを引けるようにする（同じ主キーのレコードが複数ある場合は最初のレコード）
+        Map<List<String>, Integer> actualIndexes = new HashMap<List<String>, Integer>(actual.size() * 2);
+        for (int actIdx = 0; actIdx < actual.size(); actIdx++) {
+            List<String> pk = getPkValuesAsString(actual, actIdx, primaryKeys);
+            if (!actualIndexes.containsKey(pk)) {
+                actualIndexes.put(pk, actIdx);
+            }
+        }
+
         // 主キーが同じであるレコードを探す。
         // 発見した場合は、その他のカラムが等価であるか確認する
         for (int expIdx = 0; expIdx < expected.size(); expIdx++) {
             // 主キーが同じレコードを示すインデックス
-            int samePkIdx = -1;
-
-            pkMatching:
-            for (int actIdx = 0; actIdx < actual.size(); actIdx++) {
-                // 全ての主キーがマッチするか
-                for (String primaryKey : primaryKeys) {
-                    final Object expPk = expected.getValue(expIdx, primaryKey);
-                    final Object actPk = actual.getValue(actIdx, primaryKey);
-                    final String expPkStr = expPk == null ? "null" : StringUtil.toString(expPk);
-                    final String actPkStr = actPk == null ? "null" : StringUtil.toString(actPk);
-                    if (!expPkStr.equals(actPkStr)) {
-                        continue pkMatching;    // 次のレコードへ
-                    }
-                }
-                // 全ての主キーが同じデータを発見
-                samePkIdx = actIdx;
-                // ExcelにあったDBデータの消しこみ
-                dbDataFound[samePkIdx] = true;
-                break;
-            }
+            Integer found = actualIndexes.get(getPkValuesAsString(expected, expIdx, primaryKeys));
 
             // 主キーがマッチするレコードが見つからない
-            if (samePkIdx == -1) {
-                fail(message, 
-                     " the table of [", expected.getTableName(),
-                     "] is expected to have a record whose PK is [",
-                     expected.getPkValues(expIdx),
-                     "], but there is no such record in the table.",
-                     " row number=[", expIdx + 1, "]");
+            if (found == null) {
+                failNoSuchRecord(message, expected, expIdx);
             }
+            int samePkIdx = found;
+            // ExcelにあったDBデータの消しこみ
+            dbDataFound[samePkIdx] = true;
 
             // １カラムづつ比較
-            for (String column : columns) {
-                Object expData = expected.getValue(expIdx, column);
-                Object actData = actual.getValue(samePkIdx, column);
-                String msg = concat(message, " table=", expected.getTableName(), " line=",
-                                    (expIdx + 1), " column=", column);
-                assertEqualsAsString(msg, expData, actData); // 文字列として比較
-            }
+            assertRowEquals(message, expected, expIdx, actual, samePkIdx, columns);
         }
 
         // DBにあってExcelになかったデータのチェック
         for (int i = 0; i < dbDataFound.length; i++) {
             boolean found = dbDataFound[i];
             if (!found) {
-                fail(message, " an unexpected record is included in the table of [",  actual.getTableName(), "].",
-                     " PK=[", actual.getPkValues(i), "]");
+                failUnexpectedRecord(message, actual, actual.getPkValues(i));
             }
         }
     }
 
+    /**
+     * 行の各カラムが、文字列として等価であることを表明する。
+     *
+     * @param message  比較失敗時のメッセージ
+     * @param expected 期待値
+     * @param expIdx   期待値の行番号
+     * @param actual   実際の値
+     * @param actIdx   実際の値の行番号
+     * @param columns  比較するカラム
+     */
+    private static void assertRowEquals(String message, TableData expected, int expIdx,
+                                        TableData actual, int actIdx, String[] columns) {
+        for (String column : columns) {
+            Object expData = expected.getValue(expIdx, column);
+            Object actData = actual.getValue(actIdx, column);
+            String msg = concat(message, " table=", expected.getTableName(), " line=",
+                                (expIdx + 1), " column=", column);
+            assertEqualsAsString(msg, expData, actData); // 文字列として比較
+        }
+    }
+
+    /**
+     * 期待値の行に主キーがマッチするレコードが見つからないことを通知する。
+     *
+     * @param message  比較失敗時のメッセージ
+     * @param expected 期待値
+     * @param expIdx   期待値の行番号
+     */
+    private static void failNoSuchRecord(String message, TableData expected, int expIdx) {
+        fail(message, 
+             " the table of [", expected.getTableName(),
+             "] is expected to have a record whose PK is [",
+             expected.getPkValues(expIdx),
+             "], but there is no such record in the table.",
+             " row number=[", expIdx + 1, "]");
+    }
+
+    /**
+     * 期待値にないレコードがテーブルに含まれることを通知する。
+     *
+     * @param message  比較失敗時のメッセージ
+     * @param table    テーブル
+     * @param pkValues レコードの主キー
+     */
+    private static void failUnexpectedRecord(String message, TableData table, String pkValues) {
+        fail(message, " an unexpected record is included in the table of [",  table.getTableName(), "].",
+             " PK=[", pkValues, "]");
+    }
+
+    /**
+     * 主キーの値を文字列として取得する。<br/>
+     * nullは文字列"null"とする。
+     *
+     * @param table       テーブルデータ
+     * @param rowIdx      行番号
+     * @param primaryKeys 主キーのカラム名
+     * @return 主キーの値
+     */
+    private static List<String> getPkValuesAsString(TableData table, int rowIdx, String[] primaryKeys) {
+        String[] values = new String[primaryKeys.length];
+        for (int i = 0; i < primaryKeys.length; i++) {
+            Object value = table.getValue(rowIdx, primaryKeys[i]);
+            values[i] = value == null ? "null" : StringUtil.toString(value);
+        }
+        return Arrays.asList(values);
+    }
+
     /**
      * 配列を作成する。
      *
@@ -438,10 +579,7 @@ public final class Assertion {
                 return;        // 等値であれば等価
             }
             assertNotXorNull(message, expectedOriginal, actualOriginal);
-            // 元の値を破壊しないようコピーを作成して比較
-            doAssertEqualsIgnoringOrder(new LinkedList<E>(expectedOriginal),
-                                        new LinkedList<A>(actualOriginal),
-                                        comparator);
+            doAssertEqualsIgnoringOrder(comparator);
         }
 
         /** アサートを実行する。 */
@@ -451,55 +589,92 @@ public final class Assertion {
                 public boolean isEquivalent(E expected, A actual) {
                     return expected.equals(actual);
                 }
+
+                /** {@inheritDoc} */
+                public Object getExpectedKey(E expected) {
+                    return expected;
+                }
+
+                /** {@inheritDoc} */
+                public Object getActualKey(A actual) {
+                    return actual;
+                }
             });
         }
 
         /**
-         * 要素の順序を考慮しないで、２つの連結リストが等価な要素を保持していることを表明する。<br/>
-         * 引数で与えられたリストの内容は保証されない（破壊的メソッド）。
+         * 要素の順序を考慮しないで、２つのコレクションが等価な要素を保持していることを表明する。<br/>
+         * 各要素の比較用のキーを一度だけ算出し、キーごとの出現回数を突き合わせる。
+         * 要素数に比例する時間で比較できる。
          *
-         * @param expected 期待する値
-         * @param actual   実際の値
-         * @param eq       比較ロジック
+         * @param eq 比較ロジック
          */
-        private void doAssertEqualsIgnoringOrder(LinkedList<E> expected,
-                                                 LinkedList<A> actual,
-                                                 EquivCondition<E, A> eq) {
+        private void doAssertEqualsIgnoringOrder(EquivCondition<E, A> eq) {
 
             // サイズが異なれば、順番に関係なく等価でない
-            if (expected.size() != actual.size()) {
-                failComparing(message, expected, actual);
+            if (expectedOriginal.size() != actualOriginal.size()) {
+                failComparing(message, expectedOriginal, actualOriginal);
             }
 
-            // 両方空であれば等価（最終的な終了条件、 前段でサイズチェック済みなのでexpectedのみ）
-            if (expected.isEmpty()) {
-                return;
+            // 実際の値のキーごとの出現回数
+            Map<Object, int[]> actualCounts = new HashMap<Object, int[]>(actualOriginal.size() * 2);
+            List<Object> actualKeys = new ArrayList<Object>(actualOriginal.size());
+            for (A a : actualOriginal) {
+                Object key = eq.getActualKey(a);
+                actualKeys.add(key);
+                int[] count = actualCounts.get(key);
+                if (count == null) {
+                    actualCounts.put(key, new int[] {1});
+                } else {
+                    count[0]++;
+                }
             }
 
-            // 等価な値を探索
-            for (E e : expected) {
-                for (A a : actual) {
-                    if (eq.isEquivalent(e, a)) {
-                        // 等価な値を発見したら、その要素を取り除き再帰呼び出し
-                        expected.remove(e);
-                        actual.remove(a);
-                        doAssertEqualsIgnoringOrder(expected, actual, eq);
-                        return; // 全ての要素が等価
-                    }
-                    // この時点で等価でないことが判明しているが、可能な限り比較を行う(行番号表示ができないため）。
+            // 期待値の要素と等価な値を消しこむ
+            List<E> unmatchedExpected = new ArrayList<E>();
+            Map<Object, int[]> matchedCounts = new HashMap<Object, int[]>();
+            for (E e : expectedOriginal) {
+                Object key = eq.getExpectedKey(e);
+                int[] count = actualCounts.get(key);
+                if (count == null || count[0] == 0) {
+                    unmatchedExpected.add(e);
+                    continue;
+                }
+                count[0]--;
+                int[] matched = matchedCounts.get(key);
+                if (matched == null) {
+                    matchedCounts.put(key, new int[] {1});
+                } else {
+                    matched[0]++;
+                }
+            }
+            if (unmatchedExpected.isEmpty()) {
+                return;     // 全ての要素が等価
+            }
+
+            // 等価な値が見つからなかった実際の値（先に現れた要素から消しこまれたものとする）
+            List<A> unmatchedActual = new ArrayList<A>();
+            int i = 0;
+            for (A a : actualOriginal) {
+                int[] matched = matchedCounts.get(actualKeys.get(i++));
+                if (matched != null && matched[0] > 0) {
+                    matched[0]--;
+                } else {
+                    unmatchedActual.add(a);
                 }
             }
             // 等価でなかった要素を表示する。
             failComparing(
-                    message + " different element(s) found. expected has " + expected
-                            + ", actual has " + actual + ". "
+                    message + " different element(s) found. expected has " + unmatchedExpected
+                            + ", actual has " + unmatchedActual + ". "
                     , expectedOriginal, actualOriginal);
         }   // failがあるので到達しない。
 
     }
 
     /**
-     * 等価の判定を行うインタフェース。
+     * 等価の判定を行うインタフェース。<br/>
+     * 等価な要素どうしは、等しい（{@link Object#equals(Object)}、{@link Object#hashCode()}）比較用のキーを返却すること。
      *
      * @param <E> 期待値の型
      * @param <A> 実際の値の型
@@ -512,10 +687,25 @@ public final class Assertion {
          * @return 等価である場合、真
          */
         boolean isEquivalent(E expected, A actual);
+
+        /**
+         * 期待値の比較用のキーを取得する。
+         * @param expected 期待値
+         * @return 比較用のキー
+         */
+        Object getExpectedKey(E expected);
+
+        /**
+         * 実際の値の比較用のキーを取得する。
+         * @param actual 実際の値
+         * @return 比較用のキー
+         */
+        Object getActualKey(A actual);
     }
 
     /**
-     * Mapが文字列として等価であるか判定する{@link EquivCondition}実装クラス。
+     * Mapが文字列として等価であるか判定する{@link EquivCondition}実装クラス。<br/>
+     * キーでソートしたMapの文字列表現を比較用のキーとする。
      *
      * @param <EV> 期待値のvalueの型
      * @param <AV> 実際の値のvalueの型
@@ -523,9 +713,17 @@ public final class Assertion {
     static class AsString<EV, AV> implements EquivCondition<Map<String, EV>, Map<String, AV>> {
         /** {@inheritDoc} */
         public boolean isEquivalent(Map<String, EV> expected, Map<String, AV> actual) {
-            Map<?, ?> sortedExpected = wrap(expected);
-            Map<?, ?> sortedActual = wrap(actual);
-            return sortedExpected.toString().equals(sortedActual.toString());
+            return getExpectedKey(expected).equals(getActualKey(actual));
+        }
+
+        /** {@inheritDoc} */
+        public Object getExpectedKey(Map<String, EV> expected) {
+            return wrap(expected).toString();
+        }
+
+        /** {@inheritDoc} */
+        public Object getActualKey(Map<String, AV> actual) {
+            return wrap(actual).toString();
         }
     }
 
@@ -353,7 +353,7 @@ public class TestSupport extends TestEventDispatcher {
      *
      * @return リソースルート設定
      */
-    static String getResourceRootSetting() {
+    public static String getResourceRootSetting() {
         String resourceRootSetting = SystemRepository.get(RESOURCE_ROOT_KEY);
         return (resourceRootSetting == null)
                 ? DEFAULT_RESOURCE_ROOT
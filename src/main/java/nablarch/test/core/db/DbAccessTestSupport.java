@@ -16,6 +16,7 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -168,11 +169,44 @@ public class DbAccessTestSupport extends TestEventDispatcher {
 
     /**
      * データベースにデータを投入する。<br/>
+     * <p>
+     * コンポーネント定義に{@literal nablarch.test.differential-db-setup}というキーで
+     * 真偽値{@code true}が設定されている場合、前回同じ内容を投入した後に更新されていないテーブルは、
+     * 削除、投入を省略する（更新の検知には{@link MasterDataRestorer.SqlLogWatchingFormatter}を使用する）。
+     * </p>
      *
      * @param sheetName シート名
      * @param groupId   グループID
      */
     public void setUpDb(String sheetName, String groupId) {
+        setUpDb(sheetName, groupId, FixtureStateTracker.isEnabled());
+    }
+
+    /**
+     * テストショットごとの準備データをデータベースに投入する。<br/>
+     * <p>
+     * コンポーネント定義に{@literal nablarch.test.shot-isolation}というキーで
+     * 真偽値{@code true}が設定されている場合、前のテストショットで更新されていないテーブルは、
+     * 削除、投入を省略する（更新の検知には{@link MasterDataRestorer.SqlLogWatchingFormatter}を使用する）。
+     * 準備データは最初のテストショットで一度だけ全て投入され、
+     * 以降のテストショットでは前のテストショットが変更したテーブルのみが元の状態に戻される。
+     * </p>
+     *
+     * @param sheetName シート名
+     * @param groupId   グループID
+     */
+    public void setUpDbForShot(String sheetName, String groupId) {
+        setUpDb(sheetName, groupId, FixtureStateTracker.isEnabledForShot());
+    }
+
+    /**
+     * データベースにデータを投入する。<br/>
+     *
+     * @param sheetName    シート名
+     * @param groupId      グループID
+     * @param differential 前回同じ内容を投入した後に更新されていないテーブルを省略するか否か
+     */
+    private void setUpDb(String sheetName, String groupId, final boolean differential) {
 
         // 準備データのセットアップ前に、targetクラスで使用するデータベーストランザクションを
         // 全てロールバックする。
@@ -180,25 +214,56 @@ public class DbAccessTestSupport extends TestEventDispatcher {
 
         // 複数のテーブルにデータを登録する。
         final List<TableData> allTables = testSupport.getSetupTableData(sheetName, groupId);
-
+        final List<TableData> setUpTables = new ArrayList<TableData>();
+        final Map<TableData, String> fingerprints = new HashMap<TableData, String>();
 
         new TransactionTemplateInternal(DB_TRANSACTION_FOR_TEST) {
             @Override
             protected void doInTransaction(TransactionManagerConnection conn) {
 
-                // 子テーブルから削除
-                List<TableData> orderedForDeletion = TableDataSorter.reversed(allTables, conn);
-                for (TableData tableToDelete : orderedForDeletion) {
-                    tableToDelete.deleteData(conn);
-                }
-                // 親テーブルから挿入
                 List<TableData> orderedForInsertion = TableDataSorter.sort(allTables, conn);
-                for (TableData tableToInsert : orderedForInsertion) {
-                    tableToInsert.insertData(conn);
+                if (differential) {
+                    // 前回投入した内容から変更がないテーブルは対象外とする
+                    List<String> fingerprintList = new ArrayList<String>(orderedForInsertion.size());
+                    for (TableData table : orderedForInsertion) {
+                        String fingerprint = FixtureStateTracker.createFingerprint(table);
+                        fingerprintList.add(fingerprint);
+                        fingerprints.put(table, fingerprint);
+                    }
+                    orderedForInsertion = FixtureStateTracker.getTablesToSetUp(orderedForInsertion, fingerprintList);
                 }
+                if (orderedForInsertion.isEmpty()) {
+                    return;
+                }
+                TableClearingStrategy clearingStrategy = TableClearingStrategy.forTables(orderedForInsertion);
+                clearingStrategy.beforeSetUp(conn);
+                boolean completed = false;
+                try {
+                    // 子テーブルから削除
+                    List<TableData> orderedForDeletion = new ArrayList<TableData>(orderedForInsertion);
+                    Collections.reverse(orderedForDeletion);
+                    for (TableData tableToDelete : orderedForDeletion) {
+                        tableToDelete.deleteData(conn);
+                    }
+                    // 親テーブルから挿入
+                    for (TableData tableToInsert : orderedForInsertion) {
+                        tableToInsert.insertData(conn);
+                    }
+                    completed = true;
+                } finally {
+                    clearingStrategy.afterSetUp(conn, completed);
+                }
+                setUpTables.addAll(orderedForInsertion);
             }
         }
         .execute();
+
+        if (differential) {
+            // 投入時に発行したSQLの通知を受けた後に記録する
+            for (TableData table : setUpTables) {
+                FixtureStateTracker.markClean(table.getTableName(), fingerprints.get(table));
+            }
+        }
     }
 
     /**
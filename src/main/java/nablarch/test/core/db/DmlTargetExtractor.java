@@ -0,0 +1,397 @@
+package nablarch.test.core.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * SQL文から、更新対象のテーブル名を抽出するクラス。<br/>
+ * SQL文を字句に分割し、更新系の命令（INSERT、UPDATE等）の対象となるテーブル名を、
+ * 命令ごとに抽出する。SQL文の長さに比例する時間で処理できる。
+ * <p>
+ * 厳密な構文解析は行わない。以下の方針で抽出する。
+ * <ul>
+ * <li>コメント、文字列リテラルは無視する。</li>
+ * <li>更新系の命令は文中のどこに現れても対象とする（WITH句、PL/SQLブロック、複数文を含む）。</li>
+ * <li>命令に続く修飾語（INTO、FROM、TABLE等）を読み飛ばした直後の識別子をテーブル名とする。
+ * 識別子が続かない場合（{@code THEN UPDATE SET}、{@code THEN INSERT (...)}等）は対象外とする。</li>
+ * <li>UPDATE、DELETE、TRUNCATEでは、テーブル名に続くテーブルの並び（カンマ区切り、JOIN）と、
+ * 同じ文のFROM句に現れるテーブルも対象とする
+ * （{@code UPDATE T1, T2 SET ...}、{@code DELETE t FROM TABLE1 t JOIN ...}、
+ * {@code UPDATE t SET ... FROM TABLE1 t}等、別名で更新対象を指定する構文に対応するため）。
+ * このとき、別名や参照のみのテーブルも抽出されることがある。</li>
+ * <li>{@code FOR UPDATE}、{@code ON DUPLICATE KEY UPDATE}、{@code ON DELETE}、{@code OR REPLACE}は
+ * 更新系の命令とみなさない。</li>
+ * <li>スキーマ名で修飾されたテーブル名は、スキーマ名を除いたテーブル名とする。</li>
+ * <li>{@link #addKeywords(Collection)}で追加したキーワード（ストアドプロシージャを呼び出す{@code CALL}等）は、
+ * 同じ文でキーワードに続く全ての識別子を、そのキーワードの対象とする。
+ * 呼び出し先がどのテーブルを更新するかは判定できないため、文中に名前が現れたテーブルを更新されたものとみなす。</li>
+ * </ul>
+ * </p>
+ */
+final class DmlTargetExtractor {
+
+    /** 更新系の命令 */
+    static final Set<String> VERBS = new TreeSet<String>(Arrays.asList(
+            "INSERT", "UPDATE", "DELETE", "MERGE", "TRUNCATE", "REPLACE", "UPSERT"));
+
+    /** 命令とテーブル名の間に現れる修飾語 */
+    private static final Set<String> MODIFIERS = new HashSet<String>(Arrays.asList(
+            "INTO", "FROM", "TABLE", "ONLY", "IGNORE", "LOW_PRIORITY", "DELAYED", "HIGH_PRIORITY", "QUICK"));
+
+    /** 命令の直後に現れてもテーブル名とみなさない語 */
+    private static final Set<String> NOT_TABLE = new HashSet<String>(Arrays.asList(
+            "SET", "VALUES", "VALUE", "SELECT", "WITH", "DEFAULT", "ON", "OR", "OF", "WHERE",
+            "NOWAIT", "SKIP", "WAIT", "ALL", "FIRST"));
+
+    /** テーブルの並びを伴う命令 */
+    private static final Set<String> TABLE_LIST_VERBS = new HashSet<String>(Arrays.asList(
+            "UPDATE", "DELETE", "TRUNCATE"));
+
+    /** テーブルの並びを含む句の終わりを表す語 */
+    private static final Set<String> CLAUSE_END = new HashSet<String>(Arrays.asList(
+            "WHERE", "GROUP", "HAVING", "ORDER", "LIMIT", "OPTION", "RETURNING", "OUTPUT", "UNION", "END"));
+
+    /** 直前に現れた場合に、更新系の命令とみなさない語 */
+    private static final Set<String> NOT_VERB_PREFIX = new HashSet<String>(Arrays.asList(
+            "FOR", "KEY", "ON", "OR"));
+
+    /** 識別子以外の字句（区切り文字、リテラル）を表す接頭辞 */
+    private static final char SYMBOL = '\0';
+
+    /** 追加されたキーワード（更新系の命令以外） */
+    private static volatile Set<String> additionalKeywords = Collections.emptySet();
+
+    /** インスタンス化させない。 */
+    private DmlTargetExtractor() {
+    }
+
+    /**
+     * 更新系の命令以外のキーワードを追加する。<br/>
+     * 追加したキーワードが現れた場合、同じ文でキーワードに続く全ての識別子を、そのキーワードの対象として抽出する。
+     * 更新系の命令（{@link #VERBS}）は追加する必要はない（無視する）。
+     *
+     * @param keywords キーワード
+     * @throws IllegalArgumentException キーワードが1つの識別子でない場合
+     */
+    static synchronized void addKeywords(Collection<String> keywords) throws IllegalArgumentException {
+        Set<String> added = new HashSet<String>(additionalKeywords);
+        for (String keyword : keywords) {
+            List<String> tokens = tokenize(keyword);
+            if (tokens.size() != 1 || tokens.get(0).charAt(0) == SYMBOL
+                    || !tokens.get(0).equals(keyword.trim().toUpperCase())) {
+                throw new IllegalArgumentException(
+                        "update sql keyword must be a single SQL word. keyword=[" + keyword + "]");
+            }
+            if (!VERBS.contains(tokens.get(0))) {
+                added.add(tokens.get(0));
+            }
+        }
+        additionalKeywords = Collections.unmodifiableSet(added);
+    }
+
+    /**
+     * SQL文から、更新対象のテーブル名を抽出する。
+     *
+     * @param sql SQL文
+     * @return 更新対象のテーブル名（大文字）をキー、命令（大文字）の集合を値とするMap
+     */
+    static Map<String, Set<String>> extract(String sql) {
+        Map<String, Set<String>> result = new LinkedHashMap<String, Set<String>>();
+        if (sql == null) {
+            return result;
+        }
+        List<String> tokens = tokenize(sql);
+        Set<String> keywords = additionalKeywords;
+        boolean multiTableInsert = false;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.equals(SYMBOL + ";")) {
+                multiTableInsert = false;
+                continue;
+            }
+            if (keywords.contains(token)) {
+                addFollowingIdentifiers(result, tokens, i + 1, token);
+                continue;
+            }
+            if (multiTableInsert && token.equals("INTO")) {
+                // INSERT ALL INTO T1 ... INTO T2 ...
+                add(result, getTableName(tokens, i), "INSERT");
+                continue;
+            }
+            if (!VERBS.contains(token) || (i > 0 && NOT_VERB_PREFIX.contains(tokens.get(i - 1)))) {
+                continue;
+            }
+            if (token.equals("INSERT") && i + 1 < tokens.size()
+                    && (tokens.get(i + 1).equals("ALL") || tokens.get(i + 1).equals("FIRST"))) {
+                multiTableInsert = true;
+                continue;
+            }
+            int tableIndex = skipModifiers(tokens, i + 1);
+            if (TABLE_LIST_VERBS.contains(token) && getTableName(tokens, tableIndex) != null) {
+                addTableList(result, tokens, tableIndex, token);
+            } else {
+                add(result, getTableName(tokens, tableIndex), token);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * テーブルの並びから、テーブル名を抽出結果に追加する。<br/>
+     * 開始位置、および同じ括弧の深さのカンマ、JOIN、FROMの直後の識別子をテーブル名とする。
+     * SET句の中の識別子は対象外とする。
+     * 文の終わり、WHERE等の句の終わり、開始位置を囲む括弧の終わりで抽出を終了する。
+     *
+     * @param result 抽出結果
+     * @param tokens 字句
+     * @param from   開始位置
+     * @param verb   命令
+     */
+    private static void addTableList(Map<String, Set<String>> result, List<String> tokens, int from, String verb) {
+        int depth = 0;
+        boolean inTableList = true;
+        boolean expectTable = true;
+        for (int i = from; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.equals(SYMBOL + "(")) {
+                depth++;
+                expectTable = false;
+                continue;
+            }
+            if (token.equals(SYMBOL + ")")) {
+                if (--depth < 0) {
+                    return;
+                }
+                continue;
+            }
+            if (depth > 0) {
+                continue;
+            }
+            if (token.equals(SYMBOL + ";") || CLAUSE_END.contains(token)) {
+                return;
+            }
+            if (token.equals("SET")) {
+                inTableList = false;
+                expectTable = false;
+            } else if (token.equals("FROM")) {
+                inTableList = true;
+                expectTable = true;
+            } else if (inTableList && (token.equals(SYMBOL + ",") || token.equals("JOIN"))) {
+                expectTable = true;
+            } else if (expectTable) {
+                add(result, getTableName(tokens, i), verb);
+                expectTable = false;
+            }
+        }
+    }
+
+    /**
+     * 文の終わりまでの全ての識別子を、抽出結果に追加する。
+     *
+     * @param result  抽出結果
+     * @param tokens  字句
+     * @param from    開始位置
+     * @param keyword キーワード
+     */
+    private static void addFollowingIdentifiers(
+            Map<String, Set<String>> result, List<String> tokens, int from, String keyword) {
+        for (int i = from; i < tokens.size() && !tokens.get(i).equals(SYMBOL + ";"); i++) {
+            if (tokens.get(i).charAt(0) != SYMBOL) {
+                add(result, tokens.get(i), keyword);
+            }
+        }
+    }
+
+    /**
+     * 修飾語を読み飛ばす。
+     *
+     * @param tokens 字句
+     * @param from   開始位置
+     * @return 修飾語の次の位置
+     */
+    private static int skipModifiers(List<String> tokens, int from) {
+        int i = from;
+        while (i < tokens.size() && MODIFIERS.contains(tokens.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 修飾語を読み飛ばして、テーブル名を取得する。
+     *
+     * @param tokens 字句
+     * @param from   開始位置
+     * @return テーブル名（テーブル名が現れない場合はnull）
+     */
+    private static String getTableName(List<String> tokens, int from) {
+        int i = skipModifiers(tokens, from);
+        if (i >= tokens.size()) {
+            return null;
+        }
+        String token = tokens.get(i);
+        if (token.charAt(0) == SYMBOL || NOT_TABLE.contains(token) || VERBS.contains(token)) {
+            return null;
+        }
+        return token;
+    }
+
+    /**
+     * 抽出結果に追加する。
+     *
+     * @param result    抽出結果
+     * @param tableName テーブル名（nullの場合は追加しない）
+     * @param verb      命令
+     */
+    private static void add(Map<String, Set<String>> result, String tableName, String verb) {
+        if (tableName == null) {
+            return;
+        }
+        Set<String> verbs = result.get(tableName);
+        if (verbs == null) {
+            verbs = new TreeSet<String>();
+            result.put(tableName, verbs);
+        }
+        verbs.add(verb);
+    }
+
+    /**
+     * SQL文を字句に分割する。<br/>
+     * 識別子は大文字に変換し、スキーマ名などの修飾を除いた最後の要素のみとする。
+     * 識別子以外の字句は、先頭に{@link #SYMBOL}を付与する。
+     *
+     * @param sql SQL文
+     * @return 字句
+     */
+    static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<String>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                // 行コメント
+                int end = sql.indexOf('\n', i);
+                i = end == -1 ? length : end + 1;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                // ブロックコメント
+                int end = sql.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+            } else if (c == '\'') {
+                // 文字列リテラル
+                i = skipQuoted(sql, i, '\'');
+                tokens.add(SYMBOL + "'");
+            } else if (isIdentifierStart(c) || c == '"' || c == '`' || c == '[') {
+                // 識別子（スキーマ名等で修飾されている場合は最後の要素）
+                StringBuilder name = new StringBuilder();
+                i = readIdentifier(sql, i, name);
+                while (i + 1 < length && sql.charAt(i) == '.' && isIdentifierPartStart(sql.charAt(i + 1))) {
+                    name.setLength(0);
+                    i = readIdentifier(sql, i + 1, name);
+                }
+                tokens.add(name.length() == 0 ? SYMBOL + "\"" : name.toString().toUpperCase());
+            } else if (Character.isDigit(c)) {
+                // 数値リテラル
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(SYMBOL + "0");
+            } else {
+                tokens.add(SYMBOL + String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 識別子を1要素読み込む。
+     *
+     * @param sql   SQL文
+     * @param start 開始位置
+     * @param name  読み込んだ識別子の追加先
+     * @return 識別子の次の位置
+     */
+    private static int readIdentifier(String sql, int start, StringBuilder name) {
+        char c = sql.charAt(start);
+        if (c == '"' || c == '`' || c == '[') {
+            char close = c == '[' ? ']' : c;
+            int end = skipQuoted(sql, start, close);
+            // 閉じられていない場合は、末尾までを識別子とする
+            int contentEnd = sql.charAt(end - 1) == close && end - 1 > start ? end - 1 : end;
+            name.append(sql.substring(start + 1, contentEnd).replace(
+                    String.valueOf(close) + close, String.valueOf(close)));
+            return end;
+        }
+        int i = start;
+        while (i < sql.length() && isIdentifierPart(sql.charAt(i))) {
+            name.append(sql.charAt(i));
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 囲み文字で囲まれた部分を読み飛ばす。<br/>
+     * 囲み文字の連続はエスケープとみなす。
+     *
+     * @param sql   SQL文
+     * @param start 開始の囲み文字の位置
+     * @param close 終了の囲み文字
+     * @return 終了の囲み文字の次の位置（閉じられていない場合はSQL文の長さ）
+     */
+    private static int skipQuoted(String sql, int start, char close) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == close) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == close) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    /**
+     * 識別子の先頭文字か判定する。
+     *
+     * @param c 文字
+     * @return 識別子の先頭文字の場合、真
+     */
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$' || c == '#' || c == '@';
+    }
+
+    /**
+     * 修飾された識別子の要素の先頭文字か判定する。
+     *
+     * @param c 文字
+     * @return 要素の先頭文字の場合、真
+     */
+    private static boolean isIdentifierPartStart(char c) {
+        return isIdentifierStart(c) || c == '"' || c == '`' || c == '[';
+    }
+
+    /**
+     * 識別子を構成する文字か判定する。
+     *
+     * @param c 文字
+     * @return 識別子を構成する文字の場合、真
+     */
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || Character.isDigit(c);
+    }
+}
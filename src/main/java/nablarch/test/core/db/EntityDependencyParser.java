@@ -8,10 +8,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import nablarch.common.dao.DatabaseUtil;
+import nablarch.core.util.map.CaseInsensitiveMap;
 
 
 /**
@@ -22,7 +25,10 @@ import nablarch.common.dao.DatabaseUtil;
 public class EntityDependencyParser {
 
     /** キー＝テーブル名：値＝{@link Table}*/
-    private Map<String, Table> tableMap = new HashMap<String, Table>();
+    private Map<String, Table> tableMap = new LinkedHashMap<String, Table>();
+
+    /** 関連付けた親子テーブル（要素は、親テーブル、子テーブルの順の配列） */
+    private final List<String[]> references = new ArrayList<String[]>();
 
     /**
      * 解析を行う。
@@ -76,6 +82,7 @@ public class EntityDependencyParser {
      * @param child 子テーブル
      */
     void associate(String parent, String child) {
+        references.add(new String[] {parent, child});
         Table childTable = tableMap.get(child);
         if (childTable == null) {
             childTable = new Table(child);
@@ -90,24 +97,12 @@ public class EntityDependencyParser {
     }
 
     /**
-     * 親子関係をカウントアップする。
+     * 関連付けた親子テーブルを取得する。
      *
-     * @param table 処理対象テーブル
-     * @param tableReferenceCounts テーブル参照回数
-     * @param level 階層
+     * @return 親子テーブル（要素は、親テーブル、子テーブルの順の配列）
      */
-    private void countUp(Table table, Map<String, Integer> tableReferenceCounts, int level) {
-        for (Table childTable : table.children) {
-            boolean isSelfReference = table.name.equals(childTable.name);
-            if (!isSelfReference) {
-                countUp(childTable, tableReferenceCounts, level + 1);
-            }
-        }
-
-        Integer currentLevel = tableReferenceCounts.get(table.name);
-        if (level > currentLevel) {
-            tableReferenceCounts.put(table.name, level);
-        }
+    List<String[]> getReferences() {
+        return references;
     }
 
     /**
@@ -116,30 +111,71 @@ public class EntityDependencyParser {
      * @return ソート済みテーブル一覧
      */
     public List<String> getTableList() {
-        List<Table> rootTables = new ArrayList<Table>();
-        List<String> tableList = new ArrayList<String>();
-        final Map<String, Integer> tableReferenceCounts = new HashMap<String, Integer>();
-        for (Table table : tableMap.values()) {
-            if (table.isRoot()) {
-                rootTables.add(table);
-            }
-            tableReferenceCounts.put(table.name, 0);
-            tableList.add(table.name);
-        }
-        if (!tableList.isEmpty() && rootTables.isEmpty()) {
-            throw new IllegalStateException("ルートとなるテーブルが見つかりません。循環参照になっていると思います！");
-        }
-        for (Table table : rootTables) {
-            countUp(table, tableReferenceCounts, 0);
-        }
+        final Map<String, Integer> ranks = getTableRanks();
+        List<String> tableList = new ArrayList<String>(tableMap.keySet());
         Collections.sort(tableList, new Comparator<String>() {
             public int compare(String t1, String t2) {
-                return tableReferenceCounts.get(t1) - tableReferenceCounts.get(t2);
+                return ranks.get(t1) - ranks.get(t2);
             }
         });
         return tableList;
     }
 
+    /**
+     * テーブルごとの順位（階層）を取得する。<br/>
+     * 親テーブルを持たないテーブルの順位は0、それ以外のテーブルは、全ての親テーブルの順位より大きい値となる
+     * （親テーブルの順位の最大値+1）。自己参照は考慮しない。
+     * <p/>
+     * トポロジカルソート（Kahnのアルゴリズム）により、テーブル数と参照数に比例する時間で算出する。
+     *
+     * @return テーブルごとの順位（キーの大文字小文字は区別しない）
+     * @throws IllegalStateException 循環参照がある場合
+     */
+    Map<String, Integer> getTableRanks() {
+        Map<Table, Integer> parentCounts = new HashMap<Table, Integer>();
+        Map<String, Integer> ranks = new CaseInsensitiveMap<Integer>();
+        LinkedList<Table> roots = new LinkedList<Table>();
+        for (Table table : tableMap.values()) {
+            int parentCount = table.countParentsExceptSelf();
+            parentCounts.put(table, parentCount);
+            ranks.put(table.name, 0);
+            if (parentCount == 0) {
+                roots.add(table);
+            }
+        }
+        int resolved = 0;
+        while (!roots.isEmpty()) {
+            Table table = roots.removeFirst();
+            resolved++;
+            int childRank = ranks.get(table.name) + 1;
+            for (Table child : table.children) {
+                if (child == table) {
+                    continue;
+                }
+                if (ranks.get(child.name) < childRank) {
+                    ranks.put(child.name, childRank);
+                }
+                int remaining = parentCounts.get(child) - 1;
+                parentCounts.put(child, remaining);
+                if (remaining == 0) {
+                    roots.add(child);
+                }
+            }
+        }
+        if (resolved < tableMap.size()) {
+            List<String> circular = new ArrayList<String>();
+            for (Map.Entry<Table, Integer> entry : parentCounts.entrySet()) {
+                if (entry.getValue() > 0) {
+                    circular.add(entry.getKey().name);
+                }
+            }
+            Collections.sort(circular);
+            throw new IllegalStateException(
+                    "ルートとなるテーブルが見つかりません。循環参照になっていると思います！ tables=" + circular);
+        }
+        return ranks;
+    }
+
     /** テーブルの依存関係を表すクラス。 */
     static class Table {
         /** テーブル名 */
@@ -171,18 +207,18 @@ public class EntityDependencyParser {
         }
 
         /**
-         * このテーブルがルートであるかどうか判定する。
-         * @return ルートである場合、真
+         * 自分以外の親テーブルの数を取得する（自己参照は数えない）。
+         *
+         * @return 親テーブルの数
          */
-        boolean isRoot() {
-            switch (parents.size()) {
-                case 0:          // 親がいないのでルート
-                    return true;
-                case 1:          // 唯一の親が自分（自己参照）の場合、ルート
-                    return parents.get(0).equals(this);
-                default:         // 親がいるのでルートでない
-                    return false;
+        int countParentsExceptSelf() {
+            int count = 0;
+            for (Table parent : parents) {
+                if (parent != this) {
+                    count++;
+                }
             }
+            return count;
         }
 
     }
@@ -0,0 +1,204 @@
+package nablarch.test.core.db;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.BinaryUtil;
+
+/**
+ * 準備データの投入状態を追跡するクラス。<br/>
+ * {@link DbAccessTestSupport#setUpDb(String, String)}で投入したテーブルの内容（フィンガープリント）を記録し、
+ * 以降に発行された更新系SQLの対象テーブルを{@link MasterDataRestorer.SqlLogWatchingFormatter}から通知を受けて、
+ * 投入後に変更された可能性のあるテーブルを記録から除外する。
+ * 同じ内容を再度投入する際、変更されていないテーブルの削除、投入を省略するために使用する。
+ * <p>
+ * コンポーネント定義に{@literal nablarch.test.differential-db-setup}というキーで
+ * 真偽値{@code true}が設定されており、かつ{@link MasterDataRestorer.SqlLogWatchingFormatter}が
+ * SQLログのフォーマッタとして使用されている場合のみ有効となる。
+ * SQLログを経由しない更新（SQLログの出力が無効な場合や、JDBCを直接使用した更新）は検知できないため、
+ * そのような更新を行うテストでは使用しないこと。
+ * </p>
+ * <p>
+ * {@literal nablarch.test.shot-isolation}というキーで真偽値{@code true}が設定されている場合は、
+ * テストショットごとの準備データの投入（{@link DbAccessTestSupport#setUpDbForShot(String, String)}）のみ差分投入とする。
+ * 前のテストショットで変更されたテーブルのみが投入し直されるため、
+ * 準備データ全体を投入し直すことなく、テストショットごとの変更を巻き戻すことができる。
+ * </p>
+ * <p>
+ * 更新の検知は{@link MasterDataRestorer}と同様に簡易的なものであり、
+ * 発行されたSQL文で更新系の命令の対象となったテーブルを、変更された可能性があるものとみなす。
+ * </p>
+ */
+final class FixtureStateTracker {
+
+    /** 差分投入を行うかどうか判定するためのキー */
+    static final String DIFFERENTIAL_SETUP_KEY = "nablarch.test.differential-db-setup";
+
+    /** テストショットごとの準備データの投入で、差分投入を行うかどうか判定するためのキー */
+    static final String SHOT_ISOLATION_KEY = "nablarch.test.shot-isolation";
+
+    /** 投入後に変更されていないテーブル（キー＝テーブル名、値＝投入した内容のフィンガープリント） */
+    private static final Map<String, String> CLEAN_TABLES = new HashMap<String, String>();
+
+    /** 発行されたSQL文の通知を受けているか否か */
+    private static volatile boolean watching = false;
+
+    /** インスタンス化させない。 */
+    private FixtureStateTracker() {
+    }
+
+    /**
+     * 差分投入が有効であるか判定する。
+     *
+     * @return 有効な場合、真
+     */
+    static boolean isEnabled() {
+        return watching && SystemRepository.getBoolean(DIFFERENTIAL_SETUP_KEY);
+    }
+
+    /**
+     * テストショットごとの準備データの投入で、差分投入が有効であるか判定する。<br/>
+     * {@link #isEnabled()}が真の場合、または{@literal nablarch.test.shot-isolation}というキーで
+     * 真偽値{@code true}が設定されている場合に有効となる。
+     *
+     * @return 有効な場合、真
+     */
+    static boolean isEnabledForShot() {
+        return isEnabled() || (watching && SystemRepository.getBoolean(SHOT_ISOLATION_KEY));
+    }
+
+    /** 発行されたSQL文の通知を開始する。 */
+    static void startWatching() {
+        watching = true;
+    }
+
+    /**
+     * 更新系SQL文の対象となったテーブルの通知を受ける。<br/>
+     * 通知されたテーブルを、変更された可能性があるものとして記録から除外する。
+     *
+     * @param tableNames 更新系SQL文の対象となったテーブル名（大文字、スキーマ名を除く）
+     */
+    static void notifyModified(Collection<String> tableNames) {
+        synchronized (CLEAN_TABLES) {
+            if (CLEAN_TABLES.isEmpty()) {
+                return;
+            }
+            for (Iterator<String> itr = CLEAN_TABLES.keySet().iterator(); itr.hasNext();) {
+                String tableName = itr.next();
+                if (tableNames.contains(tableName.substring(tableName.lastIndexOf('.') + 1))) {
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 投入が必要なテーブルを取得する。<br/>
+     * 投入順で最初に投入が必要なテーブル以降は、全て投入対象とする。
+     * 投入が必要なテーブルを参照する子テーブルは投入順で後ろに位置するため、
+     * 親テーブルの削除が子テーブルの残存データにより失敗することはない。
+     * 投入対象としたテーブルは、記録から除外する。
+     *
+     * @param orderedForInsertion 投入順にソートされたテーブル
+     * @param fingerprints        テーブルごとのフィンガープリント（引数のテーブルと同じ順）
+     * @return 投入が必要なテーブル（投入順）
+     */
+    static List<TableData> getTablesToSetUp(List<TableData> orderedForInsertion, List<String> fingerprints) {
+        synchronized (CLEAN_TABLES) {
+            int first = 0;
+            while (first < orderedForInsertion.size()) {
+                String tableName = orderedForInsertion.get(first).getTableName();
+                if (!fingerprints.get(first).equals(CLEAN_TABLES.get(tableName))) {
+                    break;
+                }
+                first++;
+            }
+            List<TableData> targets = new ArrayList<TableData>(
+                    orderedForInsertion.subList(first, orderedForInsertion.size()));
+            for (TableData table : targets) {
+                CLEAN_TABLES.remove(table.getTableName());
+            }
+            return targets;
+        }
+    }
+
+    /**
+     * 投入したテーブルを記録する。
+     *
+     * @param tableName   テーブル名
+     * @param fingerprint 投入した内容のフィンガープリント
+     */
+    static void markClean(String tableName, String fingerprint) {
+        synchronized (CLEAN_TABLES) {
+            CLEAN_TABLES.put(tableName, fingerprint);
+        }
+    }
+
+    /** 記録を破棄する。 */
+    static void clear() {
+        synchronized (CLEAN_TABLES) {
+            CLEAN_TABLES.clear();
+        }
+    }
+
+    /**
+     * テーブルデータのフィンガープリントを作成する。<br/>
+     * テーブル名、カラム名、全行の値から算出する。
+     *
+     * @param table テーブルデータ
+     * @return フィンガープリント
+     */
+    static String createFingerprint(TableData table) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String[] columnNames = table.getColumnNames();
+        update(digest, table.getTableName());
+        for (String column : columnNames) {
+            update(digest, column.toUpperCase());
+        }
+        for (int row = 0; row < table.size(); row++) {
+            digest.update((byte) '\n');
+            for (String column : columnNames) {
+                Object value = table.getValue(row, column.toUpperCase());
+                if (value == null) {
+                    // nullと文字列の"null"を区別する
+                    digest.update((byte) 0);
+                } else {
+                    update(digest, value instanceof byte[]
+                            ? BinaryUtil.convertToHexString((byte[]) value)
+                            : value.toString());
+                }
+            }
+        }
+        return BinaryUtil.convertToHexString(digest.digest());
+    }
+
+    /**
+     * 値をダイジェストに追加する。<br/>
+     * 値の区切りを明確にするため、値の長さも追加する。
+     *
+     * @param digest ダイジェスト
+     * @param value  値
+     */
+    private static void update(MessageDigest digest, String value) {
+        try {
+            digest.update(String.valueOf(value.length()).getBytes("UTF-8"));
+            digest.update((byte) ':');
+            digest.update(value.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
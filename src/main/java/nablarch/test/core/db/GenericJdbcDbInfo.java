@@ -6,24 +6,45 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import javax.sql.DataSource;
 
 import nablarch.common.dao.DatabaseUtil;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
 import nablarch.core.util.annotation.Published;
 import nablarch.core.util.map.CaseInsensitiveMap;
 
 /**
  * 汎用の{@link DbInfo}実装クラス。
+ * <p>
+ * デフォルトでは、テーブルのメタデータは、各テーブルが最初に参照された時点でテーブルごとに取得する。
+ * 一括読み込み（{@link #setBulkLoad(boolean)}）を有効にした場合は、最初の参照時に1つのコネクションで、
+ * スキーマ全体のカラム（名前、型、桁数）、主キー、ユニークインデックスをまとめて取得する。
+ * データベースによってはメタデータの取得1回ごとに時間を要するため、多数のテーブルを使用する場合に有効である。
+ * 主キー、ユニークインデックスのスキーマ全体での取得に対応していないJDBCドライバの場合、
+ * それらはテーブルごとの取得で補う。
+ * </p>
+ * <p>
+ * コンポーネント設定ファイルに{@literal nablarch.test.db-metadata-snapshot.file}というキーで
+ * ファイルのパスが設定されている場合は、一括読み込みの設定にかかわらず、スキーマ全体のメタデータを
+ * そのファイル（スナップショット）から読み込む。スナップショットが存在しない、または古い場合は、
+ * 一括で取得してファイルに保存する。これにより、テストを実行するプロセスごとのメタデータ取得を省略できる。
+ * </p>
  *
  * @author T.Kawasaki
  */
 @Published(tag = "architect")
 public class GenericJdbcDbInfo implements DbInfo {
 
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(GenericJdbcDbInfo.class);
+
     /** 主キー情報 */
     private final Map<String, String[]> primaryKeyMap = new CaseInsensitiveMap<String[]>();
 
@@ -48,8 +69,24 @@ public class GenericJdbcDbInfo implements DbInfo {
     /** データソース */
     private DataSource dataSource;
 
+    /** スキーマ全体のメタデータを一括で読み込むか否か */
+    private boolean bulkLoad = false;
+
+    /** 一括読み込みを実施済みか否か */
+    private boolean bulkLoaded = false;
+
+    /** テストデータ投入時のバッチサイズ */
+    private int insertBatchSize = TableData.DEFAULT_INSERT_BATCH_SIZE;
+
+    /** テストデータ投入時に使用する複数行INSERTの方言（使用しない場合はnull） */
+    private MultiRowInsertDialect multiRowInsertDialect = null;
+
+    /** テストデータ投入時のテーブルのデータの削除方法 */
+    private TableClearingStrategy tableClearingStrategy = new TableClearingStrategy();
+
     /** {@inheritDoc} */
     public String[] getPrimaryKeys(String table) {
+        loadSchemaMetaDataIfNecessary();
         String[] primaryKeys = primaryKeyMap.get(table);
         if (primaryKeys == null) {
             try {
@@ -96,6 +133,7 @@ public class GenericJdbcDbInfo implements DbInfo {
 
     /** {@inheritDoc} */
     public String[] getColumns(String table) {
+        loadSchemaMetaDataIfNecessary();
         String[] columns = columnsMap.get(table);
         if (columns == null) {
             try {
@@ -139,6 +177,7 @@ public class GenericJdbcDbInfo implements DbInfo {
 
     /** {@inheritDoc} */
     public int getColumnType(String table, String column) {
+        loadSchemaMetaDataIfNecessary();
         if (typeMap.get(table) == null) {
             loadMetaData(table);
         }
@@ -170,6 +209,7 @@ public class GenericJdbcDbInfo implements DbInfo {
      * @return ユニークインデックス一覧
      */
     private String[] getUniqueIndices(String table) {
+        loadSchemaMetaDataIfNecessary();
         String[] uniqueIndices = uniqueIdxMap.get(table);
         if (uniqueIndices == null) {
             try {
@@ -235,6 +275,7 @@ public class GenericJdbcDbInfo implements DbInfo {
 
     /** {@inheritDoc} */
     public int getColumnLength(String table, String column) {
+        loadSchemaMetaDataIfNecessary();
         if (lengthMap.get(table) == null) {
             this.loadMetaData(table);
         }
@@ -393,6 +434,221 @@ public class GenericJdbcDbInfo implements DbInfo {
         }
     }
 
+    /**
+     * 一括読み込み、またはスナップショットの使用が有効で、未実施の場合、スキーマ全体のメタデータを読み込む。
+     *
+     * @see SchemaMetaDataSnapshot
+     */
+    private synchronized void loadSchemaMetaDataIfNecessary() {
+        if (bulkLoaded) {
+            return;
+        }
+        boolean useSnapshot = SchemaMetaDataSnapshot.isEnabled();
+        if (!bulkLoad && !useSnapshot) {
+            return;
+        }
+        // 失敗した場合も、テーブルごとの取得で補うので再実行しない。
+        bulkLoaded = true;
+        if (originalSchemaName == null) {
+            // スキーマが特定できない場合、他スキーマの同名テーブルと区別できないため一括読み込みしない。
+            return;
+        }
+        SchemaMetaDataSnapshot snapshot = null;
+        List<String> tables;
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            if (useSnapshot) {
+                snapshot = SchemaMetaDataSnapshot.get(connection, originalSchemaName);
+                if (snapshot.hasTableMetaData()) {
+                    restoreFrom(snapshot);
+                    return;
+                }
+            }
+            DatabaseMetaData metaData = connection.getMetaData();
+            String schema = getSchema(metaData);
+            tables = loadAllColumns(metaData, schema);
+            Map<String, String[]> primaryKeys = loadAllPrimaryKeys(metaData, schema, tables);
+            if (primaryKeys != null) {
+                primaryKeyMap.putAll(primaryKeys);
+                loadAllUniqueIndices(metaData, schema, tables);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("can't get metadata. schema=[" + originalSchemaName + "]", e);
+        } finally {
+            closeQuietly(connection);
+        }
+        if (snapshot != null) {
+            // 一括で取得できなかったメタデータを、テーブルごとの取得で補ってから保存する。
+            for (String table : tables) {
+                getPrimaryKeys(table);
+                getUniqueIndices(table);
+            }
+            snapshot.setTableMetaData(primaryKeyMap, columnsMap, lengthMap, typeMap, uniqueIdxMap);
+        }
+    }
+
+    /**
+     * スナップショットからメタデータを復元する。
+     *
+     * @param snapshot スナップショット
+     */
+    private void restoreFrom(SchemaMetaDataSnapshot snapshot) {
+        primaryKeyMap.putAll(snapshot.getPrimaryKeys());
+        columnsMap.putAll(snapshot.getColumns());
+        uniqueIdxMap.putAll(snapshot.getUniqueIndices());
+        for (Map.Entry<String, ? extends Map<String, Integer>> entry : snapshot.getLengths().entrySet()) {
+            Map<String, Integer> lengths = new CaseInsensitiveMap<Integer>();
+            lengths.putAll(entry.getValue());
+            lengthMap.put(entry.getKey(), lengths);
+        }
+        for (Map.Entry<String, ? extends Map<String, Integer>> entry : snapshot.getTypes().entrySet()) {
+            Map<String, Integer> types = new CaseInsensitiveMap<Integer>();
+            types.putAll(entry.getValue());
+            typeMap.put(entry.getKey(), types);
+        }
+    }
+
+    /**
+     * スキーマ全体のカラム情報を読み込む。
+     *
+     * @param metaData メタデータ
+     * @param schema   スキーマ
+     * @return 読み込んだテーブル名
+     * @throws SQLException 予期しない例外
+     */
+    private List<String> loadAllColumns(DatabaseMetaData metaData, String schema) throws SQLException {
+        Map<String, Map<Integer, String>> columnNames = new CaseInsensitiveMap<Map<Integer, String>>();
+        Map<String, Map<String, Integer>> columnTypes = new CaseInsensitiveMap<Map<String, Integer>>();
+        Map<String, Map<String, Integer>> columnLengths = new CaseInsensitiveMap<Map<String, Integer>>();
+        List<String> tables = new ArrayList<String>();
+        ResultSet resultSet = null;
+        try {
+            resultSet = metaData.getColumns(null, schema, "%", "%");
+            while (resultSet.next()) {
+                String table = resultSet.getString("TABLE_NAME");
+                Map<Integer, String> names = columnNames.get(table);
+                if (names == null) {
+                    names = new TreeMap<Integer, String>();
+                    columnNames.put(table, names);
+                    columnTypes.put(table, new CaseInsensitiveMap<Integer>());
+                    columnLengths.put(table, new CaseInsensitiveMap<Integer>());
+                    tables.add(table);
+                }
+                String name = resultSet.getString("COLUMN_NAME");
+                names.put(resultSet.getInt("ORDINAL_POSITION"), name);
+                columnTypes.get(table).put(name, getColumnType(resultSet));
+                columnLengths.get(table).put(name, resultSet.getInt("COLUMN_SIZE"));
+            }
+        } finally {
+            closeQuietly(resultSet);
+        }
+        for (String table : tables) {
+            Map<Integer, String> names = columnNames.get(table);
+            columnsMap.put(table, names.values().toArray(new String[names.size()]));
+            typeMap.put(table, columnTypes.get(table));
+            lengthMap.put(table, columnLengths.get(table));
+        }
+        return tables;
+    }
+
+    /**
+     * スキーマ全体の主キーを読み込む。
+     *
+     * @param metaData メタデータ
+     * @param schema   スキーマ
+     * @param tables   テーブル名
+     * @return テーブル名と主キーのマップ（スキーマ全体で取得できなかった場合はnull）
+     */
+    private Map<String, String[]> loadAllPrimaryKeys(DatabaseMetaData metaData, String schema, List<String> tables) {
+        Map<String, Map<Integer, String>> keys = new CaseInsensitiveMap<Map<Integer, String>>();
+        ResultSet resultSet = null;
+        try {
+            // テーブル名にnullを指定した場合の動作はJDBCドライバに依存する。
+            resultSet = metaData.getPrimaryKeys(null, schema, null);
+            while (resultSet.next()) {
+                String table = resultSet.getString("TABLE_NAME");
+                Map<Integer, String> columns = keys.get(table);
+                if (columns == null) {
+                    columns = new TreeMap<Integer, String>();
+                    keys.put(table, columns);
+                }
+                columns.put(resultSet.getInt("KEY_SEQ"), resultSet.getString("COLUMN_NAME"));
+            }
+        } catch (SQLException e) {
+            LOGGER.logDebug("can't get primary keys of whole schema. load them per table. schema=[" + schema + "]", e);
+            return null;
+        } finally {
+            closeQuietly(resultSet);
+        }
+        if (keys.isEmpty()) {
+            // 主キーを持つテーブルがないのか、JDBCドライバが対応していないのか区別できないため、テーブルごとに取得する。
+            return null;
+        }
+        Map<String, String[]> result = new CaseInsensitiveMap<String[]>();
+        for (String table : tables) {
+            Map<Integer, String> columns = keys.get(table);
+            result.put(table, columns == null
+                    ? new String[0]
+                    : columns.values().toArray(new String[columns.size()]));
+        }
+        return result;
+    }
+
+    /**
+     * スキーマ全体のユニークインデックス（主キー以外）を読み込む。<br/>
+     * 主キーは読み込み済みであること。
+     * <p>
+     * 取得結果に含まれないテーブルは読み込まず、テーブルごとの取得で補う。
+     * テーブル名にnullを指定した場合に何も返さないJDBCドライバがあり、
+     * ユニークインデックスが無いテーブルと区別できないためである。
+     * </p>
+     *
+     * @param metaData メタデータ
+     * @param schema   スキーマ
+     * @param tables   テーブル名
+     */
+    private void loadAllUniqueIndices(DatabaseMetaData metaData, String schema, List<String> tables) {
+        Map<String, List<String>> indices = new CaseInsensitiveMap<List<String>>();
+        Set<String> indexedTables = new HashSet<String>();
+        ResultSet resultSet = null;
+        try {
+            // 統計情報は使用しないため、近似値を許容する。
+            resultSet = metaData.getIndexInfo(null, schema, null, true, true);
+            while (resultSet.next()) {
+                String table = resultSet.getString("TABLE_NAME");
+                String indexedColumn = resultSet.getString("COLUMN_NAME");
+                if (table == null || indexedColumn == null || !primaryKeyMap.containsKey(table)) {
+                    continue;
+                }
+                indexedTables.add(table.toUpperCase());
+                if (isPrimaryKey(table, indexedColumn)) {
+                    continue;
+                }
+                List<String> columns = indices.get(table);
+                if (columns == null) {
+                    columns = new ArrayList<String>();
+                    indices.put(table, columns);
+                }
+                columns.add(indexedColumn);
+            }
+        } catch (SQLException e) {
+            LOGGER.logDebug("can't get unique indices of whole schema. load them per table. schema=[" + schema + "]", e);
+            return;
+        } finally {
+            closeQuietly(resultSet);
+        }
+        for (String table : tables) {
+            if (!indexedTables.contains(table.toUpperCase())) {
+                continue;
+            }
+            List<String> columns = indices.get(table);
+            uniqueIdxMap.put(table, columns == null
+                    ? new String[0]
+                    : columns.toArray(new String[columns.size()]));
+        }
+    }
+
     /**
      * カラム型を取得する。
      *
@@ -416,6 +672,92 @@ public class GenericJdbcDbInfo implements DbInfo {
         this.dataSource = dataSource;
     }
 
+    /**
+     * スキーマ全体のメタデータを一括で読み込むか否かを設定する。<br/>
+     * デフォルトはfalse（テーブルごとに読み込む）。
+     * 設定を変更した場合、読み込み済みのメタデータは破棄する。
+     *
+     * @param bulkLoad 一括で読み込む場合、真
+     */
+    public synchronized void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+        this.bulkLoaded = false;
+        primaryKeyMap.clear();
+        columnsMap.clear();
+        lengthMap.clear();
+        typeMap.clear();
+        uniqueIdxMap.clear();
+    }
+
+    /**
+     * テストデータ投入時のバッチサイズを取得する。
+     *
+     * @return バッチサイズ
+     */
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    /**
+     * テストデータ投入時のバッチサイズを設定する。<br/>
+     * 指定した行数ごとにバッチ実行する（複数行INSERTを使用する場合は、1つのINSERT文で登録する行数の上限となる）。
+     * デフォルトは100。
+     *
+     * @param insertBatchSize バッチサイズ
+     */
+    public void setInsertBatchSize(int insertBatchSize) {
+        if (insertBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "insertBatchSize must be positive. but was [" + insertBatchSize + "]");
+        }
+        this.insertBatchSize = insertBatchSize;
+    }
+
+    /**
+     * テストデータ投入時に使用する複数行INSERTの方言を取得する。
+     *
+     * @return 複数行INSERTの方言（使用しない場合はnull）
+     */
+    public MultiRowInsertDialect getMultiRowInsertDialect() {
+        return multiRowInsertDialect;
+    }
+
+    /**
+     * テストデータ投入時に使用する複数行INSERTの方言を設定する。<br/>
+     * 設定した場合、1行ずつのバッチ実行ではなく、複数行を1つのINSERT文で登録する。
+     * デフォルトは設定なし。
+     *
+     * @param multiRowInsertDialect 複数行INSERTの方言
+     * @see ValuesListInsertDialect
+     * @see InsertAllDialect
+     */
+    public void setMultiRowInsertDialect(MultiRowInsertDialect multiRowInsertDialect) {
+        this.multiRowInsertDialect = multiRowInsertDialect;
+    }
+
+    /**
+     * テストデータ投入時のテーブルのデータの削除方法を取得する。
+     *
+     * @return 削除方法
+     */
+    public TableClearingStrategy getTableClearingStrategy() {
+        return tableClearingStrategy;
+    }
+
+    /**
+     * テストデータ投入時のテーブルのデータの削除方法を設定する。<br/>
+     * デフォルトは{@code DELETE}文による削除。
+     *
+     * @param tableClearingStrategy 削除方法
+     * @see TruncateTableClearingStrategy
+     */
+    public void setTableClearingStrategy(TableClearingStrategy tableClearingStrategy) {
+        if (tableClearingStrategy == null) {
+            throw new IllegalArgumentException("tableClearingStrategy must not be null.");
+        }
+        this.tableClearingStrategy = tableClearingStrategy;
+    }
+
     /**
      * スキーマを設定する。
      *
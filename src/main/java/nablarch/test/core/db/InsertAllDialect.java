@@ -0,0 +1,28 @@
+package nablarch.test.core.db;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@code INSERT ALL}形式（{@code INSERT ALL INTO T (C1,C2) VALUES (?,?) INTO T (C1,C2) VALUES (?,?) SELECT * FROM DUAL}）の
+ * {@link MultiRowInsertDialect}実装クラス。<br/>
+ * Oracleで使用できる。
+ */
+@Published(tag = "architect")
+public class InsertAllDialect extends MultiRowInsertDialect {
+
+    /** {@inheritDoc} */
+    @Override
+    public String createInsertStatement(String tableName, String[] columns, int rowCount) {
+        StringBuilder into = new StringBuilder(64 + columns.length * 16);
+        into.append(" INTO ").append(tableName).append('(');
+        appendColumns(into, columns).append(") VALUES ");
+        appendPlaceholders(into, columns.length);
+
+        StringBuilder sb = new StringBuilder(16 + into.length() * rowCount);
+        sb.append("INSERT ALL");
+        for (int i = 0; i < rowCount; i++) {
+            sb.append(into);
+        }
+        return sb.append(" SELECT * FROM DUAL").toString();
+    }
+}
@@ -5,18 +5,21 @@ import nablarch.core.db.connection.TransactionManagerConnection;
 import nablarch.core.db.statement.SqlLogFormatter;
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
 import nablarch.core.util.StringUtil;
 import nablarch.test.NablarchTestUtils;
 import nablarch.test.event.TestEventListener;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import static nablarch.core.util.Builder.concat;
 
@@ -35,7 +38,8 @@ import static nablarch.core.util.Builder.concat;
  * </p>
  * <p>
  * 更新SQLかどうかの判定するために厳密なSQL解析は行っていない。
- * 更新SQLと見做せる条件のうちいずれかを満たしていればマスタデータ復旧を行う。
+ * 発行されたSQL文を字句に分割し、更新系のSQLキーワードの対象となるテーブル名のみを抽出して記録する。
+ * 監視対象テーブルが、更新とみなされるSQLキーワードの対象となっていればマスタデータ復旧を行う。
  * これは以下の理由による。
  * <ul>
  * <li>厳密なSQL解析はコストが高くテスト実行速度を低下させる。</li>
@@ -56,7 +60,7 @@ public class MasterDataRestorer extends TestEventListener.Template {
     );
 
     /** 更新とみなされるSQLキーワード */
-    private List<String> updateSqlKeywords = DEFAULT_KEYWORDS;
+    private Set<String> updateSqlKeywords = new HashSet<String>(DEFAULT_KEYWORDS);
 
     /** バックアップ元のスキーマ名 */
     private String backupSchema;
@@ -64,6 +68,12 @@ public class MasterDataRestorer extends TestEventListener.Template {
     /** 監視対象テーブル一覧 */
     private List<String> tablesTobeWatched;
 
+    /** 変更された行のみを復旧するか否か */
+    private boolean incrementalRestore = false;
+
+    /** 変更された行のみを復旧する場合に、テーブル全件のコピーに切り替える変更行の割合 */
+    private double maxChangeRatio = 0.5;
+
     /**
      * 更新されたテーブル一覧を取得する。<br/>
      * テスト中に発行されたSQLに、監視対象テーブルを更新した可能性のある
@@ -75,65 +85,35 @@ public class MasterDataRestorer extends TestEventListener.Template {
      * @return 更新されたテーブル一覧
      */
     Set<String> getUpdatedTables(List<String> executedSql) {
-        Set<String> updated = new HashSet<String>(tablesTobeWatched.size());
-        // 発行されたSQL全件チェック
+        Map<String, Set<String>> modifiedTables = new HashMap<String, Set<String>>();
         for (String sql : executedSql) {
-            String upperSql = sql.toUpperCase();
-            LOGGER.logTrace(upperSql);
-            // 監視対象テーブル全件チェック
-            for (String table : tablesTobeWatched) {
-                if (updated.contains(table)) {
-                    continue;  // 既に更新を検知したテーブルはチェック不要
-                }
-                if (containsUpdateSqlKeyword(table, upperSql)) {
-                    LOGGER.logInfo(concat(
-                            "Master table modification detected. ",
-                            "table=[", table, "], sql=[", upperSql, "]"));
-                    updated.add(table);
-                }
-            }
+            SqlLogWatchingFormatter.merge(modifiedTables, DmlTargetExtractor.extract(sql));
         }
-        return sortTableByTablesTobeWatched(updated);
+        return getUpdatedTables(modifiedTables);
     }
 
     /**
-     * setの中身をtablesTobeWatchedの順でソートしたものを返す。
+     * 更新されたテーブル一覧を取得する。<br/>
+     * 監視対象テーブルのうち、更新とみなされるSQLキーワードで更新されたテーブルの一覧を、
+     * tablesTobeWatchedの順で返却する。
      *
-     * @param originTable 未ソートのテーブルセット
-     * @return tablesTobeWatched順でソートされたテーブルセット
+     * @param modifiedTables 更新されたテーブル（キー＝テーブル名、値＝更新に使用されたSQLキーワード）
+     * @return 更新されたテーブル一覧
      */
-    private Set<String> sortTableByTablesTobeWatched(Set<String> originTable) {
-        Set<String> sortedUpdatedTables = new LinkedHashSet<String>();
-        for(String table: tablesTobeWatched){
-            if(originTable.contains(table)){
-                sortedUpdatedTables.add(table);
+    Set<String> getUpdatedTables(Map<String, Set<String>> modifiedTables) {
+        Set<String> updated = new LinkedHashSet<String>();
+        for (String table : tablesTobeWatched) {
+            Set<String> verbs = modifiedTables.get(removeSchema(table));
+            if (verbs != null && containsUpdateSqlKeyword(verbs)) {
+                LOGGER.logInfo(concat(
+                        "Master table modification detected. ",
+                        "table=[", table, "], operation=", verbs));
+                updated.add(table);
             }
         }
-        return sortedUpdatedTables;
-    }
-
-    /** マスタデータ復旧クラスのキー */
-    static final String MASTER_DATA_RESTORER_KEY = "masterDataRestorer";
-
-    /**
-     * {@inheritDoc}
-     * <p/>
-     * 実行されたSQLでマスタデータを更新するものがあれば、
-     * マスタデータ復旧を行う。
-     */
-    @Override
-    public void afterTestMethod() {
-        List<String> executedSql = SqlLogWatchingFormatter.getExecuted();
-        if (executedSql.isEmpty()) {
-            return;
-        }
-        Set<String> updatedTables = getUpdatedTables(executedSql);
-        TableDuplicator duplicator = new TableDuplicator(updatedTables, backupSchema);
-        duplicator.restoreAll();
-        SqlLogWatchingFormatter.begin();
+        return updated;
     }
 
-
     /**
      * 更新とおぼしきSQLキーワードが含まれているか判定する。
      *
@@ -142,8 +122,19 @@ public class MasterDataRestorer extends TestEventListener.Template {
      * @return 判定結果
      */
     boolean containsUpdateSqlKeyword(String targetTable, String logMessage) {
-        for (String keyword : updateSqlKeywords) {
-            if (isSuspiciousSql(targetTable, logMessage, keyword)) {
+        Set<String> verbs = DmlTargetExtractor.extract(logMessage).get(removeSchema(targetTable));
+        return verbs != null && containsUpdateSqlKeyword(verbs);
+    }
+
+    /**
+     * 更新とみなされるSQLキーワードが含まれているか判定する。
+     *
+     * @param verbs 更新に使用されたSQLキーワード
+     * @return 判定結果
+     */
+    private boolean containsUpdateSqlKeyword(Set<String> verbs) {
+        for (String verb : verbs) {
+            if (updateSqlKeywords.contains(verb)) {
                 return true;
             }
         }
@@ -151,24 +142,37 @@ public class MasterDataRestorer extends TestEventListener.Template {
     }
 
     /**
-     * 更新とおぼしきSQLキーワードが含まれているか判定する。
+     * テーブル名からスキーマ名を除去する。
      *
-     * @param targetTable テーブル名
-     * @param logMessage  ログメッセージ
-     * @param keyword     キーワード
-     * @return 判定結果
+     * @param tableName テーブル名
+     * @return スキーマ名を除いたテーブル名
      */
-    private boolean isSuspiciousSql(String targetTable, String logMessage, String keyword) {
-
-        int keywordIdx = logMessage.indexOf(keyword);
-        if (keywordIdx == -1) {
-            return false;  // キーワードが現れていない。
-        }
+    private static String removeSchema(String tableName) {
+        return tableName.substring(tableName.lastIndexOf('.') + 1);
+    }
 
-        int tableNameIdx = logMessage.indexOf(targetTable, keywordIdx + keyword.length());
+    /** マスタデータ復旧クラスのキー */
+    static final String MASTER_DATA_RESTORER_KEY = "masterDataRestorer";
 
-        // キーワード以降にテーブル名が存在していた場合は、リストア対象とする。
-        return tableNameIdx != -1;
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 実行されたSQLでマスタデータを更新するものがあれば、
+     * マスタデータ復旧を行う。
+     */
+    @Override
+    public void afterTestMethod() {
+        Map<String, Set<String>> modifiedTables = SqlLogWatchingFormatter.getModifiedTables();
+        if (modifiedTables.isEmpty()) {
+            return;
+        }
+        Set<String> updatedTables = getUpdatedTables(modifiedTables);
+        TableDuplicator duplicator = new TableDuplicator(updatedTables, backupSchema);
+        if (incrementalRestore) {
+            duplicator.setMaxChangeRatio(maxChangeRatio);
+        }
+        duplicator.restoreAll();
+        SqlLogWatchingFormatter.begin();
     }
 
 
@@ -192,15 +196,52 @@ public class MasterDataRestorer extends TestEventListener.Template {
     }
 
     /**
-     * 更新とみなされるSQLキーワードを設定する。
-     * SQLキーワード文字列末尾には半角スペースが付与される。
+     * 変更された行のみを復旧するか否かを設定する。<br/>
+     * 真の場合、テーブル全件をコピーせずに、バックアップスキーマと内容の異なる行のみを登録、更新、削除する。
+     * 主キーが一致する行は更新するため、子テーブルから参照されている行も復旧できる。
+     * ただし、主キーが存在しないテーブル、LOB等の比較できない型のカラムを含むテーブル、
+     * 変更された行の割合が{@link #setMaxChangeRatio(double)}の値を超えるテーブルは、
+     * テーブル全件をコピーして復旧する。
+     * テーブル全件をコピーする親テーブルを参照する子テーブルも、テーブル全件をコピーして復旧する。
+     * デフォルトは偽（テーブル全件をコピーする）である。
+     *
+     * @param incrementalRestore 変更された行のみを復旧する場合、真
+     */
+    public void setIncrementalRestore(boolean incrementalRestore) {
+        this.incrementalRestore = incrementalRestore;
+    }
+
+    /**
+     * 変更された行のみを復旧する場合に、テーブル全件のコピーに切り替える変更行の割合を設定する。<br/>
+     * 変更行の割合は、内容の異なる行数（双方のテーブルについて、相手側に同じ内容の行が存在しない行数の合計）を
+     * バックアップスキーマのテーブルの行数で割った値である。
+     * デフォルトは0.5である。
+     *
+     * @param maxChangeRatio 変更行の割合
+     * @throws IllegalArgumentException 負の値が設定された場合
+     */
+    public void setMaxChangeRatio(double maxChangeRatio) throws IllegalArgumentException {
+        if (maxChangeRatio < 0) {
+            throw new IllegalArgumentException(concat(
+                    "maxChangeRatio must not be negative. maxChangeRatio=[", maxChangeRatio, "]"));
+        }
+        this.maxChangeRatio = maxChangeRatio;
+    }
+
+    /**
+     * 更新とみなされるSQLキーワードを設定する。<br/>
+     * INSERT、UPDATE、DELETE、MERGE、TRUNCATE、REPLACE、UPSERTは、命令の対象となるテーブルを更新されたものとみなす。
+     * それ以外のキーワード（ストアドプロシージャを呼び出す{@code CALL}、{@code EXEC}等）は、
+     * 同じSQL文でキーワードに続いて名前が現れた監視対象テーブルを、更新されたものとみなす。
      *
      * @param updateSqlKeywords 更新とみなされるSQLキーワード
+     * @throws IllegalArgumentException キーワードが1つの語でない場合
      */
-    public void setUpdateSqlKeywords(List<String> updateSqlKeywords) {
-        List<String> upper = new ArrayList<String>();
+    public void setUpdateSqlKeywords(List<String> updateSqlKeywords) throws IllegalArgumentException {
+        DmlTargetExtractor.addKeywords(updateSqlKeywords);
+        Set<String> upper = new HashSet<String>();
         for (String keyword : updateSqlKeywords) {
-            upper.add(keyword.trim().toUpperCase() + " ");
+            upper.add(keyword.trim().toUpperCase());
         }
         this.updateSqlKeywords = upper;
     }
@@ -210,6 +251,8 @@ public class MasterDataRestorer extends TestEventListener.Template {
      * <p>
      * 本クラスへの出力された更新系SQLログは、全てnablarch.test.core.db.MasterDataRestorerに通知される。
      * nablarch.test.core.db.MasterDataRestorerはログ出力からマスタデータ更新を検知する。
+     * また、準備データの差分投入（{@link DbAccessTestSupport#setUpDb(String, String)}）において、
+     * 投入済みテーブルの変更の検知にも使用される。
      * </p>
      * app-log.properties設定例を以下に示す。
      * <code>
@@ -224,8 +267,13 @@ public class MasterDataRestorer extends TestEventListener.Template {
      */
     public static class SqlLogWatchingFormatter extends SqlLogFormatter {
 
-        /** 発行されたSQL */
-        private static List<String> executedSql = new ArrayList<String>();
+        /** 更新されたテーブル（キー＝テーブル名、値＝更新に使用されたSQLキーワード） */
+        private static final Map<String, Set<String>> MODIFIED_TABLES = new HashMap<String, Set<String>>();
+
+        /** コンストラクタ。 */
+        public SqlLogWatchingFormatter() {
+            FixtureStateTracker.startWatching();
+        }
 
         /** {@inheritDoc} */
         @Override
@@ -249,39 +297,75 @@ public class MasterDataRestorer extends TestEventListener.Template {
         }
 
         /**
-         * SQL文を登録する。
+         * SQL文を登録する。<br/>
+         * SQL文自体は保持せず、更新対象のテーブル名のみを記録する。
+         *
          * @param sql SQL文
          */
         static void register(String sql) {
-            executedSql.add(sql);
+            Map<String, Set<String>> modified = DmlTargetExtractor.extract(sql);
+            if (modified.isEmpty()) {
+                return;
+            }
+            synchronized (MODIFIED_TABLES) {
+                merge(MODIFIED_TABLES, modified);
+            }
+            FixtureStateTracker.notifyModified(modified.keySet());
         }
-        
+
         /**
-         * 発行されたSQL文を取得する。
-         * @return 発行されたSQL文
+         * 更新されたテーブルを取得する。
+         *
+         * @return 更新されたテーブル（キー＝テーブル名、値＝更新に使用されたSQLキーワード）
          */
-        static List<String> getExecuted() {
-            return executedSql;
-
+        static Map<String, Set<String>> getModifiedTables() {
+            synchronized (MODIFIED_TABLES) {
+                Map<String, Set<String>> copy = new HashMap<String, Set<String>>(MODIFIED_TABLES.size());
+                merge(copy, MODIFIED_TABLES);
+                return copy;
+            }
         }
 
         /**
          * SQL文の監視を開始する。
          */
         static void begin() {
-            executedSql = new ArrayList<String>();
+            synchronized (MODIFIED_TABLES) {
+                MODIFIED_TABLES.clear();
+            }
         }
 
+        /**
+         * 更新されたテーブルをマージする。
+         *
+         * @param dest   マージ先
+         * @param source マージ元
+         */
+        static void merge(Map<String, Set<String>> dest, Map<String, Set<String>> source) {
+            for (Map.Entry<String, Set<String>> entry : source.entrySet()) {
+                Set<String> verbs = dest.get(entry.getKey());
+                if (verbs == null) {
+                    verbs = new TreeSet<String>();
+                    dest.put(entry.getKey(), verbs);
+                }
+                verbs.addAll(entry.getValue());
+            }
+        }
     }
 
     /**
      * テーブル複製クラス<br/>
      * 指定されたテーブル全てを、コピー元スキーマからコピー先スキーマへコピーする。
+     * コピー先テーブルのデータの削除方法は、{@literal dbInfo}というキーで登録された
+     * {@link GenericJdbcDbInfo}の設定に従う。
      *
      * @author T.Kawasaki
      */
     static class TableDuplicator {
 
+        /** テーブルのデータの削除方法を取得するデータベース情報のキー */
+        private static final String DB_INFO_KEY = "dbInfo";
+
         /** 複製対象テーブル一覧 */
         private final Set<String> targetTableNames;
 
@@ -291,6 +375,15 @@ public class MasterDataRestorer extends TestEventListener.Template {
         /** コピー先スキーマ名 */
         private final String destinationSchema;
 
+        /** テーブルのデータの削除方法 */
+        private final TableClearingStrategy clearingStrategy;
+
+        /** データベース情報（取得できない場合はnull） */
+        private final DbInfo dbInfo;
+
+        /** テーブル全件のコピーに切り替える変更行の割合（負の場合、常にテーブル全件をコピーする） */
+        private double maxChangeRatio = -1;
+
         /**
          * コンストラクタ
          *
@@ -302,6 +395,9 @@ public class MasterDataRestorer extends TestEventListener.Template {
             this.targetTableNames = targetTableNames;
             this.sourceSchema = sourceSchema;
             this.destinationSchema = destinationSchema;
+            Object component = SystemRepository.get(DB_INFO_KEY);
+            this.clearingStrategy = TableClearingStrategy.forDbInfo(component);
+            this.dbInfo = component instanceof DbInfo ? (DbInfo) component : null;
         }
 
         /**
@@ -314,6 +410,16 @@ public class MasterDataRestorer extends TestEventListener.Template {
             this(targetTableNames, sourceSchema, "");
         }
 
+        /**
+         * 変更された行のみを復旧するよう設定する。<br/>
+         * 変更された行の割合が指定された値を超えるテーブルは、テーブル全件をコピーする。
+         *
+         * @param maxChangeRatio テーブル全件のコピーに切り替える変更行の割合
+         */
+        void setMaxChangeRatio(double maxChangeRatio) {
+            this.maxChangeRatio = maxChangeRatio;
+        }
+
         /** 指定されたテーブルをバックアップスキーマから複製する。 */
         void restoreAll() {
             if (targetTableNames.isEmpty()) {
@@ -322,16 +428,46 @@ public class MasterDataRestorer extends TestEventListener.Template {
             new TransactionTemplateInternal(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST) {
                 @Override
                 protected void doInTransaction(TransactionManagerConnection conn) {
-                    List<String> orderedForInsertion = getSortTableNames(targetTableNames, conn);
+                    TableDataSorter sorter = new TableDataSorter(conn.getConnection(), destinationSchema);
+                    List<String> orderedForInsertion
+                            = sorter.sortTableNamesByFK(new ArrayList<String>(targetTableNames));
                     List<String> orderedForDeletion = new ArrayList<String>(orderedForInsertion);
                     Collections.reverse(orderedForDeletion);
-
-                    for (String tableName : orderedForDeletion) {
-                        delete(tableName, conn);
-                    }
-
-                    for (String tableName : orderedForInsertion) {
-                        copy(tableName, conn);
+                    Map<String, TableRowDiff> diffs = getIncrementalRestorable(orderedForInsertion, conn);
+                    excludeChildrenOfFullCopy(orderedForInsertion, diffs, sorter);
+
+                    clearingStrategy.beforeSetUp(conn);
+                    boolean completed = false;
+                    try {
+                        for (String tableName : orderedForDeletion) {
+                            if (!diffs.containsKey(tableName)) {
+                                delete(tableName, conn);
+                            }
+                        }
+
+                        // 差分で復旧するテーブルは、登録・更新を親テーブルから、削除を子テーブルから行う。
+                        // 削除時には、子テーブルの行は復旧済みのため、削除する行を参照していない。
+                        for (String tableName : orderedForInsertion) {
+                            TableRowDiff diff = diffs.get(tableName);
+                            if (diff == null) {
+                                copy(tableName, conn);
+                            } else {
+                                diff.insertMissingRows(conn);
+                                diff.updateChangedRows(conn);
+                            }
+                        }
+                        for (String tableName : orderedForDeletion) {
+                            TableRowDiff diff = diffs.get(tableName);
+                            if (diff != null) {
+                                diff.deleteMissingRows(conn);
+                                LOGGER.logDebug(concat(
+                                        " table [", getDestinationTableName(tableName), "] was restored incrementally ",
+                                        "from [", getSourceTableName(tableName), "]"));
+                            }
+                        }
+                        completed = true;
+                    } finally {
+                        clearingStrategy.afterSetUp(conn, completed);
                     }
                 }
             }
@@ -339,17 +475,57 @@ public class MasterDataRestorer extends TestEventListener.Template {
         }
 
         /**
-         * テーブル名一覧をソートする。
+         * 変更された行のみを復旧できるテーブルを取得する。<br/>
+         * 行の差分を扱えないテーブル、変更された行の割合が閾値を超えるテーブルは含まない。
          *
-         * @param orig ソート対象となるリスト
-         * @param conn コネクション
-         * @return ソート後のリスト
+         * @param tableNames テーブル名一覧
+         * @param conn       コネクション
+         * @return テーブル名をキー、行の差分を値とするMap
          */
-        List<String> getSortTableNames(Collection<String> orig, TransactionManagerConnection conn) {
-            TableDataSorter sorter = new TableDataSorter(conn.getConnection(), destinationSchema);
-            return sorter.sortTableNamesByFK(new ArrayList<String>(orig));
+        private Map<String, TableRowDiff> getIncrementalRestorable(List<String> tableNames, AppDbConnection conn) {
+            Map<String, TableRowDiff> diffs = new HashMap<String, TableRowDiff>();
+            if (maxChangeRatio < 0 || dbInfo == null) {
+                return diffs;
+            }
+            for (String tableName : tableNames) {
+                TableRowDiff diff = TableRowDiff.create(
+                        dbInfo, tableName, getSourceTableName(tableName), getDestinationTableName(tableName));
+                if (diff != null && diff.getChangeRatio(conn) <= maxChangeRatio) {
+                    diffs.put(tableName, diff);
+                }
+            }
+            return diffs;
         }
 
+        /**
+         * テーブル全件をコピーする親テーブルを参照するテーブルを、変更された行のみを復旧するテーブルから除外する。<br/>
+         * テーブル全件をコピーする親テーブルは全件削除されるため、子テーブルの行を残すと外部キー制約に違反する。
+         * 親テーブルから順に判定するため、除外したテーブルの子テーブルも除外される。
+         *
+         * @param orderedForInsertion 登録順（親テーブルから順）のテーブル名一覧
+         * @param diffs               テーブル名をキー、行の差分を値とするMap（除外したテーブルは削除される）
+         * @param sorter              テーブルの依存関係を取得するクラス
+         */
+        private static void excludeChildrenOfFullCopy(
+                List<String> orderedForInsertion, Map<String, TableRowDiff> diffs, TableDataSorter sorter) {
+            if (diffs.isEmpty()) {
+                return;
+            }
+            Set<String> fullCopy = new HashSet<String>();
+            for (String tableName : orderedForInsertion) {
+                if (!diffs.containsKey(tableName)) {
+                    fullCopy.add(tableName.toUpperCase());
+                    continue;
+                }
+                for (String parent : sorter.getParentTables(tableName)) {
+                    if (fullCopy.contains(parent)) {
+                        diffs.remove(tableName);
+                        fullCopy.add(tableName.toUpperCase());
+                        break;
+                    }
+                }
+            }
+        }
 
         /**
          * テーブルを削除する。
@@ -418,14 +594,9 @@ public class MasterDataRestorer extends TestEventListener.Template {
          *
          * @param tableName 削除対象テーブル名
          * @param conn      DB接続
-         * @return 削除件数
          */
-        private int deleteTable(String tableName, AppDbConnection conn) {
-            String deleteSql = concat(
-                    "delete ",
-                    "from ",
-                    tableName);
-            return conn.prepareStatement(deleteSql).executeUpdate();
+        private void deleteTable(String tableName, AppDbConnection conn) {
+            clearingStrategy.clear(conn, tableName);
         }
 
         /**
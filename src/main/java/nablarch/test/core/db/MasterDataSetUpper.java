@@ -14,19 +14,41 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static nablarch.core.util.Builder.concat;
 
 /**
  * マスタデータ投入クラス。
  * <p>
- * 最初に、処理対象テーブルのデータ削除（DELETE）を行う。
+ * 最初に、処理対象テーブルのデータ削除（DELETE、または{@link GenericJdbcDbInfo}に設定された削除方法）を行う。
  * その後、処理対象テーブルのデータ投入（INSERT）を行う。
  * 同一のテーブルのデータが複数含まれる場合は、
  * 先のデータが投入され、後のデータが追加される（一意性制約違反が無い場合）。
  * </p>
+ * <p>
+ * 並列度（{@link #setParallelism(int)}、起動引数{@literal --parallelism:並列度}）に2以上を指定した場合、
+ * マスタデータファイルの読み込みと、データ投入を並列に行う。
+ * データ投入は、テーブルの依存関係（FK）の階層ごとに行い、同じ階層のテーブルを
+ * それぞれ別のコネクション（トランザクション）で並列に投入する。
+ * 各階層の投入がコミットされてから次の階層の投入を開始するため、
+ * 子テーブルの投入時には親テーブルのデータがコミット済みとなる。
+ * </p>
+ * <p>
+ * 並列に投入する場合、処理全体は1つのトランザクションとならない（アトミックではない）。
+ * 削除は投入の開始前にコミットされ、各テーブルの投入もそれぞれコミットされるため、
+ * 途中で投入に失敗した場合、処理対象テーブルは空、または一部のみ投入された状態のまま残る。
+ * 並列度が1（デフォルト）の場合は、削除と投入を1つのトランザクションで行うため、
+ * 失敗時には全てロールバックされる。
+ * </p>
  *
  * @author T.Kawasaki
  */
@@ -38,9 +60,15 @@ public class MasterDataSetUpper {
     /** バックアップスキーマ名 */
     private final String backUpSchemaName;
 
+    /** 並列度を指定する起動引数の接頭辞 */
+    private static final String PARALLELISM_OPTION = "--parallelism:";
+
     /** セットアップ完了テーブル */
     private Set<String> tablesFinished = new HashSet<String>();
 
+    /** 並列度 */
+    private int parallelism = 1;
+
     /**
      * コンストラクタ
      * @param masterDataFiles マスタデータファイルパス
@@ -57,6 +85,8 @@ public class MasterDataSetUpper {
      * <li>コンポーネント設定ファイルのパス(任意)
      * <li>マスターデータファイルのパス(任意)
      * </ol>
+     * オプションとして、{@literal --backUpSchema:バックアップスキーマ名}、
+     * {@literal --parallelism:並列度}を指定できる。
      *
      * @param args プログラム引数
      */
@@ -74,10 +104,15 @@ public class MasterDataSetUpper {
         // 2番目以降の起動引数をマスタデータファイルとして扱う
         List<File> masterDataFiles = new ArrayList<File>();
         String backUpSchema = null;
+        String parallelism = null;
         for (int i = 1; i < args.length; i++) {
             if (args[i].startsWith("--backUpSchema:")) {
                 backUpSchema = args[i].substring("--backUpSchema:".length());
-                break;
+                continue;
+            }
+            if (args[i].startsWith(PARALLELISM_OPTION)) {
+                parallelism = args[i].substring(PARALLELISM_OPTION.length());
+                continue;
             }
             File file = new File(args[i]);
             if (!file.exists()) {
@@ -88,6 +123,9 @@ public class MasterDataSetUpper {
 
         initializeRepository(configFilePath);  // 自動テスト全実行用
         MasterDataSetUpper masterDataSetUpper = new MasterDataSetUpper(masterDataFiles, backUpSchema);
+        if (parallelism != null) {
+            masterDataSetUpper.setParallelism(Integer.parseInt(parallelism));
+        }
         masterDataSetUpper.setUpMasterData();
     }
     
@@ -101,10 +139,35 @@ public class MasterDataSetUpper {
         SystemRepository.load(new DiContainer(loader));
     }
 
+    /**
+     * 並列度を設定する。<br/>
+     * 2以上を設定した場合、マスタデータファイルの読み込みと、データ投入を並列に行う。
+     * デフォルトは1（並列に行わない）である。
+     * <p>
+     * 2以上を設定した場合、処理はアトミックではなくなる。
+     * 削除は投入の前にコミットされるため、投入に失敗した場合、
+     * 処理対象テーブルは空、または一部のみ投入された状態のまま残る。
+     * </p>
+     *
+     * @param parallelism 並列度
+     * @throws IllegalArgumentException 1未満の値が設定された場合
+     */
+    public void setParallelism(int parallelism) throws IllegalArgumentException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "parallelism must be greater than zero. but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
     /** マスタデータ投入を行う。 */
     public void setUpMasterData() {
         List<TableData> all = getAllTableDataInFiles(masterDataFiles);
-        replaceAll(all);
+        if (parallelism > 1) {
+            replaceAllInParallel(all);
+        } else {
+            replaceAll(all);
+        }
 
         for (TableData table : all) {
             tablesFinished.add(table.getTableName());
@@ -116,6 +179,9 @@ public class MasterDataSetUpper {
     }
 
     private List<TableData> getAllTableDataInFiles(List<File> files) {
+        if (parallelism > 1) {
+            preloadInParallel(files);
+        }
         List<TableData> all = new ArrayList<TableData>();
         for (File file : files) {
             all.addAll(getAllTableData(file));
@@ -143,10 +209,174 @@ public class MasterDataSetUpper {
         new TransactionTemplateInternal(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST_FW) {
             @Override
             protected void doInTransaction(TransactionManagerConnection conn) {
-                deleteAll(allTables, conn);
-                insertAll(allTables, conn);
+                TableClearingStrategy clearingStrategy = TableClearingStrategy.forTables(allTables);
+                clearingStrategy.beforeSetUp(conn);
+                boolean completed = false;
+                try {
+                    deleteAll(allTables, conn);
+                    insertAll(allTables, conn);
+                    completed = true;
+                } finally {
+                    clearingStrategy.afterSetUp(conn, completed);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * テーブルデータの置き換えを並列に行う。<br/>
+     * 削除を1つのトランザクションで行った後、テーブルの依存関係（FK）の階層ごとに、
+     * 同じ階層のテーブルをテーブル単位のトランザクションで並列に投入する。
+     *
+     * @param allTables 置き換えるテーブル
+     */
+    void replaceAllInParallel(final List<TableData> allTables) {
+        final List<List<TableData>> levels = new ArrayList<List<TableData>>();
+        new TransactionTemplateInternal(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST_FW) {
+            @Override
+            protected void doInTransaction(TransactionManagerConnection conn) {
+                TableClearingStrategy clearingStrategy = TableClearingStrategy.forTables(allTables);
+                clearingStrategy.beforeSetUp(conn);
+                boolean completed = false;
+                try {
+                    deleteAll(allTables, conn);
+                    completed = true;
+                } finally {
+                    clearingStrategy.afterSetUp(conn, completed);
+                }
+                levels.addAll(TableDataSorter.groupByLevel(allTables, conn));
             }
         }.execute();
+        loadMetaData(allTables);
+
+        for (List<TableData> level : levels) {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final List<TableData> tables : groupByTableName(level)) {
+                tasks.add(new Callable<Void>() {
+                    public Void call() {
+                        insertInTransaction(tables);
+                        return null;
+                    }
+                });
+            }
+            runInParallel(tasks);
+        }
+    }
+
+    /**
+     * 投入するテーブルのメタデータを、呼び出し元スレッドで取得しておく。<br/>
+     * {@link DbInfo}の実装はメタデータを遅延して取得しキャッシュするが、
+     * そのキャッシュは複数スレッドからの同時更新を考慮していないため、
+     * 並列投入の開始前に全てのテーブルのメタデータをキャッシュしておく。
+     *
+     * @param tables 投入するテーブル
+     */
+    private static void loadMetaData(List<TableData> tables) {
+        for (TableData table : tables) {
+            DbInfo dbInfo = table.getDbInfo();
+            String tableName = table.getTableName();
+            dbInfo.getPrimaryKeys(tableName);
+            for (String column : dbInfo.getColumns(tableName)) {
+                dbInfo.getColumnType(tableName, column);
+                dbInfo.getColumnLength(tableName, column);
+                dbInfo.isComputedColumn(tableName, column);
+            }
+        }
+    }
+
+    /**
+     * 新たなトランザクションで、テーブルデータを投入する。
+     *
+     * @param tables 投入するテーブル
+     */
+    private void insertInTransaction(final List<TableData> tables) {
+        new TransactionTemplateInternal(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST_FW) {
+            @Override
+            protected void doInTransaction(TransactionManagerConnection conn) {
+                TableClearingStrategy clearingStrategy = TableClearingStrategy.forTables(tables);
+                clearingStrategy.beforeSetUp(conn);
+                boolean completed = false;
+                try {
+                    for (TableData table : tables) {
+                        table.insertData(conn);
+                    }
+                    completed = true;
+                } finally {
+                    clearingStrategy.afterSetUp(conn, completed);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * テーブルデータをテーブル名ごとにまとめる。<br/>
+     * 同一のテーブルのデータが複数含まれる場合、元の順序で投入されるようにするためである。
+     *
+     * @param tables テーブルデータ
+     * @return テーブル名ごとのテーブルデータ
+     */
+    private static List<List<TableData>> groupByTableName(List<TableData> tables) {
+        Map<String, List<TableData>> grouped = new LinkedHashMap<String, List<TableData>>();
+        for (TableData table : tables) {
+            String tableName = table.getTableName().toUpperCase();
+            List<TableData> sameTable = grouped.get(tableName);
+            if (sameTable == null) {
+                sameTable = new ArrayList<TableData>();
+                grouped.put(tableName, sameTable);
+            }
+            sameTable.add(table);
+        }
+        return new ArrayList<List<TableData>>(grouped.values());
+    }
+
+    /**
+     * マスタデータファイルを並列に読み込み、ブックのキャッシュに格納する。
+     *
+     * @param files マスタデータファイル
+     */
+    private void preloadInParallel(List<File> files) {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final File file : files) {
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    PoiXlsReader.preload(file);
+                    return null;
+                }
+            });
+        }
+        runInParallel(tasks);
+    }
+
+    /**
+     * タスクを並列に実行し、全てのタスクの完了を待つ。<br/>
+     * いずれかのタスクで例外が発生した場合、全てのタスクの完了後に、最初のタスクの例外を送出する。
+     *
+     * @param tasks タスク
+     */
+    private void runInParallel(List<Callable<Void>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("master data set up was interrupted.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -182,7 +412,7 @@ public class MasterDataSetUpper {
      * @return マスタデータファイル内の全テーブルデータ
      */
     List<TableData> getAllTableData(File masterDataFile) {
-        Set<String> sheets = PoiXlsReader.getSheetNames(masterDataFile);
+        Set<String> sheets = PoiXlsReader.getSheetNames(masterDataFile.getAbsoluteFile());
         List<TableData> allTables = new ArrayList<TableData>();
         String dir = getMasterDataDir(masterDataFile);
         TestDataParser parser = SystemRepository.get("testDataParser");
@@ -0,0 +1,83 @@
+package nablarch.test.core.db;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 複数行を1つのINSERT文で登録するためのSQL方言。<br/>
+ * テストデータの投入時に、データベースとのやりとりの回数を削減するために使用する。
+ * 1つのINSERT文で登録する行数は、バッチサイズと、バインド変数の数の上限から決定する。
+ *
+ * @see GenericJdbcDbInfo#setMultiRowInsertDialect(MultiRowInsertDialect)
+ */
+@Published(tag = "architect")
+public abstract class MultiRowInsertDialect {
+
+    /** 1つのINSERT文で使用できるバインド変数の数の上限 */
+    private int maxParameters = 2000;
+
+    /**
+     * 1つのINSERT文で登録する行数を取得する。
+     *
+     * @param columnCount 1行あたりのカラム数
+     * @param batchSize   バッチサイズ
+     * @return 1つのINSERT文で登録する行数
+     */
+    public int getRowsPerStatement(int columnCount, int batchSize) {
+        if (columnCount <= 0) {
+            return 1;
+        }
+        return Math.max(1, Math.min(batchSize, maxParameters / columnCount));
+    }
+
+    /**
+     * 複数行を登録するINSERT文を作成する。
+     *
+     * @param tableName テーブル名
+     * @param columns   カラム名
+     * @param rowCount  登録する行数
+     * @return INSERT文（バインド変数は行ごとにカラムの順で並ぶこと）
+     */
+    public abstract String createInsertStatement(String tableName, String[] columns, int rowCount);
+
+    /**
+     * 1つのINSERT文で使用できるバインド変数の数の上限を設定する。<br/>
+     * デフォルトは2000。
+     *
+     * @param maxParameters バインド変数の数の上限
+     */
+    public void setMaxParameters(int maxParameters) {
+        if (maxParameters < 1) {
+            throw new IllegalArgumentException("maxParameters must be positive. but was [" + maxParameters + "]");
+        }
+        this.maxParameters = maxParameters;
+    }
+
+    /**
+     * カラム名をカンマ区切りで追加する。
+     *
+     * @param sb      追加先
+     * @param columns カラム名
+     * @return 追加先
+     */
+    protected static StringBuilder appendColumns(StringBuilder sb, String[] columns) {
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "" : ",").append(columns[i]);
+        }
+        return sb;
+    }
+
+    /**
+     * 1行分のバインド変数を、括弧で囲んで追加する。
+     *
+     * @param sb          追加先
+     * @param columnCount カラム数
+     * @return 追加先
+     */
+    protected static StringBuilder appendPlaceholders(StringBuilder sb, int columnCount) {
+        sb.append('(');
+        for (int i = 0; i < columnCount; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(')');
+    }
+}
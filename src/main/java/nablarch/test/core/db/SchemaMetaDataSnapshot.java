@@ -0,0 +1,397 @@
+package nablarch.test.core.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.StringUtil;
+
+import static nablarch.core.util.Builder.concat;
+
+/**
+ * スキーマのメタデータをファイルに保存し、テスト実行プロセス間で再利用するためのスナップショット。<br/>
+ * テーブルのカラム（名前、型、桁数）、主キー、ユニークインデックス、および外部キーによる
+ * テーブル間の参照関係を保持する。
+ * <p>
+ * コンポーネント設定ファイルに{@literal nablarch.test.db-metadata-snapshot.file}というキーで
+ * ファイルのパスが設定されている場合に使用する。
+ * スナップショットはスキーマごとに、設定されたパスの末尾に{@literal .}とスキーマ名（大文字）を付与したファイル
+ * （例えば、{@literal metadata.ser.SCHEMA1}）に保存する。スキーマ名が空文字の場合は、設定されたパスに保存する。
+ * ファイルが存在しない場合は、データベースから取得したメタデータを保存する。
+ * 以降のプロセスでは、ファイルから読み込むことで、データベースへのメタデータ取得を省略する。
+ * </p>
+ * <p>
+ * スナップショットは、接続先（URL、ユーザ）、スキーマ、および{@literal nablarch.test.db-metadata-snapshot.validation-query}
+ * に設定したSQL文の実行結果が一致する場合のみ使用する。
+ * このSQL文には、スキーマの変更を検知できる結果を返すものを設定する（例えば、Oracleであれば
+ * {@code SELECT MAX(LAST_DDL_TIME) FROM USER_OBJECTS}）。
+ * SQL文を設定しない場合、スキーマを変更してもスナップショットは更新されないため、
+ * スキーマを変更した際にはファイルを削除すること。
+ * </p>
+ *
+ * @see GenericJdbcDbInfo
+ * @see TableDataSorter
+ */
+final class SchemaMetaDataSnapshot implements Serializable {
+
+    /** シリアルバージョンUID */
+    private static final long serialVersionUID = 1L;
+
+    /** スナップショットのファイルパスのリポジトリキー */
+    static final String FILE_KEY = "nablarch.test.db-metadata-snapshot.file";
+
+    /** スナップショットの検証に使用するSQL文のリポジトリキー */
+    static final String VALIDATION_QUERY_KEY = "nablarch.test.db-metadata-snapshot.validation-query";
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(SchemaMetaDataSnapshot.class);
+
+    /** 本プロセスで使用中のスナップショット（キー＝保存先のファイルの絶対パス） */
+    private static final Map<String, SchemaMetaDataSnapshot> SNAPSHOTS = new HashMap<String, SchemaMetaDataSnapshot>();
+
+    /** 保存先のファイル */
+    private transient File file;
+
+    /** スナップショットの取得元を識別する値 */
+    private final String fingerprint;
+
+    /** 主キー（テーブルメタデータを取得していない場合はnull） */
+    private HashMap<String, String[]> primaryKeys;
+
+    /** カラム名 */
+    private HashMap<String, String[]> columns;
+
+    /** カラム桁数 */
+    private HashMap<String, HashMap<String, Integer>> lengths;
+
+    /** カラムタイプ */
+    private HashMap<String, HashMap<String, Integer>> types;
+
+    /** ユニークインデックス */
+    private HashMap<String, String[]> uniqueIndices;
+
+    /** 外部キーによる参照関係（要素は、親テーブル、子テーブルの順の配列。取得していない場合はnull） */
+    private ArrayList<String[]> references;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param file        保存先のファイル
+     * @param fingerprint スナップショットの取得元を識別する値
+     */
+    private SchemaMetaDataSnapshot(File file, String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * スナップショットを使用する設定であるか判定する。
+     *
+     * @return 使用する場合、真
+     */
+    static boolean isEnabled() {
+        return StringUtil.hasValue(SystemRepository.getString(FILE_KEY));
+    }
+
+    /**
+     * スナップショットを取得する。<br/>
+     * 本プロセスで初めて取得する場合は、ファイルから読み込む。
+     * ファイルが存在しない、または取得元が一致しない場合は、空のスナップショットを返却する。
+     *
+     * @param conn   コネクション（取得元の検証に使用する）
+     * @param schema スキーマ
+     * @return スナップショット（使用しない設定の場合はnull）
+     */
+    static SchemaMetaDataSnapshot get(Connection conn, String schema) {
+        String path = SystemRepository.getString(FILE_KEY);
+        if (StringUtil.isNullOrEmpty(path) || schema == null) {
+            return null;
+        }
+        File file = getFile(path, schema);
+        String key = file.getAbsolutePath();
+        synchronized (SNAPSHOTS) {
+            SchemaMetaDataSnapshot snapshot = SNAPSHOTS.get(key);
+            if (snapshot == null) {
+                String fingerprint = createFingerprint(conn, schema);
+                snapshot = read(file, fingerprint);
+                if (snapshot == null) {
+                    snapshot = new SchemaMetaDataSnapshot(file, fingerprint);
+                }
+                SNAPSHOTS.put(key, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * スキーマのスナップショットを保存するファイルを取得する。<br/>
+     * 複数のスキーマのスナップショットが互いに上書きしないよう、スキーマごとに別のファイルとする。
+     *
+     * @param path   設定されたファイルのパス
+     * @param schema スキーマ
+     * @return ファイル
+     */
+    static File getFile(String path, String schema) {
+        return new File(schema.length() == 0 ? path : concat(path, ".", schema.toUpperCase()));
+    }
+
+    /** 本プロセスで使用中のスナップショットを破棄する（ファイルは削除しない）。 */
+    static void clear() {
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.clear();
+        }
+    }
+
+    /**
+     * 取得元を識別する値を作成する。
+     *
+     * @param conn   コネクション
+     * @param schema スキーマ
+     * @return 取得元を識別する値
+     */
+    static String createFingerprint(Connection conn, String schema) {
+        StringBuilder fingerprint = new StringBuilder();
+        Statement statement = null;
+        ResultSet rs = null;
+        try {
+            DatabaseMetaData metaData = conn.getMetaData();
+            fingerprint.append(metaData.getURL())
+                       .append('|').append(metaData.getUserName())
+                       .append('|').append(schema.toUpperCase());
+            String query = SystemRepository.getString(VALIDATION_QUERY_KEY);
+            if (StringUtil.hasValue(query)) {
+                statement = conn.createStatement();
+                rs = statement.executeQuery(query);
+                ResultSetMetaData rsMetaData = rs.getMetaData();
+                while (rs.next()) {
+                    for (int i = 1; i <= rsMetaData.getColumnCount(); i++) {
+                        fingerprint.append('|').append(rs.getString(i));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(concat(
+                    "can't validate metadata snapshot. schema=[", schema, "]"), e);
+        } finally {
+            closeQuietly(rs, statement);
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * ファイルからスナップショットを読み込む。
+     *
+     * @param file        ファイル
+     * @param fingerprint 取得元を識別する値
+     * @return スナップショット（使用できない場合はnull）
+     */
+    private static SchemaMetaDataSnapshot read(File file, String fingerprint) {
+        if (!file.isFile()) {
+            return null;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            SchemaMetaDataSnapshot snapshot = (SchemaMetaDataSnapshot) in.readObject();
+            if (!fingerprint.equals(snapshot.fingerprint)) {
+                LOGGER.logDebug("metadata snapshot is outdated. file=[" + file.getAbsolutePath() + "]");
+                return null;
+            }
+            snapshot.file = file;
+            return snapshot;
+        } catch (IOException e) {
+            LOGGER.logDebug("can't read metadata snapshot. file=[" + file.getAbsolutePath() + "]", e);
+            return null;
+        } catch (ClassNotFoundException e) {
+            LOGGER.logDebug("can't read metadata snapshot. file=[" + file.getAbsolutePath() + "]", e);
+            return null;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * ファイルに保存する。<br/>
+     * 並行して実行される他のプロセスが書き込み途中のファイルを読み込まないよう、
+     * 一時ファイルに書き込んだ後に置き換える。
+     * 保存に失敗してもテストの実行には影響しないため、例外は送出しない。
+     */
+    private void write() {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = null;
+        ObjectOutputStream out = null;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("could not create directory. dir=[" + dir + "]");
+            }
+            tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeObject(this);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("could not rename file. file=[" + tmp + "]");
+            }
+            tmp = null;
+        } catch (IOException e) {
+            LOGGER.logDebug("can't write metadata snapshot. file=[" + file.getAbsolutePath() + "]", e);
+        } finally {
+            FileUtil.closeQuietly(out);
+            if (tmp != null && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * テーブルのメタデータを保持しているか判定する。
+     *
+     * @return 保持している場合、真
+     */
+    synchronized boolean hasTableMetaData() {
+        return primaryKeys != null;
+    }
+
+    /**
+     * テーブルのメタデータを設定し、ファイルに保存する。
+     *
+     * @param primaryKeys   主キー
+     * @param columns       カラム名
+     * @param lengths       カラム桁数
+     * @param types         カラムタイプ
+     * @param uniqueIndices ユニークインデックス
+     */
+    synchronized void setTableMetaData(Map<String, String[]> primaryKeys,
+                                       Map<String, String[]> columns,
+                                       Map<String, Map<String, Integer>> lengths,
+                                       Map<String, Map<String, Integer>> types,
+                                       Map<String, String[]> uniqueIndices) {
+        this.primaryKeys = new HashMap<String, String[]>(primaryKeys);
+        this.columns = new HashMap<String, String[]>(columns);
+        this.lengths = copyNested(lengths);
+        this.types = copyNested(types);
+        this.uniqueIndices = new HashMap<String, String[]>(uniqueIndices);
+        write();
+    }
+
+    /**
+     * 主キーを取得する。
+     *
+     * @return 主キー（キー＝テーブル名）
+     */
+    synchronized Map<String, String[]> getPrimaryKeys() {
+        return primaryKeys;
+    }
+
+    /**
+     * カラム名を取得する。
+     *
+     * @return カラム名（キー＝テーブル名）
+     */
+    synchronized Map<String, String[]> getColumns() {
+        return columns;
+    }
+
+    /**
+     * カラム桁数を取得する。
+     *
+     * @return カラム桁数（キー＝テーブル名）
+     */
+    synchronized Map<String, ? extends Map<String, Integer>> getLengths() {
+        return lengths;
+    }
+
+    /**
+     * カラムタイプを取得する。
+     *
+     * @return カラムタイプ（キー＝テーブル名）
+     */
+    synchronized Map<String, ? extends Map<String, Integer>> getTypes() {
+        return types;
+    }
+
+    /**
+     * ユニークインデックスを取得する。
+     *
+     * @return ユニークインデックス（キー＝テーブル名）
+     */
+    synchronized Map<String, String[]> getUniqueIndices() {
+        return uniqueIndices;
+    }
+
+    /**
+     * 外部キーによる参照関係を取得する。
+     *
+     * @return 参照関係（要素は、親テーブル、子テーブルの順の配列。保持していない場合はnull）
+     */
+    synchronized List<String[]> getReferences() {
+        return references;
+    }
+
+    /**
+     * 外部キーによる参照関係を設定し、ファイルに保存する。
+     *
+     * @param references 参照関係（要素は、親テーブル、子テーブルの順の配列）
+     */
+    synchronized void setReferences(List<String[]> references) {
+        this.references = new ArrayList<String[]>(references);
+        write();
+    }
+
+    /**
+     * 入れ子のマップを、シリアライズ可能なマップにコピーする。
+     *
+     * @param original コピー元
+     * @return コピー
+     */
+    private static HashMap<String, HashMap<String, Integer>> copyNested(Map<String, Map<String, Integer>> original) {
+        HashMap<String, HashMap<String, Integer>> copy = new HashMap<String, HashMap<String, Integer>>();
+        for (Map.Entry<String, Map<String, Integer>> entry : original.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<String, Integer>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * リソースを解放する。
+     *
+     * @param rs        結果セット
+     * @param statement ステートメント
+     */
+    private static void closeQuietly(ResultSet rs, Statement statement) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (SQLException ignored) {
+            LOGGER.logDebug("failed to close ResultSet.", ignored);
+        }
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException ignored) {
+            LOGGER.logDebug("failed to close Statement.", ignored);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package nablarch.test.core.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * テストデータ投入時に、テーブルのデータを削除する方法を表すクラス。<br/>
+ * 本クラスは{@code DELETE}文でデータを削除する。
+ * <p>
+ * 投入の前後に実行するSQL文を設定することで、投入中に外部キー制約を無効化（または遅延）できる。
+ * 設定例を以下に示す。
+ * <ul>
+ * <li>MySQL：{@code SET FOREIGN_KEY_CHECKS = 0}（投入後に{@code SET FOREIGN_KEY_CHECKS = 1}）</li>
+ * <li>H2：{@code SET REFERENTIAL_INTEGRITY FALSE}（投入後に{@code SET REFERENTIAL_INTEGRITY TRUE}）</li>
+ * <li>PostgreSQL：{@code SET CONSTRAINTS ALL DEFERRED}（遅延可能な制約のみ。投入後のSQL文は不要）</li>
+ * </ul>
+ * </p>
+ *
+ * @see GenericJdbcDbInfo#setTableClearingStrategy(TableClearingStrategy)
+ * @see TruncateTableClearingStrategy
+ */
+@Published(tag = "architect")
+public class TableClearingStrategy {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(TableClearingStrategy.class);
+
+    /** {@link GenericJdbcDbInfo}以外の場合に使用する削除方法 */
+    private static final TableClearingStrategy DEFAULT = new TableClearingStrategy();
+
+    /** 投入前に実行するSQL文 */
+    private List<String> beforeSetUpStatements = Collections.emptyList();
+
+    /** 投入後に実行するSQL文 */
+    private List<String> afterSetUpStatements = Collections.emptyList();
+
+    /**
+     * テーブルのデータを全件削除する。
+     *
+     * @param conn      コネクション
+     * @param tableName テーブル名
+     */
+    public void clear(AppDbConnection conn, String tableName) {
+        conn.prepareStatement(createClearStatement(tableName)).executeUpdate();
+    }
+
+    /**
+     * テーブルのデータを全件削除するSQL文を作成する。
+     *
+     * @param tableName テーブル名
+     * @return SQL文
+     */
+    protected String createClearStatement(String tableName) {
+        return "DELETE FROM " + tableName;
+    }
+
+    /**
+     * 投入前に実行するSQL文を実行する。<br/>
+     * テーブルのデータを削除する前に呼び出される。
+     *
+     * @param conn コネクション
+     */
+    public void beforeSetUp(AppDbConnection conn) {
+        execute(conn, beforeSetUpStatements);
+    }
+
+    /**
+     * 投入後に実行するSQL文を実行する。<br/>
+     * テーブルへのデータ投入後に呼び出される（投入に失敗した場合も呼び出される）。
+     * 投入に失敗した場合、本メソッドで発生した例外はログに出力され、投入時の例外が送出される。
+     *
+     * @param conn コネクション
+     */
+    public void afterSetUp(AppDbConnection conn) {
+        execute(conn, afterSetUpStatements);
+    }
+
+    /**
+     * 投入後に実行するSQL文を実行する。<br/>
+     * 投入に失敗した場合は、投入時の例外を優先するため、SQL文の実行に失敗しても例外を送出せず、ログを出力する。
+     *
+     * @param conn      コネクション
+     * @param completed 投入が正常に終了した場合、真
+     */
+    final void afterSetUp(AppDbConnection conn, boolean completed) {
+        if (completed) {
+            afterSetUp(conn);
+            return;
+        }
+        try {
+            afterSetUp(conn);
+        } catch (RuntimeException e) {
+            LOGGER.logWarn("statement after set up failed. the exception occurred during set up is thrown.", e);
+        }
+    }
+
+    /**
+     * データベース情報に設定された削除方法を取得する。
+     *
+     * @param dbInfo データベース情報
+     * @return {@link GenericJdbcDbInfo}に設定された削除方法（それ以外の場合は{@code DELETE}文で削除する）
+     */
+    static TableClearingStrategy forDbInfo(Object dbInfo) {
+        return dbInfo instanceof GenericJdbcDbInfo
+                ? ((GenericJdbcDbInfo) dbInfo).getTableClearingStrategy()
+                : DEFAULT;
+    }
+
+    /**
+     * テーブルデータに設定された削除方法を取得する。
+     *
+     * @param tables テーブルデータ
+     * @return 先頭のテーブルデータのデータベース情報に設定された削除方法
+     */
+    static TableClearingStrategy forTables(List<TableData> tables) {
+        return forDbInfo(tables.isEmpty() ? null : tables.get(0).getDbInfo());
+    }
+
+    /**
+     * SQL文を順に実行する。
+     *
+     * @param conn       コネクション
+     * @param statements SQL文
+     */
+    private static void execute(AppDbConnection conn, List<String> statements) {
+        for (String statement : statements) {
+            conn.prepareStatement(statement).executeUpdate();
+        }
+    }
+
+    /**
+     * 投入前に実行するSQL文を設定する。<br/>
+     * デフォルトは設定なし。
+     *
+     * @param beforeSetUpStatements 投入前に実行するSQL文
+     */
+    public void setBeforeSetUpStatements(List<String> beforeSetUpStatements) {
+        this.beforeSetUpStatements = new ArrayList<String>(beforeSetUpStatements);
+    }
+
+    /**
+     * 投入後に実行するSQL文を設定する。<br/>
+     * デフォルトは設定なし。
+     *
+     * @param afterSetUpStatements 投入後に実行するSQL文
+     */
+    public void setAfterSetUpStatements(List<String> afterSetUpStatements) {
+        this.afterSetUpStatements = new ArrayList<String>(afterSetUpStatements);
+    }
+}
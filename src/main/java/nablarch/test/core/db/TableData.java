@@ -2,6 +2,7 @@ package nablarch.test.core.db;
 
 import nablarch.core.db.connection.AppDbConnection;
 import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.db.statement.ResultSetIterator;
 import nablarch.core.db.statement.SqlPStatement;
 import nablarch.core.db.statement.SqlRow;
 import nablarch.core.util.BinaryUtil;
@@ -43,6 +44,12 @@ public class TableData implements Cloneable {
     /** デフォルトの日付フォーマット */
     private static final String DEFAULT_DATE_FORMAT = "yyyyMMddHHmmssSSS";
 
+    /** 1行ずつデータを取得する際のフェッチサイズ */
+    private static final int STREAMING_FETCH_SIZE = 500;
+
+    /** データ投入時のデフォルトのバッチサイズ */
+    static final int DEFAULT_INSERT_BATCH_SIZE = 100;
+
     /** データベース情報 */
     private DbInfo dbInfo;
 
@@ -127,56 +134,44 @@ public class TableData implements Cloneable {
     }
 
     /**
-     * テーブルのデータを削除する。
+     * テーブルのデータを削除する。<br/>
+     * 削除方法は、{@link GenericJdbcDbInfo}の設定に従う。
      *
      * @param connection コネクション
      */
     void deleteData(AppDbConnection connection) {
-        SqlPStatement delete = connection.prepareStatement("DELETE FROM " + tableName);
-        delete.executeUpdate();
+        TableClearingStrategy.forDbInfo(dbInfo).clear(connection, tableName);
     }
 
     /**
-     * テーブルにデータを挿入する。
+     * テーブルにデータを挿入する。<br/>
+     * バッチサイズ、複数行INSERTの方言は、{@link GenericJdbcDbInfo}の設定に従う。
      *
      * @param connection コネクション
      */
     void insertData(AppDbConnection connection) {
 
         String[] nonComputedColumns = getNonComputedColumns();
+        ColumnBinder[] binders = createColumnBinders(nonComputedColumns);
+        int batchSize = DEFAULT_INSERT_BATCH_SIZE;
+        MultiRowInsertDialect dialect = null;
+        if (dbInfo instanceof GenericJdbcDbInfo) {
+            batchSize = ((GenericJdbcDbInfo) dbInfo).getInsertBatchSize();
+            dialect = ((GenericJdbcDbInfo) dbInfo).getMultiRowInsertDialect();
+        }
+        if (dialect != null && binders.length > 0 && contents.size() > 1) {
+            insertMultiRows(connection, nonComputedColumns, binders,
+                    dialect.getRowsPerStatement(binders.length, batchSize), dialect);
+            return;
+        }
+
         String insertStatement = createInsertStatement(nonComputedColumns);
         SqlPStatement insert = connection.prepareStatement(insertStatement);
         // データ登録
         for (int rowIndex = 0; rowIndex < contents.size(); rowIndex++) {
-            int bindIndex = 1;
-            SqlRow row = contents.get(rowIndex);
-            for (String columnName : nonComputedColumns) {
-                if (dbInfo.isBinaryTypeColumn(tableName, columnName)) {
-                    byte[] data = null;
-                    if (row.containsKey(columnName)) {
-                        Object o = row.get(columnName);
-                        if (o != null && o.toString().length() != 0) {
-                            data = BinaryUtil.convertHexToBytes(o.toString());
-                        }
-                    } else {
-                        data = BinaryUtil.convertHexToBytes((String) getDefaultValue(columnName));
-                    }
-                    insert.setBytes(bindIndex++, data);
-                } else if (dbInfo.isNumberTypeColumn(tableName, columnName)) {
-                    Object value = convert(row, columnName, rowIndex);
-                    BigDecimal decimal = value == null ? null : new BigDecimal(value.toString());
-                    insert.setBigDecimal(bindIndex++, decimal);
-                } else if (dbInfo.isBooleanTypeColumn(tableName, columnName)) {
-                        insert.setBoolean(bindIndex++,
-                                row.containsKey(columnName) ? row.getBoolean(columnName) : (Boolean) getDefaultValue(columnName));
-                }
-                else {
-                    Object value = convert(row, columnName, rowIndex);
-                    insert.setObject(bindIndex++, value);
-                }
-            }
+            bindRow(insert, binders, 0, rowIndex);
             insert.addBatch();
-            if (insert.getBatchSize() % 100 == 0) {
+            if (insert.getBatchSize() % batchSize == 0) {
                 insert.executeBatch();
             }
         }
@@ -185,37 +180,73 @@ public class TableData implements Cloneable {
     }
 
     /**
-     * {@link SqlPStatement#setObject(int, Object)}用に変換する。 元の値が存在しない場合（省略されている場合）、
-     * {@link DefaultValues}を用いてデフォルト値を返却する。
+     * 複数行を1つのINSERT文で登録する。
      *
-     * @param row        変換対象カラムを含む行
-     * @param columnName 変換対象カラム名
-     * @param index      全レコード中のインデックス番号
-     * @return 変換後の値
-     */
-    private Object convert(SqlRow row, String columnName, int index) {
-
-        if (!row.containsKey(columnName)) {
-            // カラムが省略されている場合はデフォルト値を返却
-            return getDefaultValue(columnName);
+     * @param connection         コネクション
+     * @param nonComputedColumns 自動計算以外のカラム
+     * @param binders            値の設定方法
+     * @param rowsPerStatement   1つのINSERT文で登録する行数
+     * @param dialect            複数行INSERTの方言
+     */
+    private void insertMultiRows(AppDbConnection connection, String[] nonComputedColumns, ColumnBinder[] binders,
+                                 int rowsPerStatement, MultiRowInsertDialect dialect) {
+        SqlPStatement insert = null;
+        int rowIndex = 0;
+        while (rowIndex < contents.size()) {
+            int rowCount = Math.min(rowsPerStatement, contents.size() - rowIndex);
+            if (insert == null || rowCount < rowsPerStatement) {
+                // 行数が同じ間は、同じINSERT文を使用する（最後の端数の行のみ別のINSERT文となる）
+                insert = connection.prepareStatement(
+                        dialect.createInsertStatement(tableName, nonComputedColumns, rowCount));
+            }
+            for (int i = 0; i < rowCount; i++) {
+                bindRow(insert, binders, i * binders.length, rowIndex++);
+            }
+            insert.executeUpdate();
         }
+    }
 
-        Object orig = row.get(columnName);
-        if (orig == null) {
-            return null;
+    /**
+     * 1行分の値を設定する。
+     *
+     * @param insert   INSERT文
+     * @param binders  値の設定方法
+     * @param offset   バインド変数のインデックスのオフセット
+     * @param rowIndex 全レコード中のインデックス番号
+     */
+    private void bindRow(SqlPStatement insert, ColumnBinder[] binders, int offset, int rowIndex) {
+        SqlRow row = contents.get(rowIndex);
+        for (int i = 0; i < binders.length; i++) {
+            binders[i].bind(insert, offset + i + 1, row, rowIndex);
         }
-        if (dbInfo.isDateTypeColumn(tableName, columnName)) {
-            try {
-                return toTimestamp(orig);
-            } catch (ParseException e) {
-                throw new RuntimeException(Builder.concat(
-                        "invalid date format. tableName = [", tableName, "]",
-                        ":rowNo = [", (index + 1), "]", ":columnName = [", columnName, "]",
-                        ":value = [", orig, "]")
-                        , e);
+    }
+
+    /**
+     * カラムごとの値の設定方法を作成する。<br/>
+     * カラムの型の判定は、行ごとではなくテーブルごとに一度だけ行う。
+     *
+     * @param columns 値を設定するカラム
+     * @return 値の設定方法（カラムの順）
+     */
+    private ColumnBinder[] createColumnBinders(String[] columns) {
+        ColumnBinder[] binders = new ColumnBinder[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String columnName = columns[i];
+            BindType bindType;
+            if (dbInfo.isBinaryTypeColumn(tableName, columnName)) {
+                bindType = BindType.BINARY;
+            } else if (dbInfo.isNumberTypeColumn(tableName, columnName)) {
+                bindType = BindType.NUMBER;
+            } else if (dbInfo.isBooleanTypeColumn(tableName, columnName)) {
+                bindType = BindType.BOOLEAN;
+            } else if (dbInfo.isDateTypeColumn(tableName, columnName)) {
+                bindType = BindType.DATE;
+            } else {
+                bindType = BindType.OTHER;
             }
+            binders[i] = new ColumnBinder(columnName, bindType);
         }
-        return orig.toString();
+        return binders;
     }
 
     /**
@@ -358,6 +389,62 @@ public class TableData implements Cloneable {
         convertSqlRow();
     }
 
+    /**
+     * DBからデータを1行ずつ取得し、コールバックに渡す。<br/>
+     * {@link #loadData()}とは異なり、テーブルの全データをメモリ上に保持しない。
+     * データは主キーの順に、前方向にのみ読み進めるカーソルで取得する。
+     * コールバックには、取得した1行のみを保持する本オブジェクトの複製が渡される
+     * （値は{@link #loadData()}と同様に変換される）。
+     *
+     * @param callback コールバック
+     */
+    public void loadDataByRow(final RowCallback callback) {
+
+        String[] colNames = getColumnNames();
+        if (colNames.length == 0) {
+            return;
+        }
+
+        final String sql = createSelectStatement(tableName, colNames, getPrimaryKeys());
+        (new TransactionTemplateInternal(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST) {
+            @Override
+            protected void doInTransaction(TransactionManagerConnection conn) {
+                SqlPStatement statement = conn.prepareStatement(sql);
+                statement.setFetchSize(STREAMING_FETCH_SIZE);
+                ResultSetIterator rs = statement.executeQuery();
+                try {
+                    Set<String> binaryColumns = null;
+                    for (SqlRow row : rs) {
+                        if (binaryColumns == null) {
+                            binaryColumns = getBinaryColumns(row);
+                        }
+                        convertBinary(row, binaryColumns);
+                        convertSqlRow(row);
+                        TableData single = getClone();
+                        single.contents = new ArrayList<SqlRow>(1);
+                        single.contents.add(row);
+                        callback.onRow(single);
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+        }).execute();
+    }
+
+    /**
+     * {@link #loadDataByRow(RowCallback)}で取得した行を受け取るコールバック。
+     */
+    @Published(tag = "architect")
+    public interface RowCallback {
+        /**
+         * 取得した行を受け取る。
+         *
+         * @param row 取得した1行のみを保持するテーブルデータ
+         */
+        void onRow(TableData row);
+    }
+
 
     /**
      * カラムの中身のデータ型変換などを行う。
@@ -378,16 +465,26 @@ public class TableData implements Cloneable {
      */
     private void convertSqlRow() {
         for (SqlRow content : contents) {
-            for (Map.Entry<String, Object> entry : content.entrySet()) {
-                final Object value = entry.getValue();
-                if (value instanceof Clob) {
-                    final String string = clob2String((Clob) value);
-                    content.put(entry.getKey(), string);
-                }
-                if (value instanceof BigDecimal) {
-                    final BigDecimal ret = trimScale((BigDecimal) value);
-                    content.put(entry.getKey(), ret);
-                }
+            convertSqlRow(content);
+        }
+    }
+
+    /**
+     * 1行分のカラムの中身のデータ型変換などを行う。
+     *
+     * @param content 対象レコード
+     * @see #convertSqlRow()
+     */
+    private void convertSqlRow(SqlRow content) {
+        for (Map.Entry<String, Object> entry : content.entrySet()) {
+            final Object value = entry.getValue();
+            if (value instanceof Clob) {
+                final String string = clob2String((Clob) value);
+                content.put(entry.getKey(), string);
+            }
+            if (value instanceof BigDecimal) {
+                final BigDecimal ret = trimScale((BigDecimal) value);
+                content.put(entry.getKey(), ret);
             }
         }
     }
@@ -579,6 +676,31 @@ public class TableData implements Cloneable {
         }
     }
 
+    /**
+     * 行データも含めて複製した、本オブジェクトのコピーを取得する。<br/>
+     * {@link #getClone()}とは異なり、コピーに対する値の変更は本オブジェクトに影響しない。
+     * 本メソッドは、テストデータから作成したオブジェクト（{@link #addRow(List)}でデータを追加したもの）
+     * を対象とする。
+     *
+     * @return コピー
+     */
+    public TableData getDeepCopy() {
+        TableData copy = getClone();
+        if (columnNames != null) {
+            copy.columnNames = columnNames.clone();
+        }
+        copy.contents = new ArrayList<SqlRow>(contents.size());
+        if (!contents.isEmpty()) {
+            // カラム型は全行で共通
+            Map<String, Integer> colTypes = getColumnTypes();
+            for (SqlRow row : contents) {
+                copy.contents.add(new SqlRow(new HashMap<String, Object>(row), colTypes,
+                                             new HashMap<String, String>()));
+            }
+        }
+        return copy;
+    }
+
     /**
      * 本オブジェクトのカラム値を変更する。
      *
@@ -739,4 +861,149 @@ public class TableData implements Cloneable {
     public DbInfo getDbInfo() {
         return dbInfo;
     }
+
+    /** カラムへの値の設定方法 */
+    private enum BindType {
+        /** バイナリ型（16進数表記の文字列をバイト配列に変換して設定する） */
+        BINARY,
+        /** 数値型（{@link BigDecimal}に変換して設定する） */
+        NUMBER,
+        /** 真偽値型 */
+        BOOLEAN,
+        /** 日付型（{@link Timestamp}に変換して設定する） */
+        DATE,
+        /** その他（文字列として設定する） */
+        OTHER
+    }
+
+    /**
+     * 1カラム分の値を{@link SqlPStatement}に設定するクラス。<br/>
+     * カラムの型に応じた設定方法と、カラムが省略された場合のデフォルト値を保持する。
+     * デフォルト値は、最初に必要になった時点で一度だけ取得する。
+     */
+    private final class ColumnBinder {
+
+        /** カラム名 */
+        private final String columnName;
+
+        /** 値の設定方法 */
+        private final BindType bindType;
+
+        /** デフォルト値を取得済みか否か */
+        private boolean defaultResolved = false;
+
+        /** デフォルト値（設定方法に応じて変換済み） */
+        private Object defaultValue;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param columnName カラム名
+         * @param bindType   値の設定方法
+         */
+        ColumnBinder(String columnName, BindType bindType) {
+            this.columnName = columnName;
+            this.bindType = bindType;
+        }
+
+        /**
+         * 値を設定する。
+         *
+         * @param insert    INSERT文
+         * @param bindIndex バインド変数のインデックス
+         * @param row       設定する行
+         * @param rowIndex  全レコード中のインデックス番号
+         */
+        void bind(SqlPStatement insert, int bindIndex, SqlRow row, int rowIndex) {
+            if (!row.containsKey(columnName)) {
+                // カラムが省略されている場合はデフォルト値を設定
+                bindDefault(insert, bindIndex);
+                return;
+            }
+            Object orig = row.get(columnName);
+            switch (bindType) {
+            case BINARY:
+                insert.setBytes(bindIndex, orig == null || orig.toString().length() == 0
+                        ? null
+                        : BinaryUtil.convertHexToBytes(orig.toString()));
+                break;
+            case NUMBER:
+                insert.setBigDecimal(bindIndex, orig == null ? null : new BigDecimal(orig.toString()));
+                break;
+            case BOOLEAN:
+                insert.setBoolean(bindIndex, row.getBoolean(columnName));
+                break;
+            case DATE:
+                insert.setObject(bindIndex, orig == null ? null : toTimestamp(orig, rowIndex));
+                break;
+            default:
+                insert.setObject(bindIndex, orig == null ? null : orig.toString());
+            }
+        }
+
+        /**
+         * デフォルト値を設定する。
+         *
+         * @param insert    INSERT文
+         * @param bindIndex バインド変数のインデックス
+         */
+        private void bindDefault(SqlPStatement insert, int bindIndex) {
+            Object value = getDefault();
+            switch (bindType) {
+            case BINARY:
+                insert.setBytes(bindIndex, (byte[]) value);
+                break;
+            case NUMBER:
+                insert.setBigDecimal(bindIndex, (BigDecimal) value);
+                break;
+            case BOOLEAN:
+                insert.setBoolean(bindIndex, (Boolean) value);
+                break;
+            default:
+                insert.setObject(bindIndex, value);
+            }
+        }
+
+        /**
+         * 設定方法に応じて変換したデフォルト値を取得する。
+         *
+         * @return デフォルト値
+         */
+        private Object getDefault() {
+            if (!defaultResolved) {
+                Object value = getDefaultValue(columnName);
+                switch (bindType) {
+                case BINARY:
+                    defaultValue = BinaryUtil.convertHexToBytes((String) value);
+                    break;
+                case NUMBER:
+                    defaultValue = value == null ? null : new BigDecimal(value.toString());
+                    break;
+                default:
+                    defaultValue = value;
+                }
+                defaultResolved = true;
+            }
+            return defaultValue;
+        }
+
+        /**
+         * タイムスタンプに変換する。
+         *
+         * @param orig     元の値
+         * @param rowIndex 全レコード中のインデックス番号
+         * @return タイムスタンプ
+         */
+        private Timestamp toTimestamp(Object orig, int rowIndex) {
+            try {
+                return TableData.this.toTimestamp(orig);
+            } catch (ParseException e) {
+                throw new RuntimeException(Builder.concat(
+                        "invalid date format. tableName = [", tableName, "]",
+                        ":rowNo = [", (rowIndex + 1), "]", ":columnName = [", columnName, "]",
+                        ":value = [", orig, "]")
+                        , e);
+            }
+        }
+    }
 }
@@ -4,10 +4,16 @@ import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import nablarch.core.db.connection.TransactionManagerConnection;
 import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.map.CaseInsensitiveMap;
 
 /**
  * {@link TableData}をソートするクラス。
@@ -17,6 +23,10 @@ import nablarch.core.repository.SystemRepository;
  * 真偽値{@code true}が設定されていた場合、ソートが行われず処理速度が改善される。
  * （DBにFKが設定されていない場合にのみ使用すること。）
  *
+ * コンポーネント定義に{@literal nablarch.test.db-metadata-snapshot.file}というキーで
+ * ファイルのパスが設定されていた場合、テーブルの依存関係はそのファイルに保存し、
+ * 以降のプロセスではファイルから読み込む（{@link SchemaMetaDataSnapshot}を参照）。
+ *
  * @author T.Kawasaki
  * @see EntityDependencyParser
  */
@@ -30,6 +40,13 @@ class TableDataSorter {
     /** ソートをスキップするかどうか判定するためのキー */
     private static final String SUPPRESS_TABLE_SORT_KEY = "nablarch.suppress-table-sort";
 
+    /**
+     * スキーマごとのテーブルの依存関係（キー＝スキーマ名）。
+     * 外部キーの依存関係の解析は全テーブルのメタデータを取得するため、スキーマごとに一度だけ行い、
+     * 全ての{@link TableDataSorter}で共有する。
+     */
+    private static final Map<String, Dependencies> DEPENDENCIES_CACHE = new HashMap<String, Dependencies>();
+
     /**
      * テーブルの依存関係（FK）に則ってソートを行い、その結果を返却する（非破壊的メソッド）。
      * 親テーブルほど先頭に位置する。
@@ -39,14 +56,68 @@ class TableDataSorter {
      * @return ソート後のリスト
      */
     static List<TableData> sort(List<TableData> unordered, TransactionManagerConnection tranConn) {
+        return create(tranConn).sortTableDataByFK(unordered);
+    }
+
+    /**
+     * テーブルの依存関係（FK）の階層ごとに、テーブルデータをグループ化する（非破壊的メソッド）。<br/>
+     * 親テーブルの階層ほど先頭に位置する。同じグループのテーブル間には依存関係がない。
+     * グループ内のテーブルデータは、元のリストの順序を保つ。
+     * ソートが抑制されている場合は、元のリストの順序でテーブルデータ1つずつのグループとする。
+     *
+     * @param unordered グループ化前のリスト
+     * @param tranConn DBのメタ情報を取得するためのコネクション
+     * @return 階層ごとのテーブルデータ
+     */
+    static List<List<TableData>> groupByLevel(List<TableData> unordered, TransactionManagerConnection tranConn) {
+        List<List<TableData>> levels = new ArrayList<List<TableData>>();
+        if (isSortSuppressed()) {
+            for (TableData table : unordered) {
+                levels.add(Collections.singletonList(table));
+            }
+            return levels;
+        }
+        TableDataSorter sorter = create(tranConn);
+        Map<Integer, List<TableData>> grouped = new TreeMap<Integer, List<TableData>>();
+        for (TableData table : unordered) {
+            int rank = sorter.getIndex(table.getTableName());
+            List<TableData> level = grouped.get(rank);
+            if (level == null) {
+                level = new ArrayList<TableData>();
+                grouped.put(rank, level);
+            }
+            level.add(table);
+        }
+        levels.addAll(grouped.values());
+        return levels;
+    }
+
+    /**
+     * テーブルが外部キーで参照されているか判定する（自己参照を含む）。<br/>
+     * ソートが抑制されている場合は、外部キーが設定されていないものとみなし、偽を返却する。
+     *
+     * @param tableName テーブル名
+     * @param tranConn DBのメタ情報を取得するためのコネクション
+     * @return 参照されている場合、真
+     */
+    static boolean isReferenced(String tableName, TransactionManagerConnection tranConn) {
+        return !isSortSuppressed() && create(tranConn).isReferenced(tableName);
+    }
+
+    /**
+     * リポジトリに設定されたスキーマ名を使用して、インスタンスを生成する。
+     *
+     * @param tranConn DBのメタ情報を取得するためのコネクション
+     * @return インスタンス
+     */
+    private static TableDataSorter create(TransactionManagerConnection tranConn) {
         String schemaName = SystemRepository.getString(NABLARCH_DB_SCHEMA_REPOSITORY_KEY);
         if (schemaName == null) {
             throw new RuntimeException("schema name not specified.\n"
                     + "please set \"" + NABLARCH_DB_SCHEMA_REPOSITORY_KEY 
                     + "\" value in SystemRepository");
         }
-        TableDataSorter sorter = new TableDataSorter(tranConn.getConnection(), schemaName);
-        return sorter.sortTableDataByFK(unordered);
+        return new TableDataSorter(tranConn.getConnection(), schemaName);
     }
 
     /**
@@ -69,11 +140,8 @@ class TableDataSorter {
     /** スキーマ名 */
     private final String schema;
 
-    /** ソート済みのテーブル名一覧 */
-    private List<String> sortedTables;
-
-    /** 初回起動フラグ */
-    private boolean isFirstCall = true;
+    /** テーブルの依存関係 */
+    private Dependencies dependencies;
 
     /**
      * コンストラクタ。
@@ -135,31 +203,98 @@ class TableDataSorter {
     }
 
     /**
-     * ソート済みテーブル一覧を取得する。
+     * キャッシュしているテーブルの順位を破棄する。<br/>
+     * テスト実行中に外部キーを変更した場合に使用する。
+     */
+    static void clearCache() {
+        synchronized (DEPENDENCIES_CACHE) {
+            DEPENDENCIES_CACHE.clear();
+        }
+    }
+
+    /**
+     * テーブルの依存関係を取得する。<br/>
+     * スキーマごとに、最初に取得した結果を共有する。
      *
-     * @return ソート済みテーブル一覧
+     * @return テーブルの依存関係
      */
-    private List<String> getSortedTableList() {
+    private Dependencies getDependencies() {
+        synchronized (DEPENDENCIES_CACHE) {
+            Dependencies ret = DEPENDENCIES_CACHE.get(schema);
+            if (ret == null) {
+                ret = parseDependencies();
+                DEPENDENCIES_CACHE.put(schema, ret);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * 外部キーの依存関係を解析する。
+     *
+     * @return テーブルの依存関係
+     */
+    private Dependencies parseDependencies() {
         EntityDependencyParser parser = new EntityDependencyParser();
-        parser.parse(conn, schema);
-        return parser.getTableList();
+        SchemaMetaDataSnapshot snapshot = SchemaMetaDataSnapshot.isEnabled()
+                ? SchemaMetaDataSnapshot.get(conn, schema)
+                : null;
+        if (snapshot != null && snapshot.getReferences() != null) {
+            // スナップショットの参照関係を使用し、データベースへのメタデータ取得を省略する。
+            for (String[] reference : snapshot.getReferences()) {
+                parser.associate(reference[0], reference[1]);
+            }
+        } else {
+            parser.parse(conn, schema);
+            if (snapshot != null) {
+                snapshot.setReferences(parser.getReferences());
+            }
+        }
+        return new Dependencies(parser.getTableRanks(), parser.getReferences());
     }
 
     /**
-     * ソート済みテーブル一覧上の位置（インデックス）を取得する。
-     * 親テーブルほど小さいインデックスが返却される。
+     * テーブルの順位を取得する。
+     * 親テーブルほど小さい値が返却される。外部キーの依存関係がないテーブルは0とする。
      *
      * @param tableName テーブル名
-     * @return インデックス
+     * @return 順位
      */
     private int getIndex(String tableName) {
         initData();
-        for (int i = 0; i < sortedTables.size(); i++) {
-            if (tableName.equalsIgnoreCase(sortedTables.get(i))) {
-                return i;
-            }
+        Integer rank = dependencies.ranks.get(tableName);
+        return rank == null ? 0 : rank;
+    }
+
+    /**
+     * 外部キーで参照している親テーブルを取得する（自己参照は含まない）。<br/>
+     * ソートが抑制されている場合は、外部キーが設定されていないものとみなし、空のセットを返却する。
+     *
+     * @param tableName テーブル名
+     * @return 親テーブル名（大文字）
+     */
+    Set<String> getParentTables(String tableName) {
+        if (isSortSuppressed()) {
+            return Collections.emptySet();
         }
-        return 0;
+        initData();
+        Set<String> parents = dependencies.parents.get(tableName);
+        return parents == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(parents);
+    }
+
+    /**
+     * 外部キーで参照されているか判定する（自己参照を含む）。<br/>
+     * ソートが抑制されている場合は、外部キーが設定されていないものとみなし、偽を返却する。
+     *
+     * @param tableName テーブル名
+     * @return 参照されている場合、真
+     */
+    boolean isReferenced(String tableName) {
+        if (isSortSuppressed()) {
+            return false;
+        }
+        initData();
+        return dependencies.referenced.contains(tableName.toUpperCase());
     }
 
     /**
@@ -188,9 +323,44 @@ class TableDataSorter {
 
     /** データの初期化を行う。*/
     private synchronized void initData() {
-        if (isFirstCall) {
-            this.sortedTables = getSortedTableList();
-            isFirstCall = false;
-        }            
+        if (dependencies == null) {
+            dependencies = getDependencies();
+        }
+    }
+
+    /** スキーマ内のテーブルの依存関係（FK）を表すクラス。 */
+    private static final class Dependencies {
+
+        /** テーブルの順位（親テーブルほど小さい） */
+        private final Map<String, Integer> ranks;
+
+        /** テーブルごとの親テーブル（自己参照を含まない。テーブル名は大文字） */
+        private final Map<String, Set<String>> parents = new CaseInsensitiveMap<Set<String>>();
+
+        /** 外部キーで参照されているテーブル（テーブル名は大文字） */
+        private final Set<String> referenced = new HashSet<String>();
+
+        /**
+         * コンストラクタ。
+         *
+         * @param ranks      テーブルの順位
+         * @param references 親子テーブル（要素は、親テーブル、子テーブルの順の配列）
+         */
+        private Dependencies(Map<String, Integer> ranks, List<String[]> references) {
+            this.ranks = Collections.unmodifiableMap(ranks);
+            for (String[] reference : references) {
+                String parent = reference[0].toUpperCase();
+                referenced.add(parent);
+                if (parent.equalsIgnoreCase(reference[1])) {
+                    continue;
+                }
+                Set<String> set = parents.get(reference[1]);
+                if (set == null) {
+                    set = new HashSet<String>();
+                    parents.put(reference[1], set);
+                }
+                set.add(parent);
+            }
+        }
     }
 }
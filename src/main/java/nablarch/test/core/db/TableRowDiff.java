@@ -0,0 +1,235 @@
+package nablarch.test.core.db;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.statement.SqlResultSet;
+
+/**
+ * 複製元テーブルと複製先テーブルの行の差分を扱うクラス。<br/>
+ * 複製先テーブルのうち複製元テーブルと異なる行のみを登録、更新、削除することで、
+ * テーブル全件をコピーすることなく複製先テーブルを複製元テーブルと同じ状態に戻す。
+ * <p>
+ * 行の対応付けは主キーで行い、行の比較は全カラムの値の比較（nullどうしは等しいとみなす）で行う。
+ * 主キーが一致する行は削除せずに更新するため、子テーブルから参照されている行も復旧できる。
+ * 主キーが存在しないテーブル、値の比較ができない型（LOB等）のカラムを含むテーブルは扱えない。
+ * </p>
+ *
+ * @see MasterDataRestorer
+ */
+final class TableRowDiff {
+
+    /** 値の比較ができない型 */
+    private static final Set<Integer> INCOMPARABLE_TYPES = new HashSet<Integer>(Arrays.asList(
+            Types.BLOB, Types.CLOB, DbInfo.NCLOB, Types.LONGVARBINARY, Types.LONGVARCHAR,
+            Types.OTHER, Types.JAVA_OBJECT, Types.ARRAY, Types.STRUCT));
+
+    /** 複製元テーブル名 */
+    private final String source;
+
+    /** 複製先テーブル名 */
+    private final String destination;
+
+    /** カラム名 */
+    private final String[] columns;
+
+    /** 主キーのカラム名 */
+    private final String[] primaryKeys;
+
+    /** 主キー以外のカラム名 */
+    private final List<String> nonKeyColumns;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param source      複製元テーブル名
+     * @param destination 複製先テーブル名
+     * @param columns     カラム名
+     * @param primaryKeys 主キーのカラム名
+     */
+    private TableRowDiff(String source, String destination, String[] columns, String[] primaryKeys) {
+        this.source = source;
+        this.destination = destination;
+        this.columns = columns;
+        this.primaryKeys = primaryKeys;
+        this.nonKeyColumns = new ArrayList<String>(Arrays.asList(columns));
+        for (String primaryKey : primaryKeys) {
+            for (Iterator<String> it = nonKeyColumns.iterator(); it.hasNext();) {
+                if (it.next().equalsIgnoreCase(primaryKey)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * インスタンスを生成する。
+     *
+     * @param dbInfo      データベース情報
+     * @param tableName   テーブル名
+     * @param source      複製元テーブル名
+     * @param destination 複製先テーブル名
+     * @return インスタンス（差分を扱えないテーブルの場合はnull）
+     */
+    static TableRowDiff create(DbInfo dbInfo, String tableName, String source, String destination) {
+        String[] columns = dbInfo.getColumns(tableName);
+        String[] primaryKeys = dbInfo.getPrimaryKeys(tableName);
+        if (columns == null || columns.length == 0 || primaryKeys == null || primaryKeys.length == 0) {
+            return null;
+        }
+        for (String column : columns) {
+            if (INCOMPARABLE_TYPES.contains(dbInfo.getColumnType(tableName, column))) {
+                return null;
+            }
+        }
+        return new TableRowDiff(source, destination, columns, primaryKeys);
+    }
+
+    /**
+     * 変更された行の割合を算出する。<br/>
+     * 複製先テーブルと複製元テーブルの、相手側に同じ内容の行が存在しない行数の合計を、
+     * 複製元テーブルの行数で割った値を返却する。
+     *
+     * @param conn コネクション
+     * @return 変更された行の割合
+     */
+    double getChangeRatio(AppDbConnection conn) {
+        long changed = count(conn, "SELECT COUNT(*) AS CNT FROM " + destination + " D"
+                + " WHERE NOT EXISTS (SELECT 1 FROM " + source + " S WHERE " + matchRows("D") + ")")
+                + count(conn, "SELECT COUNT(*) AS CNT FROM " + source + " S"
+                + " WHERE NOT EXISTS (SELECT 1 FROM " + destination + " D WHERE " + matchRows("D") + ")");
+        long total = count(conn, "SELECT COUNT(*) AS CNT FROM " + source);
+        return (double) changed / Math.max(total, 1L);
+    }
+
+    /**
+     * 複製元テーブルから、複製先テーブルに同じ主キーの行が存在しない行を登録する。
+     *
+     * @param conn コネクション
+     * @return 登録件数
+     */
+    int insertMissingRows(AppDbConnection conn) {
+        StringBuilder sql = new StringBuilder(128);
+        sql.append("INSERT INTO ").append(destination).append(" (");
+        appendColumns(sql, columns, null);
+        sql.append(") SELECT ");
+        appendColumns(sql, columns, "S");
+        sql.append(" FROM ").append(source).append(" S WHERE NOT EXISTS (SELECT 1 FROM ")
+           .append(destination).append(" D WHERE ").append(matchPrimaryKeys("D")).append(')');
+        return conn.prepareStatement(sql.toString()).executeUpdate();
+    }
+
+    /**
+     * 複製先テーブルの行のうち、複製元テーブルに同じ主キーの行が存在し、内容が異なる行を更新する。<br/>
+     * 主キーは変更しないため、更新する行を参照する子テーブルの行に影響しない。
+     *
+     * @param conn コネクション
+     * @return 更新件数
+     */
+    int updateChangedRows(AppDbConnection conn) {
+        if (nonKeyColumns.isEmpty()) {
+            // 主キー以外のカラムが無い場合、主キーが一致すれば内容も一致する。
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder(256);
+        sql.append("UPDATE ").append(destination).append(" SET ");
+        for (int i = 0; i < nonKeyColumns.size(); i++) {
+            String column = nonKeyColumns.get(i);
+            sql.append(i == 0 ? "" : ",")
+               .append(column).append(" = (SELECT S.").append(column).append(" FROM ").append(source)
+               .append(" S WHERE ").append(matchPrimaryKeys(destination)).append(')');
+        }
+        sql.append(" WHERE EXISTS (SELECT 1 FROM ").append(source).append(" S WHERE ")
+           .append(matchPrimaryKeys(destination)).append(')')
+           .append(" AND NOT EXISTS (SELECT 1 FROM ").append(source).append(" S WHERE ")
+           .append(matchRows(destination)).append(')');
+        return conn.prepareStatement(sql.toString()).executeUpdate();
+    }
+
+    /**
+     * 複製先テーブルから、複製元テーブルに同じ主キーの行が存在しない行を削除する。<br/>
+     * {@link #insertMissingRows(AppDbConnection)}、{@link #updateChangedRows(AppDbConnection)}の後に、
+     * 子テーブルから順に呼び出すこと。
+     *
+     * @param conn コネクション
+     * @return 削除件数
+     */
+    int deleteMissingRows(AppDbConnection conn) {
+        return conn.prepareStatement("DELETE FROM " + destination
+                + " WHERE NOT EXISTS (SELECT 1 FROM " + source + " S WHERE "
+                + matchPrimaryKeys(destination) + ")").executeUpdate();
+    }
+
+    /**
+     * 主キーが一致する条件を作成する。<br/>
+     * 複製元テーブルの別名は{@literal S}とする。
+     *
+     * @param qualifier 複製先テーブルの修飾子
+     * @return 条件
+     */
+    private String matchPrimaryKeys(String qualifier) {
+        StringBuilder sb = new StringBuilder(primaryKeys.length * 32);
+        for (int i = 0; i < primaryKeys.length; i++) {
+            sb.append(i == 0 ? "" : " AND ")
+              .append(qualifier).append('.').append(primaryKeys[i])
+              .append(" = S.").append(primaryKeys[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 全カラムが一致する条件を作成する。<br/>
+     * 複製元テーブルの別名は{@literal S}とする。
+     * 主キー（NULLにならない）は単純な等価条件とし、主キーのインデックスで行を特定できるようにする。
+     * 主キー以外のカラムは、nullどうしを等しいとみなして比較する。
+     *
+     * @param qualifier 複製先テーブルの修飾子
+     * @return 条件
+     */
+    private String matchRows(String qualifier) {
+        StringBuilder sb = new StringBuilder(primaryKeys.length * 32 + nonKeyColumns.size() * 48);
+        sb.append(matchPrimaryKeys(qualifier));
+        for (String column : nonKeyColumns) {
+            String d = qualifier + '.' + column;
+            String s = "S." + column;
+            sb.append(" AND (").append(d).append(" = ").append(s)
+              .append(" OR (").append(d).append(" IS NULL AND ").append(s).append(" IS NULL))");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * カラム名をカンマ区切りで追加する。
+     *
+     * @param sb        追加先
+     * @param columns   カラム名
+     * @param qualifier 修飾子（修飾しない場合はnull）
+     */
+    private static void appendColumns(StringBuilder sb, String[] columns, String qualifier) {
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "" : ",");
+            if (qualifier != null) {
+                sb.append(qualifier).append('.');
+            }
+            sb.append(columns[i]);
+        }
+    }
+
+    /**
+     * 件数を取得する。
+     *
+     * @param conn コネクション
+     * @param sql  件数を{@literal CNT}として取得するSQL文
+     * @return 件数
+     */
+    private static long count(AppDbConnection conn, String sql) {
+        SqlResultSet rs = conn.prepareStatement(sql).retrieve();
+        return rs.get(0).getBigDecimal("CNT").longValue();
+    }
+}
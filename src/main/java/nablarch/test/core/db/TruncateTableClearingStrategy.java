@@ -0,0 +1,60 @@
+package nablarch.test.core.db;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@code TRUNCATE TABLE}文でテーブルのデータを削除する{@link TableClearingStrategy}実装クラス。<br/>
+ * 件数によらず一定時間で削除できるため、大量のデータを持つテーブルに有効である。
+ * <p>
+ * 多くのデータベースでは、外部キーで参照されているテーブルは（子テーブルが空であっても）{@code TRUNCATE}できない。
+ * このため、外部キーで参照されているテーブル（自己参照を含む）は{@code DELETE}文で削除する。
+ * 参照関係は{@link TableDataSorter}がスキーマごとにキャッシュしている外部キーの依存関係から判定する
+ * （コンポーネント定義の{@literal nablarch.db.schema}のスキーマで判定し、テーブル名のスキーマ修飾は無視する）。
+ * {@literal nablarch.suppress-table-sort}が設定されている場合は、外部キーが設定されていないものとみなし、
+ * 全てのテーブルを{@code TRUNCATE}する。
+ * </p>
+ * <p>
+ * Oracleなど、{@code TRUNCATE}が暗黙的にコミットを伴うデータベースでは、
+ * 投入に失敗した場合も削除はロールバックされないことに注意すること。
+ * </p>
+ */
+@Published(tag = "architect")
+public class TruncateTableClearingStrategy extends TableClearingStrategy {
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 外部キーで参照されているテーブルは、{@code DELETE}文で削除する。
+     */
+    @Override
+    public void clear(AppDbConnection conn, String tableName) {
+        String sql = isReferenced(conn, tableName)
+                ? super.createClearStatement(tableName)
+                : createClearStatement(tableName);
+        conn.prepareStatement(sql).executeUpdate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String createClearStatement(String tableName) {
+        return "TRUNCATE TABLE " + tableName;
+    }
+
+    /**
+     * テーブルが外部キーで参照されているか判定する。<br/>
+     * 依存関係を取得できないコネクションの場合は、参照されていないものとみなす。
+     *
+     * @param conn      コネクション
+     * @param tableName テーブル名
+     * @return 参照されている場合、真
+     */
+    private static boolean isReferenced(AppDbConnection conn, String tableName) {
+        if (!(conn instanceof TransactionManagerConnection)) {
+            return false;
+        }
+        return TableDataSorter.isReferenced(
+                tableName.substring(tableName.lastIndexOf('.') + 1), (TransactionManagerConnection) conn);
+    }
+}
@@ -0,0 +1,27 @@
+package nablarch.test.core.db;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * VALUES句に複数行を列挙する形式（{@code INSERT INTO T (C1,C2) VALUES (?,?),(?,?)}）の
+ * {@link MultiRowInsertDialect}実装クラス。<br/>
+ * PostgreSQL、MySQL、DB2、SQL Server、H2などで使用できる。
+ */
+@Published(tag = "architect")
+public class ValuesListInsertDialect extends MultiRowInsertDialect {
+
+    /** {@inheritDoc} */
+    @Override
+    public String createInsertStatement(String tableName, String[] columns, int rowCount) {
+        StringBuilder sb = new StringBuilder(64 + rowCount * columns.length * 2);
+        sb.append("INSERT INTO ").append(tableName).append('(');
+        appendColumns(sb, columns).append(") VALUES ");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendPlaceholders(sb, columns.length);
+        }
+        return sb.toString();
+    }
+}
@@ -303,7 +303,7 @@ public abstract class AbstractHttpRequestTestTemplate<INF extends TestCaseInfo>
     protected void setUpDbForTestCase(INF testCaseInfo) {
         // テストシートごとのデータを投入
         if (testCaseInfo.isSetUpTable()) {
-            setUpDb(testCaseInfo.getSheetName(), testCaseInfo.getSetUpTableGroupId());
+            setUpDbForShot(testCaseInfo.getSheetName(), testCaseInfo.getSetUpTableGroupId());
         }
     }
 
@@ -1106,6 +1106,17 @@ public class HttpRequestTestSupport extends TestEventDispatcher {
         dbSupport.setUpDb(sheetName, groupId);
     }
 
+    /**
+     * {@link nablarch.test.core.db.DbAccessTestSupport#setUpDbForShot(String, String)}への委譲メソッド。
+     *
+     * @param sheetName シート名
+     * @param groupId   グループID
+     * @see nablarch.test.core.db.DbAccessTestSupport#setUpDbForShot(String, String)
+     */
+    public void setUpDbForShot(String sheetName, String groupId) {
+        dbSupport.setUpDbForShot(sheetName, groupId);
+    }
+
 
     /**
      * {@link nablarch.test.core.db.DbAccessTestSupport#assertSqlResultSetEquals(String, String, String, nablarch.core.db.statement.SqlResultSet)}
@@ -1,6 +1,7 @@
 package nablarch.test.core.reader;
 
 import nablarch.core.util.StringUtil;
+import nablarch.test.NablarchTestUtils;
 import nablarch.test.core.db.BasicDefaultValues;
 import nablarch.test.core.db.DbInfo;
 import nablarch.test.core.db.DefaultValues;
@@ -14,14 +15,23 @@ import nablarch.test.core.util.interpreter.BinaryFileInterpreter;
 import nablarch.test.core.util.interpreter.TestDataInterpreter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static nablarch.core.util.Builder.concat;
 
 
 /**
  * テストデータを読み込み、各オブジェクトにparseするクラス。
+ * <p>
+ * 解析したテーブルデータおよびList-Map形式のデータは、
+ * 取得元パス、リソース名、データ型、IDをキーとしてキャッシュする。
+ * 同一のデータに対して2回目以降の取得要求があった場合は、キャッシュしたデータのコピーを返却する。
+ * 返却したデータを呼び出し元で変更しても、キャッシュには影響しない。
+ * キャッシュは本クラスのインスタンスごとに保持し、設定値の変更時にクリアする。
+ * </p>
  *
  * @author Hisaaki Sioiri
  * @version 1.0
@@ -40,6 +50,18 @@ public class BasicTestDataParser implements TestDataParser {
     /** 委譲先の{@link nablarch.test.core.util.interpreter.TestDataInterpreter} */
     private List<TestDataInterpreter> interpreters;
 
+    /** 解析結果のキャッシュの最大件数のデフォルト値 */
+    private static final int DEFAULT_RESULT_CACHE_SIZE = 256;
+
+    /** 解析結果のキャッシュの最大件数 */
+    private int resultCacheSize = DEFAULT_RESULT_CACHE_SIZE;
+
+    /** テーブルデータのキャッシュ */
+    private Map<String, List<TableData>> tableDataCache = createResultCache(DEFAULT_RESULT_CACHE_SIZE);
+
+    /** List-Map形式のデータのキャッシュ */
+    private Map<String, List<Map<String, String>>> listMapCache = createResultCache(DEFAULT_RESULT_CACHE_SIZE);
+
     /** {@inheritDoc} */
     public List<TableData> getSetupTableData(String path, String resourceName, String... groupId) {
         return getTableData(path, resourceName, DataType.SETUP_TABLE_DATA, formatGroupId(groupId));
@@ -47,9 +69,19 @@ public class BasicTestDataParser implements TestDataParser {
 
     /** {@inheritDoc} */
     public List<Map<String, String>> getListMap(String path, String resourceName, String id) {
-        ListMapParser agent = new ListMapParser(testDataReader, addBinaryFileInterpreter(path));
-        agent.parse(path, resourceName, id);
-        return agent.getResult();
+        String key = createResultCacheKey(path, resourceName, DataType.LIST_MAP, id);
+        List<Map<String, String>> cached = listMapCache.get(key);
+        if (cached == null) {
+            ListMapParser agent = new ListMapParser(testDataReader, addBinaryFileInterpreter(path));
+            agent.parse(path, resourceName, id);
+            cached = agent.getResult();
+            listMapCache.put(key, cached);
+        }
+        List<Map<String, String>> result = new ArrayList<Map<String, String>>(cached.size());
+        for (Map<String, String> e : cached) {
+            result.add(new TreeMap<String, String>(e));
+        }
+        return result;
     }
 
     /** {@inheritDoc} */
@@ -180,10 +212,61 @@ public class BasicTestDataParser implements TestDataParser {
      */
     private List<TableData> getTableData(String path, String resourceName, DataType targetType,
             String groupId) {
-        TableDataParser agent = new TableDataParser(testDataReader, addBinaryFileInterpreter(path), dbInfo,
-                defaultValues, targetType);
-        agent.parse(path, resourceName, groupId);
-        return agent.getResult();
+        String key = createResultCacheKey(path, resourceName, targetType, groupId);
+        List<TableData> cached = tableDataCache.get(key);
+        if (cached == null) {
+            TableDataParser agent = new TableDataParser(testDataReader, addBinaryFileInterpreter(path), dbInfo,
+                    defaultValues, targetType);
+            agent.parse(path, resourceName, groupId);
+            cached = agent.getResult();
+            tableDataCache.put(key, cached);
+        }
+        List<TableData> result = new ArrayList<TableData>(cached.size());
+        for (TableData e : cached) {
+            result.add(e.getDeepCopy());
+        }
+        return result;
+    }
+
+    /**
+     * 解析結果のキャッシュのキーを作成する。
+     *
+     * @param path         取得元パス
+     * @param resourceName 取得元リソース名
+     * @param targetType   処理対象データ型
+     * @param id           ID
+     * @return キー
+     */
+    private static String createResultCacheKey(String path, String resourceName, DataType targetType, String id) {
+        return concat(path, "/", resourceName, "/", targetType.name(), "/", id);
+    }
+
+    /**
+     * 解析結果のキャッシュを作成する。
+     *
+     * @param size 最大件数
+     * @param <V>  解析結果の型
+     * @return キャッシュ
+     */
+    private static <V> Map<String, V> createResultCache(int size) {
+        return Collections.synchronizedMap(NablarchTestUtils.<String, V>createLRUMap(size));
+    }
+
+    /** 解析結果のキャッシュをクリアする。 */
+    public void clearResultCache() {
+        tableDataCache = createResultCache(resultCacheSize);
+        listMapCache = createResultCache(resultCacheSize);
+    }
+
+    /**
+     * 解析結果のキャッシュの最大件数を設定する。<br/>
+     * デフォルトは256。
+     *
+     * @param resultCacheSize 解析結果のキャッシュの最大件数
+     */
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+        clearResultCache();
     }
 
     /**
@@ -204,11 +287,13 @@ public class BasicTestDataParser implements TestDataParser {
     /** {@inheritDoc} */
     public void setTestDataReader(TestDataReader testDataReader) {
         this.testDataReader = testDataReader;
+        clearResultCache();
     }
 
     /** {@inheritDoc} */
     public void setDbInfo(DbInfo dbInfo) {
         this.dbInfo = dbInfo;
+        clearResultCache();
     }
 
     /**
@@ -218,6 +303,7 @@ public class BasicTestDataParser implements TestDataParser {
      */
     public void setInterpreters(List<TestDataInterpreter> interpretersPrototype) {
         this.interpreters = interpretersPrototype;
+        clearResultCache();
     }
 
     /**
@@ -227,6 +313,7 @@ public class BasicTestDataParser implements TestDataParser {
      */
     public void setDefaultValues(DefaultValues defaultValues) {
         this.defaultValues = defaultValues;
+        clearResultCache();
     }
 
     /**
@@ -0,0 +1,337 @@
+package nablarch.test.core.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.StringUtil;
+
+/**
+ * 区切り文字形式のテキストファイルからテストデータを読み込むクラス。<br/>
+ * EXCELのブックをディレクトリ、シートをファイルとして配置したテストデータを読み込む。
+ * 例えば、テストデータ名「FooTest/testBar」は、以下のいずれかのファイルから読み込む。
+ * <pre>
+ * {ファイル配置ディレクトリ}/FooTest/testBar.tsv
+ * {ファイル配置ディレクトリ}/FooTest/testBar.csv
+ * </pre>
+ * 両方のファイルが存在する場合は、.tsvファイルを使用する。
+ * <p>
+ * ファイルの文字コードはUTF-8とする（先頭のBOMは無視する）。改行コードはCR、LF、CRLFのいずれも使用できる。
+ * 1行がシートの1行、区切り文字で区切られた値がセルの値に対応する。
+ * コメント（先頭のセルが「//」で始まる行）、空行の扱い、および「LIST_MAP=」、「SETUP_TABLE=」
+ * などのデータ型の記述方法は、EXCELで記述する場合と同じである。
+ * </p>
+ * <p>
+ * .tsvファイルはタブで区切る。値の囲み文字はなく、値にタブ、改行を含めることはできない。
+ * .csvファイルはカンマで区切る。ダブルクォート（"）で囲んだ値には、カンマ、改行を含めることができ、
+ * ダブルクォート自体は2つ重ねて記述する（RFC 4180形式）。
+ * このため、.csvファイルで先頭がダブルクォートの値（例：{@code "abc"}）を記述する場合は、
+ * {@code """abc"""}のように値全体を囲む必要がある。
+ * </p>
+ * <p>
+ * 本クラスはPOIを使用しない。EXCELのブックは、{@link TestDataTextConverter}でこの形式に変換できる。
+ * 本クラスを使用する場合は、コンポーネント設定ファイルの{@code testDataReader}プロパティに
+ * 本クラスを設定すること。
+ * </p>
+ */
+public class DelimitedTextReader implements TestDataReader {
+
+    /** TSVファイルの拡張子 */
+    static final String TSV_EXTENSION = ".tsv";
+
+    /** CSVファイルの拡張子 */
+    static final String CSV_EXTENSION = ".csv";
+
+    /** データ名の区切り文字 */
+    private static final Pattern DATA_NAME_SPLIT_CHAR = Pattern.compile("/");
+
+    /** ファイルの文字コード */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** BOM */
+    private static final char BOM = '\uFEFF';
+
+    /** 読み込んだシートの行データ */
+    private List<List<String>> rows = null;
+
+    /** カレント行を示すインデックス */
+    private int rowIdx = 0;
+
+    /** {@inheritDoc} */
+    public void open(String path, String dataName) {
+        if (StringUtil.isNullOrEmpty(dataName)) {
+            throw new IllegalArgumentException("dataName must not be null or empty.");
+        }
+
+        // テストデータ名は、ブック名/シート名
+        String[] split = DATA_NAME_SPLIT_CHAR.split(dataName);
+        if (split.length != 2) {
+            throw new IllegalArgumentException("invalid data name. [" + dataName + "]");
+        }
+        File bookDir = new File(path, split[0]);
+        File file = new File(bookDir, split[1] + TSV_EXTENSION);
+        char delimiter = '\t';
+        if (!file.isFile()) {
+            file = new File(bookDir, split[1] + CSV_EXTENSION);
+            delimiter = ',';
+        }
+        if (!file.isFile()) {
+            String msg = "sheet not found. path=[" + bookDir.getAbsolutePath() + "] sheet=[" + split[1] + "]";
+            throw new IllegalArgumentException(msg);
+        }
+        String text;
+        try {
+            text = readText(file);
+        } catch (IOException e) {
+            throw new RuntimeException("test data file open failed. file=[" + file.getAbsolutePath() + "]", e);
+        }
+        rows = delimiter == '\t' ? parseTsv(text) : parseCsv(text, file);
+        rowIdx = 0;
+    }
+
+    /** {@inheritDoc} */
+    public List<String> readLine() {
+        while (rowIdx < rows.size()) {
+            List<String> line = rows.get(rowIdx++);
+            if (isBlankLine(line)) {
+                continue;
+            }
+            return line;
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public void close() {
+        rows = null;
+    }
+
+    /**
+     * 指定されたパスとリソース名に該当するブックのディレクトリが存在するか判定する。
+     *
+     * @param basePath     パス
+     * @param resourceName リソース名
+     * @return 存在する場合、真
+     */
+    public boolean isResourceExisting(String basePath, String resourceName) {
+        int index = resourceName.lastIndexOf('/');
+        String bookName = index < 0 ? resourceName : resourceName.substring(0, index);
+        return new File(basePath, bookName).isDirectory();
+    }
+
+    /**
+     * ファイル全体を読み込み、文字列に変換する。<br/>
+     * テストデータのファイルは小さいため、ファイルサイズ分のバッファに一括で読み込む。
+     *
+     * @param file ファイル
+     * @return ファイルの内容
+     * @throws IOException 読み込みに失敗した場合
+     */
+    static String readText(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file is too large. size=[" + size + "]");
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // 全て読み込むまで繰り返す
+            }
+            bytes.flip();
+            CharBuffer chars;
+            try {
+                chars = UTF8.newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPORT)
+                            .onUnmappableCharacter(CodingErrorAction.REPORT)
+                            .decode(bytes);
+            } catch (CharacterCodingException e) {
+                throw new IOException("test data file must be encoded in UTF-8. file=[" + file + "]", e);
+            }
+            if (chars.length() > 0 && chars.charAt(0) == BOM) {
+                chars.position(1);
+            }
+            return chars.toString();
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * TSV形式の文字列を解析する。
+     *
+     * @param text 文字列
+     * @return 行データ
+     */
+    static List<List<String>> parseTsv(String text) {
+        List<List<String>> result = new ArrayList<List<String>>();
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            int end = pos;
+            while (end < length && text.charAt(end) != '\r' && text.charAt(end) != '\n') {
+                end++;
+            }
+            result.add(splitTsvLine(text, pos, end));
+            pos = skipLineSeparator(text, end);
+        }
+        return result;
+    }
+
+    /**
+     * TSV形式の1行を分割する。
+     *
+     * @param text  文字列
+     * @param start 行の開始位置
+     * @param end   行の終了位置（改行の位置）
+     * @return 1行分のデータ
+     */
+    private static List<String> splitTsvLine(String text, int start, int end) {
+        List<String> line = new ArrayList<String>();
+        int cellStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || text.charAt(i) == '\t') {
+                String cell = text.substring(cellStart, i);
+                line.add(cell);
+                cellStart = i + 1;
+                if (line.size() == 1 && cell.startsWith("//")) {
+                    // 先頭カラムがコメントの場合は、これ以上値を読み込む必要はない
+                    break;
+                }
+            }
+        }
+        return line;
+    }
+
+    /**
+     * CSV形式の文字列を解析する。
+     *
+     * @param text 文字列
+     * @param file 読み込み元のファイル（エラーメッセージ用）
+     * @return 行データ
+     */
+    static List<List<String>> parseCsv(String text, File file) {
+        List<List<String>> result = new ArrayList<List<String>>();
+        List<String> line = new ArrayList<String>();
+        StringBuilder cell = new StringBuilder();
+        int length = text.length();
+        int pos = 0;
+        int lineNumber = 1;
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '"' && cell.length() == 0) {
+                // 囲み文字で囲まれた値
+                int startLine = lineNumber;
+                pos++;
+                while (true) {
+                    if (pos >= length) {
+                        throw new IllegalArgumentException("unclosed quotation. file=[" + file
+                                + "] line=[" + startLine + "]");
+                    }
+                    char q = text.charAt(pos++);
+                    if (q == '"') {
+                        if (pos < length && text.charAt(pos) == '"') {
+                            cell.append('"');
+                            pos++;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (q == '\n' || (q == '\r' && (pos >= length || text.charAt(pos) != '\n'))) {
+                        lineNumber++;
+                    }
+                    cell.append(q);
+                }
+                if (pos < length && !isCsvTerminator(text.charAt(pos))) {
+                    throw new IllegalArgumentException("invalid character after closing quotation. file=["
+                            + file + "] line=[" + lineNumber + "]");
+                }
+            } else if (c == ',') {
+                line.add(cell.toString());
+                cell.setLength(0);
+                pos++;
+            } else if (c == '\r' || c == '\n') {
+                line.add(cell.toString());
+                cell.setLength(0);
+                result.add(trimComment(line));
+                line = new ArrayList<String>();
+                pos = skipLineSeparator(text, pos);
+                lineNumber++;
+            } else {
+                cell.append(c);
+                pos++;
+            }
+        }
+        if (cell.length() > 0 || !line.isEmpty()) {
+            line.add(cell.toString());
+            result.add(trimComment(line));
+        }
+        return result;
+    }
+
+    /**
+     * CSV形式の値の終端文字であるか判定する。
+     *
+     * @param c 文字
+     * @return 終端文字である場合、真
+     */
+    private static boolean isCsvTerminator(char c) {
+        return c == ',' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * コメント行の場合、先頭のセルのみとする。
+     *
+     * @param line 1行分のデータ
+     * @return 1行分のデータ
+     */
+    private static List<String> trimComment(List<String> line) {
+        if (line.size() > 1 && line.get(0).startsWith("//")) {
+            return new ArrayList<String>(line.subList(0, 1));
+        }
+        return line;
+    }
+
+    /**
+     * 改行を読み飛ばす。
+     *
+     * @param text 文字列
+     * @param pos  改行の位置
+     * @return 次の行の開始位置
+     */
+    private static int skipLineSeparator(String text, int pos) {
+        if (pos < text.length() && text.charAt(pos) == '\r') {
+            pos++;
+        }
+        if (pos < text.length() && text.charAt(pos) == '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * 全要素が空かどうか判定
+     *
+     * @param line １行分のデータ
+     * @return 配列の全要素が空であればtrue、空でなければfalse
+     */
+    private boolean isBlankLine(List<String> line) {
+        for (String e : line) {
+            if (!e.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
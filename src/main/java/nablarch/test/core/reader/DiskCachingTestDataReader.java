@@ -0,0 +1,467 @@
+package nablarch.test.core.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.util.FileUtil;
+
+/**
+ * 読み込んだシートの内容をディスク上にキャッシュする{@link TestDataReader}実装クラス。<br/>
+ * 実際の読み込みは委譲先の{@link TestDataReader}が行う。
+ * 読み込み元のブックが前回読み込み時から変更されていない場合は、委譲先を使用せずキャッシュファイルから読み込む。
+ * <p>
+ * キャッシュファイルには、コメント行・コメントセルおよび空行を取り除いた行データを、
+ * 文字列テーブルを用いたバイナリ形式で格納する。
+ * テストデータ記法の解釈結果はシステム日時やバイナリファイルの内容に依存するため、
+ * キャッシュファイルには解釈前の値を格納する。
+ * </p>
+ * <p>
+ * ブックが変更されていないことは、ブックのファイルサイズと最終更新日時で判定する。
+ * 最終更新日時のみが異なる場合（チェックアウトし直した場合等）は、ブックの内容のハッシュ値で判定し、
+ * 内容が一致すればキャッシュファイルの最終更新日時を更新する。
+ * </p>
+ * 設定例を以下に示す。
+ * <pre>
+ * {@code
+ * <property name="testDataReader">
+ *   <component class="nablarch.test.core.reader.DiskCachingTestDataReader">
+ *     <property name="testDataReader">
+ *       <component class="nablarch.test.core.reader.PoiXlsReader"/>
+ *     </property>
+ *     <property name="cacheDirectory" value="build/test-data-cache"/>
+ *   </component>
+ * </property>
+ * }
+ * </pre>
+ */
+public class DiskCachingTestDataReader implements TestDataReader {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(DiskCachingTestDataReader.class);
+
+    /** キャッシュファイルの形式を表すマジックナンバー */
+    private static final int MAGIC = 0x4E544443;
+
+    /** キャッシュファイルの形式のバージョン */
+    private static final int FORMAT_VERSION = 1;
+
+    /** キャッシュファイルの拡張子 */
+    private static final String CACHE_FILE_SUFFIX = ".tdc";
+
+    /** コメントを表す文字列 */
+    private static final String COMMENT_EXPRESSION = "//";
+
+    /** 委譲先のリーダ */
+    private TestDataReader testDataReader = new PoiXlsReader();
+
+    /** キャッシュディレクトリ */
+    private File cacheDirectory = new File(System.getProperty("java.io.tmpdir"), "nablarch-test-data-cache");
+
+    /** キャッシュから読み込んだ行データ（委譲先から読み込む場合はnull） */
+    private List<List<String>> cachedLines;
+
+    /** カレント行を示すインデックス */
+    private int index;
+
+    /** {@inheritDoc} */
+    public void open(String path, String dataName) {
+        cachedLines = null;
+        index = 0;
+        File book = findBook(path, dataName);
+        if (book == null) {
+            // ブックが特定できない場合は委譲先に任せる（エラー処理も委譲先で行われる）。
+            testDataReader.open(path, dataName);
+            return;
+        }
+        String sheetName = dataName.substring(dataName.indexOf('/') + 1);
+        File cacheFile = getCacheFile(book, sheetName);
+        BookStamp stamp = new BookStamp(book);
+
+        cachedLines = readCache(cacheFile, stamp);
+        if (cachedLines != null) {
+            if (stamp.matchedByContent) {
+                // 次回以降にハッシュ値を計算せずに済むよう、現在の最終更新日時でキャッシュを作成し直す。
+                writeCache(cacheFile, stamp, cachedLines);
+            }
+            return;
+        }
+        // キャッシュが無効なので、委譲先から読み込んでキャッシュを作成する。
+        List<List<String>> lines;
+        testDataReader.open(path, dataName);
+        try {
+            lines = readAll();
+        } finally {
+            testDataReader.close();
+        }
+        writeCache(cacheFile, stamp, lines);
+        cachedLines = lines;
+    }
+
+    /** {@inheritDoc} */
+    public List<String> readLine() {
+        if (cachedLines == null) {
+            return testDataReader.readLine();
+        }
+        return index < cachedLines.size() ? cachedLines.get(index++) : null;
+    }
+
+    /** {@inheritDoc} */
+    public void close() {
+        if (cachedLines == null) {
+            testDataReader.close();
+        }
+        cachedLines = null;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isResourceExisting(String basePath, String resourceName) {
+        return testDataReader.isResourceExisting(basePath, resourceName);
+    }
+
+    /**
+     * 委譲先から全行を読み込む。<br/>
+     * コメント行、コメントセルおよび空行は取り除く。
+     *
+     * @return 読み込んだ行データ
+     */
+    private List<List<String>> readAll() {
+        List<List<String>> lines = new ArrayList<List<String>>(1024);
+        List<String> line;
+        while ((line = testDataReader.readLine()) != null) {
+            List<String> effective = new ArrayList<String>(line.size());
+            for (String cell : line) {
+                if (cell != null && cell.startsWith(COMMENT_EXPRESSION)) {
+                    break;
+                }
+                effective.add(cell);
+            }
+            if (!isBlankLine(effective)) {
+                lines.add(Collections.unmodifiableList(effective));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 全要素が空かどうか判定
+     *
+     * @param line １行分のデータ
+     * @return 配列の全要素が空であればtrue、空でなければfalse
+     */
+    private boolean isBlankLine(List<String> line) {
+        for (String e : line) {
+            if (e != null && !e.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * データ名に対応するブックのファイルを探す。
+     *
+     * @param path     ファイル配置ディレクトリのパス
+     * @param dataName テストデータ名（ファイル名/シート名）
+     * @return ブックのファイル（特定できない場合はnull）
+     */
+    private File findBook(String path, String dataName) {
+        if (dataName == null) {
+            return null;
+        }
+        int slash = dataName.indexOf('/');
+        if (slash <= 0 || slash != dataName.lastIndexOf('/') || slash == dataName.length() - 1) {
+            return null;
+        }
+        String fileName = dataName.substring(0, slash);
+        for (String extension : new String[] {".xls", ".xlsx"}) {
+            File file = new File(path + '/' + fileName + extension);
+            if (file.isFile()) {
+                return file.getAbsoluteFile();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * キャッシュファイルを取得する。
+     *
+     * @param book      ブックのファイル
+     * @param sheetName シート名
+     * @return キャッシュファイル
+     */
+    private File getCacheFile(File book, String sheetName) {
+        String name = toHex(digest(book.getPath() + '\0' + sheetName));
+        return new File(cacheDirectory, name + CACHE_FILE_SUFFIX);
+    }
+
+    /**
+     * キャッシュファイルを読み込む。
+     *
+     * @param cacheFile キャッシュファイル
+     * @param stamp     現在のブックの状態
+     * @return 行データ（キャッシュが存在しないか無効な場合はnull）
+     */
+    private List<List<String>> readCache(File cacheFile, BookStamp stamp) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] hash = new byte[in.readInt()];
+            in.readFully(hash);
+            if (!stamp.matches(size, lastModified, hash)) {
+                return null;
+            }
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, "UTF-8");
+            }
+            int rowCount = in.readInt();
+            List<List<String>> lines = new ArrayList<List<String>>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                String[] row = new String[in.readInt()];
+                for (int j = 0; j < row.length; j++) {
+                    int idx = in.readInt();
+                    row[j] = idx < 0 ? null : strings[idx];
+                }
+                lines.add(Collections.unmodifiableList(Arrays.asList(row)));
+            }
+            return lines;
+        } catch (IOException e) {
+            LOGGER.logDebug("could not read test data cache. file=[" + cacheFile + "]", e);
+            return null;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * キャッシュファイルを書き込む。<br/>
+     * 一時ファイルに書き込んだ後にリネームするため、並行して読み込むプロセスが書き込み途中のファイルを読むことはない。
+     * 書き込みに失敗した場合でも、テストの実行は継続する。
+     *
+     * @param cacheFile キャッシュファイル
+     * @param stamp     ブックの状態
+     * @param lines     行データ
+     */
+    private void writeCache(File cacheFile, BookStamp stamp, List<List<String>> lines) {
+        if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs() && !cacheDirectory.isDirectory()) {
+            LOGGER.logDebug("could not create test data cache directory. dir=[" + cacheDirectory + "]");
+            return;
+        }
+        File tmp = null;
+        DataOutputStream out = null;
+        try {
+            tmp = File.createTempFile(cacheFile.getName(), ".tmp", cacheDirectory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(stamp.size);
+            out.writeLong(stamp.lastModified);
+            byte[] hash = stamp.getContentHash();
+            out.writeInt(hash.length);
+            out.write(hash);
+
+            // 文字列テーブル
+            Map<String, Integer> stringTable = new HashMap<String, Integer>();
+            List<String> strings = new ArrayList<String>();
+            for (List<String> line : lines) {
+                for (String cell : line) {
+                    if (cell != null && !stringTable.containsKey(cell)) {
+                        stringTable.put(cell, strings.size());
+                        strings.add(cell);
+                    }
+                }
+            }
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes("UTF-8");
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            // 行データ
+            out.writeInt(lines.size());
+            for (List<String> line : lines) {
+                out.writeInt(line.size());
+                for (String cell : line) {
+                    out.writeInt(cell == null ? -1 : stringTable.get(cell));
+                }
+            }
+            out.close();
+            out = null;
+            if (!(tmp.renameTo(cacheFile) || (cacheFile.delete() && tmp.renameTo(cacheFile)))) {
+                LOGGER.logDebug("could not write test data cache. file=[" + cacheFile + "]");
+            }
+        } catch (IOException e) {
+            LOGGER.logDebug("could not write test data cache. file=[" + cacheFile + "]", e);
+        } finally {
+            FileUtil.closeQuietly(out);
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * ダイジェストを計算する。
+     *
+     * @param value 値
+     * @return ダイジェスト
+     */
+    private static byte[] digest(String value) {
+        try {
+            return newDigest().digest(value.getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * ダイジェストを計算するための{@link MessageDigest}を生成する。
+     *
+     * @return {@link MessageDigest}
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * バイト配列を16進文字列に変換する。
+     *
+     * @param bytes バイト配列
+     * @return 16進文字列
+     */
+    private static String toHex(byte[] bytes) {
+        String hex = new BigInteger(1, bytes).toString(16);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (int i = hex.length(); i < bytes.length * 2; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    /**
+     * ブックの状態（サイズ、最終更新日時、内容のハッシュ値）を表すクラス。<br/>
+     * 内容のハッシュ値は必要になった時点で計算する。
+     */
+    private static final class BookStamp {
+
+        /** ブックのファイル */
+        private final File book;
+
+        /** ファイルサイズ */
+        private final long size;
+
+        /** 最終更新日時 */
+        private final long lastModified;
+
+        /** 内容のハッシュ値 */
+        private byte[] contentHash;
+
+        /** 最終更新日時が異なり、内容のハッシュ値で一致と判定したかどうか */
+        private boolean matchedByContent;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param book ブックのファイル
+         */
+        BookStamp(File book) {
+            this.book = book;
+            this.size = book.length();
+            this.lastModified = book.lastModified();
+        }
+
+        /**
+         * キャッシュ作成時のブックの状態と一致するか判定する。
+         *
+         * @param cachedSize         キャッシュ作成時のファイルサイズ
+         * @param cachedLastModified キャッシュ作成時の最終更新日時
+         * @param cachedHash         キャッシュ作成時の内容のハッシュ値
+         * @return 一致する場合、真
+         * @throws IOException ブックの読み込みに失敗した場合
+         */
+        boolean matches(long cachedSize, long cachedLastModified, byte[] cachedHash) throws IOException {
+            if (size != cachedSize) {
+                return false;
+            }
+            if (lastModified == cachedLastModified) {
+                return true;
+            }
+            matchedByContent = MessageDigest.isEqual(getContentHash(), cachedHash);
+            return matchedByContent;
+        }
+
+        /**
+         * 内容のハッシュ値を取得する。
+         *
+         * @return ハッシュ値
+         * @throws IOException ブックの読み込みに失敗した場合
+         */
+        byte[] getContentHash() throws IOException {
+            if (contentHash == null) {
+                MessageDigest md = newDigest();
+                InputStream in = new FileInputStream(book);
+                try {
+                    byte[] buf = new byte[8192];
+                    int len;
+                    while ((len = in.read(buf)) != -1) {
+                        md.update(buf, 0, len);
+                    }
+                } finally {
+                    FileUtil.closeQuietly(in);
+                }
+                contentHash = md.digest();
+            }
+            return contentHash;
+        }
+    }
+
+    /**
+     * 委譲先のリーダを設定する。
+     *
+     * @param testDataReader 委譲先のリーダ
+     */
+    public void setTestDataReader(TestDataReader testDataReader) {
+        this.testDataReader = testDataReader;
+    }
+
+    /**
+     * キャッシュディレクトリを設定する。
+     *
+     * @param cacheDirectory キャッシュディレクトリのパス
+     */
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = new File(cacheDirectory);
+    }
+}
@@ -42,6 +42,16 @@ abstract class GroupDataParsingTemplate<RET> extends TestDataParsingTemplate<RET
         return first.startsWith(expected);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 対象の{@link DataType}とグループIDからなる定義部（例：「SETUP_TABLE[group]=」）を持つ最初の行の位置を返却する。
+     */
+    @Override
+    final int indexOfFirstTarget(TestDataSheet sheet, String groupId) {
+        return sheet.indexOfDirective(getTargetType().getName() + groupId + '=');
+    }
+
     /**
      * {@inheritDoc}
      * <p/>
@@ -0,0 +1,632 @@
+package nablarch.test.core.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.StringUtil;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * POIのイベントモデルを使用してEXCELからテストデータを読み込むクラス。<br/>
+ * {@link PoiXlsReader}とは異なり、ブック全体（全シート、セル、スタイル）をメモリ上に展開せず、
+ * 指定されたシートのみをストリーミングで解析し、セルの値を文字列として取り出す。
+ * .xlsファイルはHSSFのイベントAPIを、.xlsxファイルはXSSFのSAXイベントモデルを使用する。
+ * <p>
+ * 本クラスを使用する場合は、コンポーネント設定ファイルの{@code testDataReader}プロパティに
+ * 本クラスを設定すること。
+ * </p>
+ * <p>
+ * セルの値は、{@link PoiXlsReader}と同じく{@code Cell#toString()}と同じ文字列表現とする
+ * （数式セルは数式、エラーセルはエラーの文字列表現、書式のみ設定された空のセルは空文字）。
+ * ただし、以下の場合は{@link PoiXlsReader}と結果が異なる。
+ * <ul>
+ * <li>共有数式（数式のコピー等で作成される）のセルは、数式ではなく計算結果のキャッシュ値を値とする。</li>
+ * <li>日付書式の数値セルは、日付に変換せず数値の文字列表現を値とする。</li>
+ * </ul>
+ * </p>
+ * EXCELに記述されたテストデータは、すべて文字列書式となっている必要がある。
+ * 文字列書式以外のデータ書式が存在した場合の動作は保証しない。
+ */
+public class PoiEventXlsReader implements TestDataReader {
+
+    /** データ名の区切り文字 */
+    private static final Pattern DATA_NAME_SPLIT_CHAR = Pattern.compile("/");
+
+    /** 読み込んだシートの行データ */
+    private List<List<String>> rows = null;
+
+    /** カレント行を示すインデックス */
+    private int rowIdx = 0;
+
+    /** リソース存在確認の委譲先 */
+    private final PoiXlsReader resourceChecker = new PoiXlsReader();
+
+    /** {@inheritDoc} */
+    public void open(String path, String dataName) {
+        if (StringUtil.isNullOrEmpty(dataName)) {
+            throw new IllegalArgumentException("dataName must not be null or empty.");
+        }
+
+        // テストデータ名は、ファイル名/シート名
+        String[] split = DATA_NAME_SPLIT_CHAR.split(dataName);
+        if (split.length != 2) {
+            throw new IllegalArgumentException("invalid data name. [" + dataName + "]");
+        }
+        String fileName = split[0];
+        String sheetName = split[1];
+
+        File file = new File(path + '/' + fileName + ".xls");
+        boolean xlsx = false;
+        if (!file.exists()) {
+            file = new File(path + '/' + fileName + ".xlsx");
+            xlsx = true;
+        }
+        String filePath = file.getAbsolutePath();
+        SheetCollector collector;
+        try {
+            collector = xlsx ? readXlsxSheet(file, sheetName) : readXlsSheet(file, sheetName);
+        } catch (Exception e) {
+            throw new RuntimeException("test data file open failed.", e);
+        }
+        if (collector == null) {
+            String msg = "sheet not found. path=[" + filePath + "] sheet=[" + sheetName + "]";
+            throw new IllegalArgumentException(msg);
+        }
+        rows = collector.getRows();
+        rowIdx = 0;
+    }
+
+    /** {@inheritDoc} */
+    public List<String> readLine() {
+        while (rowIdx < rows.size()) {
+            List<String> line = rows.get(rowIdx++);
+            if (line == null || isBlankLine(line)) {
+                continue;
+            }
+            return line;
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public void close() {
+        rows = null;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isResourceExisting(String basePath, String resourceName) {
+        return resourceChecker.isResourceExisting(basePath, resourceName);
+    }
+
+    /**
+     * 全要素が空かどうか判定
+     *
+     * @param line １行分のデータ
+     * @return 配列の全要素が空であればtrue、空でなければfalse
+     */
+    private boolean isBlankLine(List<String> line) {
+        for (String e : line) {
+            if (!e.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * .xlsxファイルから指定されたシートを読み込む。
+     *
+     * @param file      ファイル
+     * @param sheetName シート名
+     * @return 読み込んだシートの内容（シートが存在しない場合はnull）
+     * @throws Exception 読み込みに失敗した場合
+     */
+    private SheetCollector readXlsxSheet(File file, String sheetName) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file.getPath(), PackageAccess.READ);
+        try {
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+            while (sheets.hasNext()) {
+                InputStream in = sheets.next();
+                try {
+                    if (!sheets.getSheetName().equals(sheetName)) {
+                        continue;
+                    }
+                    SheetCollector collector = new SheetCollector();
+                    XlsxSheetHandler handler = new XlsxSheetHandler(xssfReader.getSharedStringsTable(), collector);
+                    SAXParserFactory factory = SAXParserFactory.newInstance();
+                    factory.setNamespaceAware(false);
+                    SAXParser parser = factory.newSAXParser();
+                    parser.parse(new InputSource(in), handler);
+                    return collector;
+                } finally {
+                    FileUtil.closeQuietly(in);
+                }
+            }
+            return null;
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * .xlsファイルから指定されたシートを読み込む。
+     *
+     * @param file      ファイル
+     * @param sheetName シート名
+     * @return 読み込んだシートの内容（シートが存在しない場合はnull）
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private SheetCollector readXlsSheet(File file, String sheetName) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            POIFSFileSystem fs = new POIFSFileSystem(in);
+            XlsSheetListener listener = new XlsSheetListener(sheetName);
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(listener);
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs);
+            return listener.isSheetFound() ? listener.getCollector() : null;
+        } catch (HSSFUserException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * セルの値を行単位に収集するクラス。
+     */
+    private static final class SheetCollector {
+
+        /** 行データ（行番号をインデックスとし、存在しない行はnull） */
+        private final List<List<String>> rows = new ArrayList<List<String>>(256);
+
+        /**
+         * セルの値を追加する。
+         *
+         * @param rowNum 行番号（0始まり）
+         * @param colNum 列番号（0始まり）
+         * @param value  セルの値
+         */
+        void addCell(int rowNum, int colNum, String value) {
+            while (rows.size() <= rowNum) {
+                rows.add(null);
+            }
+            List<String> row = rows.get(rowNum);
+            if (row == null) {
+                row = new ArrayList<String>();
+                rows.set(rowNum, row);
+            }
+            if (!row.isEmpty() && row.get(0).startsWith("//")) {
+                // 先頭カラムがコメントの場合は、これ以上値を保持する必要はない
+                return;
+            }
+            while (row.size() < colNum) {
+                row.add("");
+            }
+            if (row.size() == colNum) {
+                row.add(value);
+            } else {
+                row.set(colNum, value);
+            }
+        }
+
+        /**
+         * 収集した行データを取得する。
+         *
+         * @return 行データ
+         */
+        List<List<String>> getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * .xlsxファイルのシートXMLを解析するSAXハンドラ。
+     */
+    private static final class XlsxSheetHandler extends DefaultHandler {
+
+        /** 共有文字列テーブル */
+        private final SharedStringsTable sst;
+
+        /** 収集先 */
+        private final SheetCollector collector;
+
+        /** 値の読み込み中のバッファ */
+        private final StringBuilder value = new StringBuilder();
+
+        /** 値を読み込み中か否か */
+        private boolean inValue = false;
+
+        /** 数式要素を読み込み中か否か */
+        private boolean inFormula = false;
+
+        /** インライン文字列要素を読み込み中か否か */
+        private boolean inInlineString = false;
+
+        /** 処理中のセルの型 */
+        private String cellType;
+
+        /** 処理中のセルの数式 */
+        private String formula;
+
+        /** 処理中のセルの数式が共有数式か否か */
+        private boolean sharedFormula = false;
+
+        /** 処理中のセルの値を収集したか否か */
+        private boolean cellAdded = false;
+
+        /** 処理中の行番号 */
+        private int rowNum = -1;
+
+        /** 処理中の列番号 */
+        private int colNum = -1;
+
+        /** 次に出現するセルの列番号（セル参照が省略された場合に使用） */
+        private int nextColNum = 0;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param sst       共有文字列テーブル
+         * @param collector 収集先
+         */
+        XlsxSheetHandler(SharedStringsTable sst, SheetCollector collector) {
+            this.sst = sst;
+            this.collector = collector;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("row".equals(qName)) {
+                String r = attributes.getValue("r");
+                rowNum = r == null ? rowNum + 1 : Integer.parseInt(r) - 1;
+                nextColNum = 0;
+            } else if ("c".equals(qName)) {
+                String ref = attributes.getValue("r");
+                colNum = ref == null ? nextColNum : toColumnIndex(ref);
+                nextColNum = colNum + 1;
+                cellType = attributes.getValue("t");
+                formula = null;
+                sharedFormula = false;
+                cellAdded = false;
+            } else if ("v".equals(qName)) {
+                inValue = true;
+                value.setLength(0);
+            } else if ("is".equals(qName)) {
+                inInlineString = true;
+                value.setLength(0);
+            } else if ("t".equals(qName) && inInlineString) {
+                // リッチテキストの場合は複数のt要素を連結する
+                inValue = true;
+            } else if ("f".equals(qName)) {
+                inFormula = true;
+                sharedFormula = "shared".equals(attributes.getValue("t"));
+                value.setLength(0);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if ("f".equals(qName)) {
+                inFormula = false;
+                // 共有数式のマスタ以外のセルは数式を持たないため、キャッシュ値を使用する。
+                formula = sharedFormula && value.length() == 0 ? null : value.toString();
+            } else if ("v".equals(qName)) {
+                inValue = false;
+                addCell(toCellString(value.toString()));
+            } else if ("t".equals(qName)) {
+                inValue = false;
+            } else if ("is".equals(qName)) {
+                inInlineString = false;
+                addCell(value.toString());
+            } else if ("c".equals(qName)) {
+                if (formula != null) {
+                    // 数式セルは数式を値とする（HSSF/XSSFのCell#toString()と同様）
+                    addCell(formula);
+                } else if (!cellAdded) {
+                    // 値を持たないセル（書式のみ設定されたセル）は空文字とする
+                    addCell("");
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inFormula) {
+                value.append(ch, start, length);
+            }
+        }
+
+        /**
+         * 処理中のセルの値を収集する。
+         *
+         * @param cellValue セルの値
+         */
+        private void addCell(String cellValue) {
+            collector.addCell(rowNum, colNum, cellValue);
+            cellAdded = true;
+        }
+
+        /**
+         * 値要素の内容をセルの文字列表現に変換する。
+         *
+         * @param raw 値要素の内容
+         * @return セルの文字列表現
+         */
+        private String toCellString(String raw) {
+            if ("s".equals(cellType)) {
+                int idx = Integer.parseInt(raw);
+                return new XSSFRichTextString(sst.getEntryAt(idx)).toString();
+            }
+            if ("b".equals(cellType)) {
+                return "0".equals(raw) ? "FALSE" : "TRUE";
+            }
+            if ("str".equals(cellType) || "e".equals(cellType)) {
+                return raw;
+            }
+            return String.valueOf(Double.parseDouble(raw));
+        }
+
+        /**
+         * セル参照(A1形式)から列番号を取得する。
+         *
+         * @param ref セル参照
+         * @return 列番号（0始まり）
+         */
+        private static int toColumnIndex(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                col = col * 26 + (c - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+
+    /**
+     * .xlsファイルのレコードを処理するリスナ。<br/>
+     * 対象シートのレコードのみを収集し、対象シートの終端で処理を中断する。
+     */
+    private static final class XlsSheetListener extends AbortableHSSFListener {
+
+        /** 対象シート名 */
+        private final String sheetName;
+
+        /** 収集先 */
+        private final SheetCollector collector = new SheetCollector();
+
+        /** シート定義（出現順） */
+        private final List<BoundSheetRecord> boundSheets = new ArrayList<BoundSheetRecord>();
+
+        /** 共有文字列テーブル */
+        private SSTRecord sst;
+
+        /** サブストリームのネストの深さ */
+        private int depth = 0;
+
+        /** 処理中のシートのインデックス（ワークブックグローバルは-1） */
+        private int sheetIdx = -2;
+
+        /** 対象シートの位置 */
+        private int targetIdx = -1;
+
+        /** 対象シートを処理中か否か */
+        private boolean inTarget = false;
+
+        /** 対象シートが見つかったか否か */
+        private boolean sheetFound = false;
+
+        /** 文字列結果を持つ数式レコード（直後のStringRecordで値が確定する） */
+        private FormulaRecord pendingFormula;
+
+        /** 数式の文字列表現の作成に必要なワークブックのレコードの収集先 */
+        private final SheetRecordCollectingListener workbookRecords;
+
+        /** 数式の文字列表現の作成に使用するワークブック */
+        private HSSFWorkbook stubWorkbook;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param sheetName 対象シート名
+         */
+        XlsSheetListener(String sheetName) {
+            this.sheetName = sheetName;
+            // 子リスナには委譲しない（processRecordInternallyのみ使用する）
+            this.workbookRecords = new SheetRecordCollectingListener(this);
+        }
+
+        @Override
+        public short abortableProcessRecord(Record record) {
+            if (sheetIdx < 0) {
+                // ワークブックグローバルのレコード（シート名、外部参照等）
+                workbookRecords.processRecordInternally(record);
+            }
+            switch (record.getSid()) {
+                case BoundSheetRecord.sid:
+                    boundSheets.add((BoundSheetRecord) record);
+                    break;
+                case SSTRecord.sid:
+                    sst = (SSTRecord) record;
+                    break;
+                case BOFRecord.sid:
+                    if (depth++ == 0) {
+                        // 埋め込みグラフ等のネストしたサブストリームは数えない
+                        onSheetStart();
+                    }
+                    break;
+                case EOFRecord.sid:
+                    if (--depth == 0 && inTarget) {
+                        // 対象シートの読み込みが完了したので、以降のレコードは処理しない。
+                        return 1;
+                    }
+                    break;
+                default:
+                    if (inTarget && depth == 1) {
+                        processCell(record);
+                    }
+                    break;
+            }
+            return 0;
+        }
+
+        /** シートの開始を処理する。 */
+        private void onSheetStart() {
+            if (sheetIdx == -1) {
+                // シートのBOFはファイル上の位置順に出現する。
+                List<BoundSheetRecord> ordered = new ArrayList<BoundSheetRecord>(boundSheets);
+                Collections.sort(ordered, new Comparator<BoundSheetRecord>() {
+                    public int compare(BoundSheetRecord o1, BoundSheetRecord o2) {
+                        return o1.getPositionOfBof() - o2.getPositionOfBof();
+                    }
+                });
+                for (int i = 0; i < ordered.size(); i++) {
+                    if (ordered.get(i).getSheetname().equals(sheetName)) {
+                        targetIdx = i;
+                        break;
+                    }
+                }
+            }
+            sheetIdx++;
+            inTarget = sheetIdx >= 0 && sheetIdx == targetIdx;
+            sheetFound |= inTarget;
+        }
+
+        /**
+         * セルを表すレコードを処理する。
+         *
+         * @param record レコード
+         */
+        private void processCell(Record record) {
+            switch (record.getSid()) {
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord lsst = (LabelSSTRecord) record;
+                    collector.addCell(lsst.getRow(), lsst.getColumn(),
+                            sst.getString(lsst.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    LabelRecord label = (LabelRecord) record;
+                    collector.addCell(label.getRow(), label.getColumn(), label.getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    collector.addCell(number.getRow(), number.getColumn(), String.valueOf(number.getValue()));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    collector.addCell(boolErr.getRow(), boolErr.getColumn(), boolErr.isBoolean()
+                            ? (boolErr.getBooleanValue() ? "TRUE" : "FALSE")
+                            : ErrorEval.getText(boolErr.getErrorValue()));
+                    break;
+                case BlankRecord.sid:
+                    BlankRecord blank = (BlankRecord) record;
+                    collector.addCell(blank.getRow(), blank.getColumn(), "");
+                    break;
+                case MulBlankRecord.sid:
+                    MulBlankRecord mulBlank = (MulBlankRecord) record;
+                    for (int col = mulBlank.getFirstColumn(); col <= mulBlank.getLastColumn(); col++) {
+                        collector.addCell(mulBlank.getRow(), col, "");
+                    }
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    if (!formula.isSharedFormula()) {
+                        // 数式セルは数式を値とする（HSSFCell#toString()と同様）
+                        collector.addCell(formula.getRow(), formula.getColumn(),
+                                HSSFFormulaParser.toFormulaString(getStubWorkbook(), formula.getParsedExpression()));
+                    } else if (formula.hasCachedResultString()) {
+                        // 共有数式は数式を復元できないため、キャッシュ値を使用する。
+                        pendingFormula = formula;
+                    } else {
+                        collector.addCell(formula.getRow(), formula.getColumn(),
+                                String.valueOf(formula.getValue()));
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (pendingFormula != null) {
+                        collector.addCell(pendingFormula.getRow(), pendingFormula.getColumn(),
+                                ((StringRecord) record).getString());
+                        pendingFormula = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * 数式の文字列表現の作成に使用するワークブックを取得する。
+         *
+         * @return ワークブック
+         */
+        private HSSFWorkbook getStubWorkbook() {
+            if (stubWorkbook == null) {
+                stubWorkbook = workbookRecords.getStubHSSFWorkbook();
+            }
+            return stubWorkbook;
+        }
+
+        /**
+         * 対象シートが見つかったか否か。
+         *
+         * @return 見つかった場合、真
+         */
+        boolean isSheetFound() {
+            return sheetFound;
+        }
+
+        /**
+         * 収集先を取得する。
+         *
+         * @return 収集先
+         */
+        SheetCollector getCollector() {
+            return collector;
+        }
+    }
+}
@@ -6,13 +6,12 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
 import nablarch.core.util.FileUtil;
 import nablarch.core.util.StringUtil;
-import nablarch.test.NablarchTestUtils;
+import nablarch.test.core.util.WeightedLruCache;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
@@ -116,8 +115,8 @@ public class PoiXlsReader implements TestDataReader {
             return null;
         }
 
-        List<String> line = new ArrayList<String>(64);
         int lastCellNum = row.getLastCellNum();
+        List<String> line = new ArrayList<String>(Math.max(lastCellNum, 0));
         for (int i = 0; i < lastCellNum; i++) {
             Cell cell = row.getCell(i);
             String cellValue = cell == null ? "" : cell.toString();
@@ -152,11 +151,60 @@ public class PoiXlsReader implements TestDataReader {
         sheet = null;
     }
 
-    /** ブックのキャッシュサイズ */
-    private static final int BOOK_CACHE_SIZE = 1;
+    /** ブックのキャッシュの重みの上限を設定するリポジトリのキー */
+    static final String BOOK_CACHE_MAX_WEIGHT_KEY = "nablarch.test.book-cache.max-weight";
+
+    /** ブックのキャッシュの重みの上限のデフォルト値（推定バイト数） */
+    private static final long DEFAULT_BOOK_CACHE_MAX_WEIGHT = 64L * 1024 * 1024;
+
+    /** セル1つあたりの推定バイト数（セル、レコード、値オブジェクトを含む） */
+    private static final long ESTIMATED_CELL_WEIGHT = 256;
+
+    /** ブックの重みを見積もるクラス */
+    private static final WeightedLruCache.Weigher<Workbook> BOOK_WEIGHER = new WeightedLruCache.Weigher<Workbook>() {
+        public long weigh(Workbook book) {
+            long cells = 0;
+            for (int i = 0; i < book.getNumberOfSheets(); i++) {
+                for (Row row : book.getSheetAt(i)) {
+                    cells += row.getPhysicalNumberOfCells();
+                }
+            }
+            return cells * ESTIMATED_CELL_WEIGHT;
+        }
+    };
+
+    /** ブックを読み込むクラス */
+    private static final WeightedLruCache.Loader<String, Workbook> BOOK_LOADER = new WeightedLruCache.Loader<String, Workbook>() {
+        public Workbook load(String filePath) {
+            return getWorkbook(filePath);
+        }
+    };
 
     /** ブックのキャッシュ */
-    private static Map<String, Workbook> bookCache = NablarchTestUtils.createLRUMap(BOOK_CACHE_SIZE);
+    private static WeightedLruCache<String, Workbook> bookCache;
+
+    /**
+     * ブックのキャッシュを取得する。<br/>
+     * 初回呼び出し時に、リポジトリの設定値を用いてキャッシュを生成する。
+     *
+     * @return ブックのキャッシュ
+     */
+    private static synchronized WeightedLruCache<String, Workbook> getBookCache() {
+        if (bookCache == null) {
+            bookCache = WeightedLruCache.fromRepository("bookCache",
+                    BOOK_CACHE_MAX_WEIGHT_KEY, DEFAULT_BOOK_CACHE_MAX_WEIGHT, BOOK_WEIGHER);
+        }
+        return bookCache;
+    }
+
+    /**
+     * ブックのキャッシュの統計情報を取得する。
+     *
+     * @return 統計情報
+     */
+    public static WeightedLruCache.Statistics getBookCacheStatistics() {
+        return getBookCache().getStatistics();
+    }
 
     /**
      * キャッシュされたブックを取得する。<br/>
@@ -166,12 +214,17 @@ public class PoiXlsReader implements TestDataReader {
      * @return ブック
      */
     private static Workbook getCachedWorkbook(String filePath) {
-        Workbook book = bookCache.get(filePath);
-        if (book == null) {
-            book = getWorkbook(filePath);
-            bookCache.put(filePath, book);
-        }
-        return book;
+        return getBookCache().get(filePath, BOOK_LOADER);
+    }
+
+    /**
+     * ブックを読み込み、キャッシュに格納する。<br/>
+     * 既にキャッシュされている場合、または他のスレッドで読み込み中の場合は、重複して読み込まない。
+     *
+     * @param file ブックのファイル
+     */
+    public static void preload(File file) {
+        getCachedWorkbook(file.getAbsolutePath());
     }
 
     /**
@@ -40,6 +40,15 @@ abstract class SingleDataParsingTemplate<RET> extends TestDataParsingTemplate<RE
         return getTargetType() == dataType && typeValue.equals(id);
     }
 
+    /**
+     * {@inheritDoc}
+     * データ型およびIDが一致する最初の行の位置を返却する。
+     */
+    @Override
+    int indexOfFirstTarget(TestDataSheet sheet, String id) {
+        return sheet.indexOf(getTargetType(), id);
+    }
+
     /**
      * {@inheritDoc}
      * 本クラスは単一のデータを読み取るので、次のデータは読み取らない。
@@ -1,14 +1,13 @@
 package nablarch.test.core.reader;
 
 import nablarch.core.util.StringUtil;
-import nablarch.test.NablarchTestUtils;
-import nablarch.test.core.util.interpreter.InterpretationContext;
+import nablarch.test.core.util.WeightedLruCache;
+import nablarch.test.core.util.interpreter.InterpreterChain;
 import nablarch.test.core.util.interpreter.TestDataInterpreter;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import static nablarch.core.util.Builder.concat;
 
@@ -24,17 +23,31 @@ abstract class TestDataParsingTemplate<RET> {
     /** 解析に使用するリーダ */
     private final TestDataReader reader;
 
-    /** 委譲先の{@link nablarch.test.core.util.interpreter.TestDataInterpreter} */
-    private final List<TestDataInterpreter> interpreters;
+    /** 委譲先の{@link nablarch.test.core.util.interpreter.TestDataInterpreter}の連鎖 */
+    private final InterpreterChain interpreters;
 
     /** 解析対象のデータ型 */
     private final DataType targetType;
 
+    /** テストデータのキャッシュの重みの上限を設定するリポジトリのキー */
+    static final String TEST_DATA_CACHE_MAX_WEIGHT_KEY = "nablarch.test.test-data-cache.max-weight";
+
+    /** テストデータのキャッシュの重みの上限のデフォルト値（推定バイト数） */
+    private static final long DEFAULT_TEST_DATA_CACHE_MAX_WEIGHT = 32L * 1024 * 1024;
+
+    /** シートの重みを見積もるクラス */
+    private static final WeightedLruCache.Weigher<TestDataSheet> SHEET_WEIGHER
+            = new WeightedLruCache.Weigher<TestDataSheet>() {
+        public long weigh(TestDataSheet sheet) {
+            return sheet.estimateWeight();
+        }
+    };
+
     /** テストデータのキャッシュ */
-    private static final Map<String, List<List<String>>> TEST_DATA_CACHE = NablarchTestUtils.createLRUMap(8);
+    private static WeightedLruCache<String, TestDataSheet> testDataCache;
 
     /** テストデータ */
-    private List<List<String>> testData;
+    private TestDataSheet testData;
 
     /** テストデータを読み込む際のインデックス */
     private int index;
@@ -60,6 +73,16 @@ abstract class TestDataParsingTemplate<RET> {
     abstract void onTargetTypeFound(List<String> line);
 
 
+    /**
+     * 処理対象のデータ型を含む最初の行の位置を、シートの索引から取得する。<br/>
+     * 返却する位置は、{@link #isTargetType(List, String)}が最初に真となる行の位置と一致しなければならない。
+     *
+     * @param sheet シート
+     * @param id    ID
+     * @return 行の位置（存在しない場合は-1）
+     */
+    abstract int indexOfFirstTarget(TestDataSheet sheet, String id);
+
     /**
      * 処理対象のデータ型であるかどうか判定する。
      *
@@ -92,7 +115,7 @@ abstract class TestDataParsingTemplate<RET> {
      */
     TestDataParsingTemplate(TestDataReader reader, List<TestDataInterpreter> interpreters, DataType targetType) {
         this.reader = reader;
-        this.interpreters = interpreters;
+        this.interpreters = new InterpreterChain(interpreters);
         this.targetType = targetType;
     }
 
@@ -125,40 +148,83 @@ abstract class TestDataParsingTemplate<RET> {
      * @param id        ID
      * @param useCache  読み込んだシートのキャッシュ要否
      */
-    public final void parse(String directory, String resource, String id, boolean useCache) {
+    public final void parse(String directory, String resource, String id, final boolean useCache) {
         this.directory = directory;
         this.resource = resource;
         String dataCacheKey = directory + '/' + resource;
-        if (!TEST_DATA_CACHE.containsKey(dataCacheKey)) {
-            // テストデータがキャッシュ上に存在しない場合は、テストデータをロードしキャッシュする。
-            if (reader instanceof PoiXlsReader) {
-                ((PoiXlsReader) reader).setUseCache(useCache);
+        // テストデータがキャッシュ上に存在しない場合は、テストデータをロードしキャッシュする。
+        testData = getTestDataCache().get(dataCacheKey, new WeightedLruCache.Loader<String, TestDataSheet>() {
+            public TestDataSheet load(String key) {
+                return loadSheet(useCache);
             }
-            reader.open(directory, resource);
-            try {
-                TEST_DATA_CACHE.put(dataCacheKey, readTestData());
-            } finally {
-                reader.close();
-            }
-        }
-        testData = TEST_DATA_CACHE.get(dataCacheKey);
+        });
+        long weight = testData.estimateWeight();
         try {
-            index = 0;
             parse(id);
         } catch (RuntimeException e) {
+            // テストデータ記法の解釈は行の参照時に行われるため、解釈失敗の原因もメッセージに含める。
             String msg = concat("can't get data. ",
-                    "directory=[", directory, "] resource=[", resource, "] id=[", id, "]");
+                    "directory=[", directory, "] resource=[", resource, "] id=[", id, "] ",
+                    "cause=[", e.getMessage(), "]");
             throw new IllegalStateException(msg, e);
+        } finally {
+            // 行の解釈によりシートの推定バイト数が変化した場合は、キャッシュの重みに反映する。
+            if (testData.estimateWeight() != weight) {
+                getTestDataCache().reweigh(dataCacheKey, testData);
+            }
+        }
+    }
+
+    /**
+     * テストデータのキャッシュを取得する。<br/>
+     * 初回呼び出し時に、リポジトリの設定値を用いてキャッシュを生成する。
+     *
+     * @return テストデータのキャッシュ
+     */
+    private static synchronized WeightedLruCache<String, TestDataSheet> getTestDataCache() {
+        if (testDataCache == null) {
+            testDataCache = WeightedLruCache.fromRepository("testDataCache",
+                    TEST_DATA_CACHE_MAX_WEIGHT_KEY, DEFAULT_TEST_DATA_CACHE_MAX_WEIGHT, SHEET_WEIGHER);
+        }
+        return testDataCache;
+    }
+
+    /**
+     * テストデータのキャッシュの統計情報を取得する。
+     *
+     * @return 統計情報
+     */
+    static WeightedLruCache.Statistics getTestDataCacheStatistics() {
+        return getTestDataCache().getStatistics();
+    }
+
+    /**
+     * シートを読み込む。
+     *
+     * @param useCache ブックのキャッシュ要否
+     * @return 読み込んだシート
+     */
+    private TestDataSheet loadSheet(boolean useCache) {
+        if (reader instanceof PoiXlsReader) {
+            ((PoiXlsReader) reader).setUseCache(useCache);
+        }
+        reader.open(directory, resource);
+        try {
+            return new TestDataSheet(readTestData(), interpreters);
+        } finally {
+            reader.close();
         }
     }
 
     /**
-     * テストデータを読み込む。
+     * テストデータを読み込む。<br/>
+     * テストデータ記法の解釈は、行が最初に参照された時点で{@link TestDataSheet}が行う。
      *
-     * @return 読み込んだテストデータ
+     * @return 読み込んだテストデータ（解釈前）
      */
     private List<List<String>> readTestData() {
-        List<List<String>> lines = new ArrayList<List<String>>(1024);
+        ArrayList<List<String>> lines = new ArrayList<List<String>>(1024);
+        TestDataRow.StringPool pool = new TestDataRow.StringPool();
         while (true) {
             List<String> line = reader.readLine();
             if (line == null) {
@@ -171,11 +237,10 @@ abstract class TestDataParsingTemplate<RET> {
             if (isBlankLine(line)) {
                 continue;
             }
-            List<String> interpret = interpret(line);
             // キャッシュするので、他の箇所で書き換えられないようにする。
-            List<String> unmodifiable = Collections.unmodifiableList(interpret);
-            lines.add(unmodifiable);
+            lines.add(new TestDataRow(intern(line, pool)));
         }
+        lines.trimToSize();
         // キャッシュするので、他の箇所で書き換えられないようにする。
         return Collections.unmodifiableList(lines);
     }
@@ -186,12 +251,14 @@ abstract class TestDataParsingTemplate<RET> {
      * @param id ID
      */
     void parse(String id) {
+        // 最初の処理対象データまでは読み飛ばす（それ以前の行は処理に影響しない）
+        int first = indexOfFirstTarget(testData, id);
+        index = first < 0 ? testData.size() : first;
         boolean nowReading = false;   // データ行読み込み中か
         List<String> line;
         while ((line = readLine()) != null) {
             // テーブル名の行
-            String firstCol = line.get(0);
-            DataType dataType = getDataType(firstCol);
+            DataType dataType = testData.getDataType(index - 1);
             // データタイプとグループIDが一致するか
             if (isTargetType(line, id)) {
                 if (nowReading && shouldStopOnNextOne()) {
@@ -223,6 +290,16 @@ abstract class TestDataParsingTemplate<RET> {
      * @return データタイプ
      */
     protected final DataType getDataType(String dataTypeCell) {
+        return toDataType(dataTypeCell);
+    }
+
+    /**
+     * データタイプを返却する。<br/>
+     *
+     * @param dataTypeCell データタイプが記載されたセル
+     * @return データタイプ
+     */
+    static DataType toDataType(String dataTypeCell) {
 
         if (dataTypeCell == null) {
             return DataType.DEFAULT;
@@ -255,7 +332,7 @@ abstract class TestDataParsingTemplate<RET> {
      */
     protected final List<String> readLine() {
         if (index < testData.size()) {
-            return testData.get(index++);
+            return testData.getLine(index++);
         }
         return null;
     }
@@ -313,18 +390,16 @@ abstract class TestDataParsingTemplate<RET> {
     }
 
     /**
-     * テストデータ記法を解釈する。
+     * 行データの各値を、文字列プールの共有インスタンスに置き換える。
      *
      * @param originalLine 元のデータ行
-     * @return 解釈後のデータ行
+     * @param pool         文字列プール
+     * @return 置き換え後のデータ行
      */
-    private List<String> interpret(List<String> originalLine) {
-        List<String> result = new ArrayList<String>(originalLine.size());
-        for (String e : originalLine) {
-            InterpretationContext context
-                    = new InterpretationContext(e, interpreters);
-            String interpreted = context.invokeNext();
-            result.add(interpreted);
+    private String[] intern(List<String> originalLine, TestDataRow.StringPool pool) {
+        String[] result = new String[originalLine.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pool.intern(originalLine.get(i));
         }
         return result;
     }
@@ -0,0 +1,210 @@
+package nablarch.test.core.reader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.test.TestSupport;
+import nablarch.test.core.util.WeightedLruCache;
+import nablarch.test.event.TestEventListener;
+
+/**
+ * テストデータのブックを事前に読み込むテストイベントリスナー。<br/>
+ * テストスイート開始時に、テストクラスが使用するブックをバックグラウンドのスレッドで読み込み、
+ * {@link PoiXlsReader}のブックのキャッシュに格納する。
+ * これにより、テストクラスが初めてブックを参照した際に、読み込みを待たずに済むようになる。
+ * 読み込み中のブックを参照した場合は、重複して読み込まず、その完了を待つ。
+ * <p>
+ * 読み込み対象のブックは、テストデータの配置規約に従って特定する。
+ * すなわち、リソースルート（{@code nablarch.test.resource-root}）配下に配置されたブックのうち、
+ * ディレクトリ階層に対応するパッケージに、ブック名と同名のテストクラスが存在するものを対象とする。
+ * </p>
+ * <p>
+ * 本リスナーは、テストデータリーダに{@link PoiXlsReader}を使用している場合に有効である。
+ * ブックは、リソースルート配下のパス名の順に読み込む。
+ * ブックのキャッシュに空きが無くなった時点（重みの合計が上限に達した時点、
+ * または読み込み開始後にキャッシュからブックが破棄された時点）で、以降のブックは読み込まない。
+ * 既にキャッシュされているブックを、事前読み込みによって破棄しないためである。
+ * </p>
+ */
+public class TestDataPreloader extends TestEventListener.Template {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(TestDataPreloader.class);
+
+    /** リソースルートの区切り文字 */
+    private static final String PATH_SEPARATOR = ";";
+
+    /** スレッド数 */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /** 読み込みを開始済みか否か */
+    private boolean started = false;
+
+    /** 読み込み開始時の、ブックのキャッシュの破棄数 */
+    private long initialEvictionCount;
+
+    /** テストスイート開始時に、ブックの読み込みを開始する。 */
+    @Override
+    public void beforeTestSuite() {
+        startPreloading();
+    }
+
+    /**
+     * テストクラス開始時に、ブックの読み込みが開始されていなければ開始する。<br/>
+     * テストスイート開始後に本リスナーが登録された場合に対応するためである。
+     */
+    @Override
+    public void beforeTestClass() {
+        startPreloading();
+    }
+
+    /** ブックの読み込みを開始する。 */
+    private synchronized void startPreloading() {
+        if (started) {
+            return;
+        }
+        started = true;
+        List<File> books = findBooks();
+        if (books.isEmpty()) {
+            return;
+        }
+        initialEvictionCount = PoiXlsReader.getBookCacheStatistics().getEvictionCount();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threadCount, books.size())), new DaemonThreadFactory());
+        for (final File book : books) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    if (!hasFreeWeight()) {
+                        return;
+                    }
+                    try {
+                        PoiXlsReader.preload(book);
+                    } catch (RuntimeException e) {
+                        // テストクラスでの読み込み時に改めてエラーとなるので、ここでは無視する。
+                        LOGGER.logDebug("preloading test data failed. file=[" + book + "]", e);
+                    }
+                }
+            });
+        }
+        // 投入済みのタスクは実行される。
+        executor.shutdown();
+    }
+
+    /**
+     * ブックのキャッシュに空きがあるか判定する。<br/>
+     * 重みの合計が上限に達した場合、または読み込み開始後にブックが破棄された場合は、空きがないとみなす。
+     *
+     * @return 空きがある場合、真
+     */
+    boolean hasFreeWeight() {
+        WeightedLruCache.Statistics statistics = PoiXlsReader.getBookCacheStatistics();
+        return statistics.getWeight() < statistics.getMaxWeight()
+                && statistics.getEvictionCount() == initialEvictionCount;
+    }
+
+    /**
+     * 読み込み対象のブックを、パス名の順に探す。
+     *
+     * @return 読み込み対象のブック
+     */
+    List<File> findBooks() {
+        List<File> books = new ArrayList<File>();
+        for (String root : TestSupport.getResourceRootSetting().split(PATH_SEPARATOR)) {
+            File dir = new File(root);
+            if (dir.isDirectory()) {
+                collectBooks(dir, "", books);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * ディレクトリを再帰的に探索し、テストクラスに対応するブックを収集する。
+     *
+     * @param dir     探索するディレクトリ
+     * @param pkgPath ディレクトリに対応するパッケージのパス（例：「foo/bar/」）
+     * @param books   収集先
+     */
+    private void collectBooks(File dir, String pkgPath, List<File> books) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        // 実行ごとに同じ順序で読み込むよう、ファイルシステムの列挙順ではなくパス名の順とする。
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                collectBooks(file, pkgPath + name + '/', books);
+                continue;
+            }
+            String bookName = getBookName(name);
+            if (bookName != null && hasTestClass(pkgPath + bookName)) {
+                books.add(file);
+            }
+        }
+    }
+
+    /**
+     * ファイル名からブック名を取得する。
+     *
+     * @param fileName ファイル名
+     * @return ブック名（ブックでない場合はnull）
+     */
+    private static String getBookName(String fileName) {
+        if (fileName.endsWith(".xls")) {
+            return fileName.substring(0, fileName.length() - ".xls".length());
+        }
+        if (fileName.endsWith(".xlsx")) {
+            return fileName.substring(0, fileName.length() - ".xlsx".length());
+        }
+        return null;
+    }
+
+    /**
+     * テストクラスが存在するか判定する。<br/>
+     * クラスの初期化を避けるため、クラスファイルの存在で判定する。
+     *
+     * @param classPath クラスのパス（例：「foo/bar/BuzTest」）
+     * @return 存在する場合、真
+     */
+    private static boolean hasTestClass(String classPath) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = TestDataPreloader.class.getClassLoader();
+        }
+        return loader.getResource(classPath + ".class") != null;
+    }
+
+    /**
+     * スレッド数を設定する。<br/>
+     * デフォルトは利用可能なプロセッサ数。
+     *
+     * @param threadCount スレッド数
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /** テストの終了を妨げないよう、デーモンスレッドを生成するクラス。 */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        /** スレッドの連番 */
+        private final AtomicInteger seq = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "test-data-preloader-" + seq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package nablarch.test.core.reader;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * キャッシュするテストデータの1行を表す不変のリスト。<br/>
+ * セルの値を配列で保持するため、{@link java.util.ArrayList}を
+ * {@link java.util.Collections#unmodifiableList(java.util.List)}でラップするよりも少ないメモリで済む。
+ */
+final class TestDataRow extends AbstractList<String> implements RandomAccess {
+
+    /** セルの値 */
+    private final String[] cells;
+
+    /**
+     * コンストラクタ。<br/>
+     * 引数の配列は複製せずにそのまま保持するので、呼び出し元で書き換えてはならない。
+     *
+     * @param cells セルの値
+     */
+    TestDataRow(String[] cells) {
+        this.cells = cells;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String get(int index) {
+        return cells[index];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * シート内で同じ値の文字列インスタンスを共有するための文字列プール。<br/>
+     * カラム名、"null"、フラグ値、コード値など、同じ値が繰り返し出現するため、
+     * 1つのインスタンスにまとめることでキャッシュの使用メモリを削減する。
+     * {@link String#intern()}とは異なり、シートの読み込み完了後はプールごと破棄される。
+     */
+    static final class StringPool {
+
+        /** プール */
+        private final Map<String, String> pool = new HashMap<String, String>();
+
+        /**
+         * 同じ値の共有インスタンスを取得する。
+         *
+         * @param value 値
+         * @return 共有インスタンス（値がnullの場合はnull）
+         */
+        String intern(String value) {
+            if (value == null) {
+                return null;
+            }
+            String shared = pool.get(value);
+            if (shared == null) {
+                pool.put(value, value);
+                return value;
+            }
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package nablarch.test.core.reader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.test.core.util.interpreter.InterpreterChain;
+
+/**
+ * 読み込み済みのシートを表すクラス。<br/>
+ * 行データに加え、データ型の定義行の位置を索引として保持する。
+ * 索引はシートをキャッシュする際に一度だけ作成されるので、
+ * データの取得時にシートを先頭から走査する必要がない。
+ * <p>
+ * テストデータ記法の解釈は、行が最初に参照された時点で行い、その結果を保持する。
+ * これにより、シート内の一部のデータのみを使用する場合に、
+ * 使用しないデータの解釈（バイナリファイルの読み込み、文字列の生成など）を行わずに済む。
+ * データ型の判定および索引の作成は、解釈前の値で行う。
+ * 解釈により行の推定バイト数が増減した場合（バイナリファイルの読み込み等）は、
+ * {@link #estimateWeight()}の値に反映する。
+ * </p>
+ */
+final class TestDataSheet {
+
+    /** 行1つあたりのオーバーヘッドの推定バイト数 */
+    private static final long ROW_OVERHEAD = 64;
+
+    /** セル1つあたりのオーバーヘッドの推定バイト数（文字列オブジェクト、参照） */
+    private static final long CELL_OVERHEAD = 48;
+
+    /** 行データ（解釈前の行は、参照時に解釈後の行に置き換える） */
+    private final List<List<String>> lines;
+
+    /** テストデータ記法を解釈するクラス（解釈済みの行データの場合はnull） */
+    private final InterpreterChain interpreters;
+
+    /** 各行が解釈済みか否か */
+    private final boolean[] interpreted;
+
+    /** 各行の先頭セルが示すデータ型 */
+    private final DataType[] dataTypes;
+
+    /** 推定バイト数 */
+    private long weight;
+
+    /** 定義部（先頭セルの「=」まで）から最初の出現位置への索引 */
+    private final Map<String, Integer> directiveIndex = new HashMap<String, Integer>();
+
+    /** データ型およびID（先頭セルの「=」以降）から最初の出現位置への索引 */
+    private final Map<DataType, Map<String, Integer>> idIndex = new HashMap<DataType, Map<String, Integer>>();
+
+    /**
+     * コンストラクタ。<br/>
+     * 解釈済みの行データを保持する。
+     *
+     * @param lines 行データ
+     */
+    TestDataSheet(List<List<String>> lines) {
+        this(lines, null);
+    }
+
+    /**
+     * コンストラクタ。<br/>
+     * 解釈前の行データを保持し、参照時に解釈する。
+     *
+     * @param lines        解釈前の行データ
+     * @param interpreters テストデータ記法を解釈するクラス
+     */
+    TestDataSheet(List<List<String>> lines, InterpreterChain interpreters) {
+        this.lines = interpreters == null ? lines : new ArrayList<List<String>>(lines);
+        this.interpreters = interpreters;
+        this.interpreted = interpreters == null ? null : new boolean[lines.size()];
+        this.dataTypes = new DataType[lines.size()];
+        long estimated = 0;
+        for (int i = 0; i < dataTypes.length; i++) {
+            List<String> line = lines.get(i);
+            estimated += weigh(line);
+            String first = line.get(0);
+            DataType type = TestDataParsingTemplate.toDataType(first);
+            dataTypes[i] = type;
+            if (type == DataType.DEFAULT) {
+                continue;
+            }
+            int eq = first.indexOf('=');
+            if (eq >= 0) {
+                putIfAbsent(directiveIndex, first.substring(0, eq + 1), i);
+            }
+            Map<String, Integer> ids = idIndex.get(type);
+            if (ids == null) {
+                ids = new HashMap<String, Integer>();
+                idIndex.put(type, ids);
+            }
+            putIfAbsent(ids, first.substring(eq + 1), i);
+        }
+        this.weight = estimated;
+    }
+
+    /**
+     * 行の推定バイト数を見積もる。
+     *
+     * @param line 行データ
+     * @return 推定バイト数
+     */
+    private static long weigh(List<String> line) {
+        long estimated = ROW_OVERHEAD;
+        for (String cell : line) {
+            estimated += CELL_OVERHEAD + (cell == null ? 0 : cell.length() * 2L);
+        }
+        return estimated;
+    }
+
+    /**
+     * 最初の出現位置のみを登録する。
+     *
+     * @param index 索引
+     * @param key   キー
+     * @param pos   出現位置
+     */
+    private static void putIfAbsent(Map<String, Integer> index, String key, int pos) {
+        if (!index.containsKey(key)) {
+            index.put(key, pos);
+        }
+    }
+
+    /**
+     * 保持しているデータの推定バイト数を取得する。<br/>
+     * 解釈済みの行は、解釈後の値で見積もる。
+     *
+     * @return 推定バイト数
+     */
+    synchronized long estimateWeight() {
+        return weight;
+    }
+
+    /**
+     * 行数を取得する。
+     *
+     * @return 行数
+     */
+    int size() {
+        return lines.size();
+    }
+
+    /**
+     * 行データを取得する。<br/>
+     * 行が解釈前の場合は、解釈して結果を保持する。
+     *
+     * @param pos 行の位置
+     * @return 行データ
+     */
+    List<String> getLine(int pos) {
+        if (interpreters == null) {
+            return lines.get(pos);
+        }
+        // シートはキャッシュを介して複数のスレッドから参照されうる。
+        synchronized (this) {
+            if (!interpreted[pos]) {
+                List<String> original = lines.get(pos);
+                List<String> result = interpret(original);
+                lines.set(pos, result);
+                interpreted[pos] = true;
+                weight += weigh(result) - weigh(original);
+            }
+            return lines.get(pos);
+        }
+    }
+
+    /**
+     * テストデータ記法を解釈する。
+     *
+     * @param originalLine 元のデータ行
+     * @return 解釈後のデータ行
+     */
+    private List<String> interpret(List<String> originalLine) {
+        String[] result = new String[originalLine.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = interpreters.interpret(originalLine.get(i));
+        }
+        return new TestDataRow(result);
+    }
+
+    /**
+     * 行の先頭セルが示すデータ型を取得する。
+     *
+     * @param pos 行の位置
+     * @return データ型
+     */
+    DataType getDataType(int pos) {
+        return dataTypes[pos];
+    }
+
+    /**
+     * 先頭セルの「=」までが指定された定義部と一致する最初の行の位置を取得する。
+     *
+     * @param directive 定義部（例：「SETUP_TABLE[group]=」）
+     * @return 行の位置（存在しない場合は-1）
+     */
+    int indexOfDirective(String directive) {
+        Integer pos = directiveIndex.get(directive);
+        return pos == null ? -1 : pos;
+    }
+
+    /**
+     * 指定されたデータ型およびIDを持つ最初の行の位置を取得する。
+     *
+     * @param type データ型
+     * @param id   ID
+     * @return 行の位置（存在しない場合は-1）
+     */
+    int indexOf(DataType type, String id) {
+        Map<String, Integer> ids = idIndex.get(type);
+        if (ids == null) {
+            return -1;
+        }
+        Integer pos = ids.get(id);
+        return pos == null ? -1 : pos;
+    }
+}
@@ -0,0 +1,251 @@
+package nablarch.test.core.reader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import nablarch.core.util.FileUtil;
+
+import static nablarch.core.util.Builder.concat;
+
+/**
+ * EXCELのブックを、{@link DelimitedTextReader}で読み込めるテキスト形式に変換するクラス。<br/>
+ * ブック「{ディレクトリ}/FooTest.xls」の各シートを、「{ディレクトリ}/FooTest/{シート名}.tsv」に出力する。
+ * ブックと同じディレクトリに出力するため、変換後もテストデータの配置規約は変わらない。
+ * <p>
+ * セルの値にタブまたは改行を含むシートは、TSV形式で表現できないため、CSV形式（.csv）で出力する。
+ * 空行は出力しない。コメント行は先頭のセルのみを出力する。
+ * </p>
+ * <p>
+ * 本クラスはmainメソッドから実行する。引数には、変換するブック、
+ * またはブックを含むディレクトリ（サブディレクトリも対象とする）を指定する。
+ * </p>
+ */
+public class TestDataTextConverter {
+
+    /** 出力時の改行コード */
+    private static final String LINE_SEPARATOR = "\n";
+
+    /** ブックの読み込みに使用するリーダ */
+    private final PoiXlsReader reader = new PoiXlsReader();
+
+    /** コンストラクタ。 */
+    public TestDataTextConverter() {
+        reader.setUseCache(false);
+    }
+
+    /**
+     * メインメソッド。
+     * <ol>
+     * <li>変換するブック、またはブックを含むディレクトリのパス（1つ以上）
+     * </ol>
+     *
+     * @param args プログラム引数
+     */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException(
+                    "book or directory must be specified. args=" + Arrays.toString(args));
+        }
+        TestDataTextConverter converter = new TestDataTextConverter();
+        for (String arg : args) {
+            File file = new File(arg);
+            if (!file.exists()) {
+                throw new IllegalArgumentException("file was not found. specified file = [" + arg + "]");
+            }
+            for (File book : converter.findBooks(file)) {
+                converter.convert(book);
+            }
+        }
+    }
+
+    /**
+     * 変換対象のブックを探す。
+     *
+     * @param file ブック、またはディレクトリ
+     * @return ブック
+     */
+    List<File> findBooks(File file) {
+        List<File> books = new ArrayList<File>();
+        collectBooks(file, books);
+        return books;
+    }
+
+    /**
+     * ブックを再帰的に収集する。
+     *
+     * @param file  ブック、またはディレクトリ
+     * @param books 収集先
+     */
+    private void collectBooks(File file, List<File> books) {
+        if (file.isFile()) {
+            if (getBookName(file) != null) {
+                books.add(file);
+            }
+            return;
+        }
+        File[] files = file.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File e : files) {
+            collectBooks(e, books);
+        }
+    }
+
+    /**
+     * ブックを変換する。<br/>
+     * ブックと同じディレクトリに、ブック名のディレクトリを作成して出力する。
+     *
+     * @param book ブック
+     * @return 出力先のディレクトリ
+     */
+    public File convert(File book) {
+        String bookName = getBookName(book);
+        if (bookName == null) {
+            throw new IllegalArgumentException("not an excel book. file=[" + book + "]");
+        }
+        File outputDir = new File(book.getAbsoluteFile().getParentFile(), bookName);
+        convert(book, outputDir);
+        return outputDir;
+    }
+
+    /**
+     * ブックを変換する。
+     *
+     * @param book      ブック
+     * @param outputDir 出力先のディレクトリ
+     */
+    public void convert(File book, File outputDir) {
+        String bookName = getBookName(book);
+        if (bookName == null) {
+            throw new IllegalArgumentException("not an excel book. file=[" + book + "]");
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalStateException("could not create directory. dir=[" + outputDir + "]");
+        }
+        String dir = book.getAbsoluteFile().getParent();
+        Set<String> sheetNames = new TreeSet<String>(PoiXlsReader.getSheetNames(book.getAbsoluteFile()));
+        for (String sheetName : sheetNames) {
+            List<List<String>> lines = readSheet(dir, bookName + '/' + sheetName);
+            boolean tsv = isTsvRepresentable(lines);
+            File output = new File(outputDir, sheetName
+                    + (tsv ? DelimitedTextReader.TSV_EXTENSION : DelimitedTextReader.CSV_EXTENSION));
+            // 別形式で出力済みのファイルがあると、そちらが優先して読み込まれる場合があるため削除する。
+            File other = new File(outputDir, sheetName
+                    + (tsv ? DelimitedTextReader.CSV_EXTENSION : DelimitedTextReader.TSV_EXTENSION));
+            if (other.exists() && !other.delete()) {
+                throw new IllegalStateException("could not delete file. file=[" + other + "]");
+            }
+            try {
+                write(output, lines, tsv);
+            } catch (IOException e) {
+                throw new RuntimeException(concat("could not write file. file=[", output, "]"), e);
+            }
+        }
+    }
+
+    /**
+     * シートを読み込む。
+     *
+     * @param dir      ブックのディレクトリ
+     * @param dataName データ名（ブック名/シート名）
+     * @return シートの行データ
+     */
+    private List<List<String>> readSheet(String dir, String dataName) {
+        List<List<String>> lines = new ArrayList<List<String>>();
+        reader.open(dir, dataName);
+        try {
+            List<String> line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * 全ての値がTSV形式で表現可能か判定する。
+     *
+     * @param lines 行データ
+     * @return 表現可能な場合、真
+     */
+    private static boolean isTsvRepresentable(List<List<String>> lines) {
+        for (List<String> line : lines) {
+            for (String cell : line) {
+                if (cell.indexOf('\t') >= 0 || cell.indexOf('\r') >= 0 || cell.indexOf('\n') >= 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ファイルに出力する。
+     *
+     * @param output 出力先のファイル
+     * @param lines  行データ
+     * @param tsv    TSV形式で出力する場合、真
+     * @throws IOException 出力に失敗した場合
+     */
+    private static void write(File output, List<List<String>> lines, boolean tsv) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+        try {
+            for (List<String> line : lines) {
+                for (int i = 0; i < line.size(); i++) {
+                    if (i > 0) {
+                        writer.write(tsv ? '\t' : ',');
+                    }
+                    writer.write(tsv ? line.get(i) : quoteCsv(line.get(i)));
+                }
+                writer.write(LINE_SEPARATOR);
+            }
+            writer.flush();
+        } finally {
+            FileUtil.closeQuietly(writer);
+        }
+    }
+
+    /**
+     * 必要に応じて、CSV形式の囲み文字で値を囲む。
+     *
+     * @param cell 値
+     * @return CSV形式の値
+     */
+    static String quoteCsv(String cell) {
+        if (cell.indexOf(',') < 0 && cell.indexOf('"') < 0
+                && cell.indexOf('\r') < 0 && cell.indexOf('\n') < 0) {
+            return cell;
+        }
+        return '"' + cell.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * ファイル名からブック名を取得する。
+     *
+     * @param file ファイル
+     * @return ブック名（ブックでない場合はnull）
+     */
+    private static String getBookName(File file) {
+        String name = file.getName();
+        if (name.endsWith(".xls")) {
+            return name.substring(0, name.length() - ".xls".length());
+        }
+        if (name.endsWith(".xlsx")) {
+            return name.substring(0, name.length() - ".xlsx".length());
+        }
+        return null;
+    }
+}
@@ -287,7 +287,7 @@ public abstract class StandaloneTestSupportTemplate extends TestEventDispatcher
 
             @Override
             void forShot() {
-                setUp();
+                dbSupport.setUpDbForShot(SETUP_TABLE_SHEET, null);
             }
         };
     }
@@ -154,10 +154,10 @@ public class TestShot {
         }
 
         // デフォルトのセットアップ
-        dbSupport.setUpDb(sheetName, null);
+        dbSupport.setUpDbForShot(sheetName, null);
         if (!gid.equals(DEFAULT_GID)) {
             // グループID指定のセットアップ
-            dbSupport.setUpDb(sheetName, gid);
+            dbSupport.setUpDbForShot(sheetName, gid);
         }
     }
 
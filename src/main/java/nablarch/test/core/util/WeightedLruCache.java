@@ -0,0 +1,477 @@
+package nablarch.test.core.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.StringUtil;
+
+import static nablarch.core.util.Builder.concat;
+
+/**
+ * 要素の推定サイズ（重み）の合計で容量を制限するLRUキャッシュ。<br/>
+ * 要素数ではなく、{@link Weigher}で見積もった重みの合計が上限を超えた場合に、
+ * 最も長い間参照されていない要素から破棄する。
+ * ただし、直近に格納された要素は、単独で上限を超える場合でも破棄しない。
+ * <p>
+ * キャッシュのサイジングのため、ヒット数、ミス数、破棄数、ロード時間を記録する。
+ * 本クラスはスレッドセーフである。
+ * </p>
+ *
+ * @param <K> キーの型
+ * @param <V> 値の型
+ */
+public class WeightedLruCache<K, V> {
+
+    /**
+     * 値の重みを見積もるインタフェース。
+     *
+     * @param <V> 値の型
+     */
+    public interface Weigher<V> {
+
+        /**
+         * 値の重み（推定バイト数）を見積もる。
+         *
+         * @param value 値
+         * @return 重み
+         */
+        long weigh(V value);
+    }
+
+    /**
+     * キャッシュにヒットしなかった場合に値をロードするインタフェース。
+     *
+     * @param <K> キーの型
+     * @param <V> 値の型
+     */
+    public interface Loader<K, V> {
+
+        /**
+         * 値をロードする。
+         *
+         * @param key キー
+         * @return ロードした値
+         */
+        V load(K key);
+    }
+
+    /** キャッシュ名 */
+    private final String name;
+
+    /** 重みの上限 */
+    private final long maxWeight;
+
+    /** 重みを見積もるクラス */
+    private final Weigher<? super V> weigher;
+
+    /** 要素（アクセス順） */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+
+    /** ロード中の処理 */
+    private final Map<K, FutureTask<V>> loading = new HashMap<K, FutureTask<V>>();
+
+    /** 重みの合計 */
+    private long totalWeight = 0;
+
+    /** ヒット数 */
+    private long hitCount = 0;
+
+    /** ミス数 */
+    private long missCount = 0;
+
+    /** 破棄数 */
+    private long evictionCount = 0;
+
+    /** ロード回数 */
+    private long loadCount = 0;
+
+    /** ロードに要した時間の合計（ナノ秒） */
+    private long totalLoadTime = 0;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param name      キャッシュ名
+     * @param maxWeight 重みの上限
+     * @param weigher   重みを見積もるクラス
+     */
+    public WeightedLruCache(String name, long maxWeight, Weigher<? super V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException(concat(
+                    "argument maxWeight must be greater than zero. but was [", maxWeight, "]"));
+        }
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * リポジトリに設定された重みの上限を使用してキャッシュを生成する。<br/>
+     * リポジトリに設定がない場合は、デフォルト値を使用する。
+     *
+     * @param name             キャッシュ名
+     * @param maxWeightKey     重みの上限を設定したリポジトリのキー
+     * @param defaultMaxWeight デフォルトの重みの上限
+     * @param weigher          重みを見積もるクラス
+     * @param <K>              キーの型
+     * @param <V>              値の型
+     * @return キャッシュ
+     */
+    public static <K, V> WeightedLruCache<K, V> fromRepository(
+            String name, String maxWeightKey, long defaultMaxWeight, Weigher<? super V> weigher) {
+        String configured = SystemRepository.getString(maxWeightKey);
+        long maxWeight = StringUtil.isNullOrEmpty(configured) ? defaultMaxWeight : Long.parseLong(configured.trim());
+        return new WeightedLruCache<K, V>(name, maxWeight, weigher);
+    }
+
+    /**
+     * キャッシュから値を取得する。
+     *
+     * @param key キー
+     * @return 値（キャッシュに存在しない場合はnull）
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * キャッシュから値を取得する。<br/>
+     * キャッシュに存在しない場合は、ロードしてキャッシュに格納する。
+     * ロード中はロックを保持しない。
+     * 同一キーのロードが他のスレッドで実行中の場合は、重複してロードせずその完了を待つ。
+     *
+     * @param key    キー
+     * @param loader ロードするクラス
+     * @return 値
+     */
+    public V get(final K key, final Loader<? super K, ? extends V> loader) {
+        FutureTask<V> task;
+        boolean owner = false;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                hitCount++;
+                return entry.value;
+            }
+            task = loading.get(key);
+            if (task == null) {
+                missCount++;
+                task = new FutureTask<V>(new Callable<V>() {
+                    public V call() {
+                        return loader.load(key);
+                    }
+                });
+                loading.put(key, task);
+                owner = true;
+            } else {
+                // 他のスレッドがロード中のため、ロード結果を共有する。
+                hitCount++;
+            }
+        }
+        if (owner) {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                V value = getResult(task);
+                long elapsed = System.nanoTime() - start;
+                synchronized (this) {
+                    loadCount++;
+                    totalLoadTime += elapsed;
+                }
+                put(key, value);
+            } finally {
+                synchronized (this) {
+                    loading.remove(key);
+                }
+            }
+        }
+        return getResult(task);
+    }
+
+    /**
+     * ロード結果を取得する。<br/>
+     * ロード時に発生した例外は、そのまま送出する。
+     *
+     * @param task ロード処理
+     * @param <T>  値の型
+     * @return ロード結果
+     */
+    private static <T> T getResult(FutureTask<T> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * キャッシュに値を格納する。
+     *
+     * @param key   キー
+     * @param value 値
+     */
+    public void put(K key, V value) {
+        long weight = weigher.weigh(value);
+        synchronized (this) {
+            Entry<V> old = entries.put(key, new Entry<V>(value, weight));
+            if (old != null) {
+                totalWeight -= old.weight;
+            }
+            totalWeight += weight;
+            evict();
+        }
+    }
+
+    /**
+     * 格納済みの値の重みを見積もり直す。<br/>
+     * 格納後に値の推定サイズが変化した場合に呼び出す。
+     * 重みが増加して上限を超えた場合は、最も長い間参照されていない要素から破棄する。
+     * 指定されたキーに指定された値が格納されていない場合は何もしない。
+     *
+     * @param key   キー
+     * @param value 値
+     */
+    public void reweigh(K key, V value) {
+        long weight = weigher.weigh(value);
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || entry.value != value) {
+                return;
+            }
+            totalWeight += weight - entry.weight;
+            entry.weight = weight;
+            evict();
+        }
+    }
+
+    /**
+     * キャッシュに格納されているか判定する。<br/>
+     * 本メソッドは統計情報、アクセス順序に影響しない。
+     *
+     * @param key キー
+     * @return 格納されている場合、真
+     */
+    public synchronized boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    /** キャッシュをクリアする。統計情報はクリアしない。 */
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /** 上限を超えている間、最も長い間参照されていない要素を破棄する。 */
+    private void evict() {
+        Iterator<Map.Entry<K, Entry<V>>> itr = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && entries.size() > 1) {
+            Entry<V> eldest = itr.next().getValue();
+            itr.remove();
+            totalWeight -= eldest.weight;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * 統計情報を取得する。
+     *
+     * @return 統計情報
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(name, entries.size(), totalWeight, maxWeight,
+                hitCount, missCount, evictionCount, loadCount, totalLoadTime);
+    }
+
+    /**
+     * 要素。
+     *
+     * @param <V> 値の型
+     */
+    private static final class Entry<V> {
+
+        /** 値 */
+        private final V value;
+
+        /** 重み */
+        private long weight;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param value  値
+         * @param weight 重み
+         */
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * キャッシュの統計情報。
+     */
+    public static final class Statistics {
+
+        /** キャッシュ名 */
+        private final String name;
+
+        /** 要素数 */
+        private final int size;
+
+        /** 重みの合計 */
+        private final long weight;
+
+        /** 重みの上限 */
+        private final long maxWeight;
+
+        /** ヒット数 */
+        private final long hitCount;
+
+        /** ミス数 */
+        private final long missCount;
+
+        /** 破棄数 */
+        private final long evictionCount;
+
+        /** ロード回数 */
+        private final long loadCount;
+
+        /** ロードに要した時間の合計（ナノ秒） */
+        private final long totalLoadTime;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param name          キャッシュ名
+         * @param size          要素数
+         * @param weight        重みの合計
+         * @param maxWeight     重みの上限
+         * @param hitCount      ヒット数
+         * @param missCount     ミス数
+         * @param evictionCount 破棄数
+         * @param loadCount     ロード回数
+         * @param totalLoadTime ロードに要した時間の合計（ナノ秒）
+         */
+        Statistics(String name, int size, long weight, long maxWeight, long hitCount, long missCount,  // SUPPRESS CHECKSTYLE 値オブジェクトのため
+                   long evictionCount, long loadCount, long totalLoadTime) {
+            this.name = name;
+            this.size = size;
+            this.weight = weight;
+            this.maxWeight = maxWeight;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.loadCount = loadCount;
+            this.totalLoadTime = totalLoadTime;
+        }
+
+        /**
+         * 要素数を取得する。
+         *
+         * @return 要素数
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * 重みの合計を取得する。
+         *
+         * @return 重みの合計
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * 重みの上限を取得する。
+         *
+         * @return 重みの上限
+         */
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        /**
+         * ヒット数を取得する。
+         *
+         * @return ヒット数
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * ミス数を取得する。
+         *
+         * @return ミス数
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * 破棄数を取得する。
+         *
+         * @return 破棄数
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * ロード回数を取得する。
+         *
+         * @return ロード回数
+         */
+        public long getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * ロードに要した時間の合計を取得する。
+         *
+         * @return ロードに要した時間の合計（ナノ秒）
+         */
+        public long getTotalLoadTime() {
+            return totalLoadTime;
+        }
+
+        @Override
+        public String toString() {
+            return concat(name, " size=[", size, "] weight=[", weight, "/", maxWeight, "]",
+                    " hit=[", hitCount, "] miss=[", missCount, "] eviction=[", evictionCount, "]",
+                    " load=[", loadCount, "] loadTime(ms)=[", totalLoadTime / 1000000L, "]");
+        }
+    }
+}
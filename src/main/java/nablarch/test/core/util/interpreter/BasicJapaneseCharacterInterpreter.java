@@ -15,7 +15,7 @@ import nablarch.test.core.util.generator.CharacterGenerator;
  * @author T.Kawasaki
  * @see BasicJapaneseCharacterGenerator
  */
-public class BasicJapaneseCharacterInterpreter implements TestDataInterpreter {
+public class BasicJapaneseCharacterInterpreter implements ConditionalInterpreter {
 
     /** 委譲先の文字生成クラス */
     private CharacterGenerator delegate = new BasicJapaneseCharacterGenerator();
@@ -24,6 +24,14 @@ public class BasicJapaneseCharacterInterpreter implements TestDataInterpreter {
     private static final Pattern PTN = Pattern.compile("\\$\\{(\\W+)\\s*,\\s*([0-9]+)\\}");
 
 
+    /**
+     * {@inheritDoc}
+     * 値が「${」で始まる場合に真を返却する。
+     */
+    public boolean isApplicable(String value) {
+        return value.startsWith("${");
+    }
+
     /** {@inheritDoc} */
     public String interpret(InterpretationContext context) {
         String value = context.getValue();
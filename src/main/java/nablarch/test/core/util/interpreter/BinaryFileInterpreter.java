@@ -30,11 +30,14 @@ import static nablarch.core.util.Builder.concat;
  * 
  * @author Shinsuke Yoshio
  */
-public class BinaryFileInterpreter implements TestDataInterpreter {
+public class BinaryFileInterpreter implements ConditionalInterpreter {
 
     /** Excelの記述形式 */
     private static final Pattern PTN = Pattern.compile("\\$\\{binaryFile:(.+)\\}");
 
+    /** 記述形式の開始部分 */
+    private static final String PREFIX = "${binaryFile:";
+
     /** ファイルの取得元パス */
     private String path;
 
@@ -47,6 +50,14 @@ public class BinaryFileInterpreter implements TestDataInterpreter {
         this.path = path;
     }
 
+    /**
+     * {@inheritDoc}
+     * 値がバイナリファイルの記法で始まる場合に真を返却する。
+     */
+    public boolean isApplicable(String value) {
+        return value.startsWith(PREFIX);
+    }
+
     /** {@inheritDoc} */
     public String interpret(InterpretationContext context) {
         String value = context.getValue();
@@ -12,7 +12,7 @@ import java.util.regex.Pattern;
  *
  * @author T.Kawasaki
  */
-public class CompositeInterpreter implements TestDataInterpreter {
+public class CompositeInterpreter implements ConditionalInterpreter {
 
     /** 委譲先の{@link TestDataInterpreter} */
     private List<TestDataInterpreter> interpreters = Collections.emptyList();
@@ -41,6 +41,14 @@ public class CompositeInterpreter implements TestDataInterpreter {
         return context.invokeNext();
     }
 
+    /**
+     * {@inheritDoc}
+     * 値が「${」を含む場合に真を返却する。
+     */
+    public boolean isApplicable(String value) {
+        return value.contains("${");
+    }
+
     /**
      * マッチした１要素を解釈する。
      *
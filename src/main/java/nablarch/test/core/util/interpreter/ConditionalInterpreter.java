@@ -0,0 +1,22 @@
+package nablarch.test.core.util.interpreter;
+
+/**
+ * 解釈対象となり得る値かどうかを事前に判定できる解釈クラス。<br/>
+ * {@link #isApplicable(String)}が偽を返却する値に対しては、
+ * {@link #interpret(InterpretationContext)}は値を変更せずに{@link InterpretationContext#invokeNext()}
+ * の結果を返却しなければならない。
+ * {@link InterpreterChain}は、この性質を利用して解釈対象とならない解釈クラスの起動を省略する。
+ *
+ * @see InterpreterChain
+ */
+public interface ConditionalInterpreter extends TestDataInterpreter {
+
+    /**
+     * 解釈対象となり得る値かどうか判定する。<br/>
+     * 本メソッドは、正規表現の評価やオブジェクトの生成を伴わない軽量な判定であることが望ましい。
+     *
+     * @param value 値（nullでない）
+     * @return 解釈対象となり得る場合、真
+     */
+    boolean isApplicable(String value);
+}
@@ -43,7 +43,7 @@ import nablarch.core.date.SystemTimeProvider;
  *
  * @author T.Kawasaki
  */
-public class DateTimeInterpreter implements TestDataInterpreter {
+public class DateTimeInterpreter implements ConditionalInterpreter {
 
     /** システム時刻表現 */
     private static final String SYSTEM_TIME_EXPRESSION = "${systemTime}";
@@ -94,6 +94,14 @@ public class DateTimeInterpreter implements TestDataInterpreter {
     }
 
 
+    /**
+     * {@inheritDoc}
+     * 値が日時の記法と一致する場合に真を返却する。
+     */
+    public boolean isApplicable(String value) {
+        return dateTimeValues.containsKey(value);
+    }
+
     /** {@inheritDoc} */
     public String interpret(InterpretationContext context) {
         String result = dateTimeValues.get(context.getValue());
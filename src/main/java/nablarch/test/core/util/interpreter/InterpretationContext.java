@@ -1,9 +1,6 @@
 package nablarch.test.core.util.interpreter;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.Queue;
 
 import static nablarch.core.util.Builder.concat;
 
@@ -27,8 +24,11 @@ public class InterpretationContext {
     /** 解釈対象の値 */
     private String value;
 
-    /** 解釈クラスを格納するキュー */
-    private Queue<TestDataInterpreter> interpreters;
+    /** 解釈クラス */
+    private final TestDataInterpreter[] interpreters;
+
+    /** 次に起動する解釈クラスの位置 */
+    private int next;
 
     /**
      * コンストラクタ
@@ -37,7 +37,7 @@ public class InterpretationContext {
      * @param interpreters 解釈クラス
      */
     public InterpretationContext(String value, TestDataInterpreter... interpreters) {
-        this(value, Arrays.asList(interpreters));
+        this(value, interpreters.clone(), 0);
     }
 
     /**
@@ -47,8 +47,21 @@ public class InterpretationContext {
      * @param interpreters 解釈クラス
      */
     public InterpretationContext(String value, Collection<TestDataInterpreter> interpreters) {
+        this(value, interpreters.toArray(new TestDataInterpreter[interpreters.size()]), 0);
+    }
+
+    /**
+     * コンストラクタ。<br/>
+     * 引数の配列は複製せずに共有するので、呼び出し元で書き換えてはならない。
+     *
+     * @param value        解釈対象となる値
+     * @param interpreters 解釈クラス
+     * @param start        最初に起動する解釈クラスの位置
+     */
+    InterpretationContext(String value, TestDataInterpreter[] interpreters, int start) {
         this.value = value;
-        this.interpreters = new LinkedList<TestDataInterpreter>(interpreters);
+        this.interpreters = interpreters;
+        this.next = start;
     }
 
     /**
@@ -79,16 +92,16 @@ public class InterpretationContext {
      * @return 次の解釈クラスの処理結果
      */
     public String invokeNext() {
-        if (interpreters.isEmpty()) {
+        if (next >= interpreters.length) {
             return value;  // 最後まで処理したら元のデータをそのまま返却
         }
-        TestDataInterpreter next = interpreters.remove();
+        TestDataInterpreter interpreter = interpreters[next++];
         try {
-            return next.interpret(this);
+            return interpreter.interpret(this);
         } catch (InterpretationFailedException e) {
             throw e;
         } catch (RuntimeException e) {
-            throw new InterpretationFailedException(next, value, e);
+            throw new InterpretationFailedException(interpreter, value, e);
         }
     }
 
@@ -0,0 +1,58 @@
+package nablarch.test.core.util.interpreter;
+
+import java.util.List;
+
+/**
+ * 事前に構築した{@link TestDataInterpreter}の連鎖。<br/>
+ * 値ごとに、解釈対象となる最初の解釈クラスを判定し、それ以降の解釈クラスのみを起動する。
+ * いずれの解釈クラスの解釈対象にもならない値（記法を含まないリテラル値）は、
+ * {@link InterpretationContext}を生成せずにそのまま返却する。
+ * <p>
+ * 解釈対象かどうかの判定は{@link ConditionalInterpreter#isApplicable(String)}で行う。
+ * {@link ConditionalInterpreter}を実装しない解釈クラスは、常に解釈対象とみなす。
+ * </p>
+ */
+public final class InterpreterChain {
+
+    /** 解釈クラス */
+    private final TestDataInterpreter[] interpreters;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param interpreters 解釈クラス（起動順）
+     */
+    public InterpreterChain(List<TestDataInterpreter> interpreters) {
+        this.interpreters = interpreters.toArray(new TestDataInterpreter[interpreters.size()]);
+    }
+
+    /**
+     * 値を解釈する。
+     *
+     * @param value 値
+     * @return 解釈後の値
+     */
+    public String interpret(String value) {
+        int start = value == null ? 0 : indexOfFirstApplicable(value);
+        if (start == interpreters.length) {
+            return value;  // リテラル値
+        }
+        return new InterpretationContext(value, interpreters, start).invokeNext();
+    }
+
+    /**
+     * 値を解釈対象とする最初の解釈クラスの位置を取得する。
+     *
+     * @param value 値
+     * @return 位置（解釈対象とする解釈クラスが存在しない場合は、解釈クラスの数）
+     */
+    private int indexOfFirstApplicable(String value) {
+        for (int i = 0; i < interpreters.length; i++) {
+            TestDataInterpreter e = interpreters[i];
+            if (!(e instanceof ConditionalInterpreter) || ((ConditionalInterpreter) e).isApplicable(value)) {
+                return i;
+            }
+        }
+        return interpreters.length;
+    }
+}
@@ -25,7 +25,7 @@ import nablarch.test.core.file.LineSeparator;
  *
  * @author T.Kawasaki
  */
-public class LineSeparatorInterpreter implements TestDataInterpreter {
+public class LineSeparatorInterpreter implements ConditionalInterpreter {
 
     /** デフォルトの置換対象のパターン */
     private static final String DEFAULT_PATTERN = "\\\\r";
@@ -33,12 +33,30 @@ public class LineSeparatorInterpreter implements TestDataInterpreter {
     /** デフォルトの改行コード */
     private static final String DEFAULT_LINE_SEP = LineSeparator.CR.toString();
 
+    /** デフォルトのパターンに一致する文字列 */
+    private static final String DEFAULT_LITERAL = "\\r";
+
     /** 置換対象のパターン */
     private Pattern pattern = Pattern.compile(DEFAULT_PATTERN);
 
+    /** 置換対象のパターンがデフォルトか否か */
+    private boolean defaultPattern = true;
+
     /** 置換後の改行コード */
     private String lineSeparator = DEFAULT_LINE_SEP;
 
+    /**
+     * {@inheritDoc}
+     * 値が置換対象のパターンを含む場合に真を返却する。
+     * デフォルトのパターンの場合は、正規表現を評価せずに判定する。
+     */
+    public boolean isApplicable(String value) {
+        if (defaultPattern) {
+            return value.contains(DEFAULT_LITERAL);
+        }
+        return value.length() > 0 && pattern.matcher(value).find();
+    }
+
     /** {@inheritDoc} */
     @Override
     public String interpret(InterpretationContext context) {
@@ -85,5 +103,6 @@ public class LineSeparatorInterpreter implements TestDataInterpreter {
      */
     public void setMatchPattern(String pattern) {
         this.pattern = Pattern.compile(pattern);
+        this.defaultPattern = false;
     }
 }
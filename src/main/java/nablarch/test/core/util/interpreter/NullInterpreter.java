@@ -5,11 +5,19 @@ package nablarch.test.core.util.interpreter;
  * 要素の値が、半角「null」(大文字、小文字は区別しない)の場合は、null値に置き換える。
  * @author T.Kawasaki
  */
-public class NullInterpreter implements TestDataInterpreter {
+public class NullInterpreter implements ConditionalInterpreter {
 
     /** nullを表す表記 */
     private static final String NULL_NOTATION = "null";
 
+    /**
+     * {@inheritDoc}
+     * 値がnull記法と一致する場合に真を返却する。
+     */
+    public boolean isApplicable(String value) {
+        return NULL_NOTATION.equalsIgnoreCase(value);
+    }
+
     /** {@inheritDoc} */
     public String interpret(InterpretationContext context) {
         if (NULL_NOTATION.equalsIgnoreCase(context.getValue())) {
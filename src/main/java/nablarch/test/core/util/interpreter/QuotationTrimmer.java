@@ -6,7 +6,7 @@ package nablarch.test.core.util.interpreter;
  *
  * @author T.Kawasaki
  */
-public class QuotationTrimmer implements TestDataInterpreter {
+public class QuotationTrimmer implements ConditionalInterpreter {
 
     /** {@inheritDoc} */
     public String interpret(InterpretationContext context) {
@@ -15,6 +15,14 @@ public class QuotationTrimmer implements TestDataInterpreter {
         return context.invokeNext();
     }
 
+    /**
+     * {@inheritDoc}
+     * 値が引用符で始まる場合に真を返却する。
+     */
+    public boolean isApplicable(String value) {
+        return value.startsWith("\"") || value.startsWith("”");
+    }
+
     /**
      * 対象文字列から引用符を取り除く。
      *
@@ -2,11 +2,14 @@ package nablarch.test;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -76,6 +79,65 @@ public class AssertionTest extends AssertionTestSupport {
         Assertion.assertTableEquals(e);
     }
 
+    /**
+     * DBのデータを1行ずつ取得しながら比較できること。
+     * 比較に失敗した場合、全件を取得して比較した場合と同じ内容が通知されること。
+     */
+    @Test
+    public void testAssertTableEqualsByStreaming() {
+        VariousDbTestHelper.setUpTable(
+                new TestTable("00001", 1L, "あ", 12345L, new BigDecimal("1234.123"), new Date(0L), new Timestamp(0L),
+                        null, "CLOBです1".toCharArray(), "BLOBです1".getBytes(), true),
+                new TestTable("00002", 2L, "い", 2L, new BigDecimal("22.123"), new Date(0L), new Timestamp(0L), "12345",
+                        "CLOBです2".toCharArray(), "BLOBです2".getBytes(), true));
+
+        List<String> row1 = Arrays.asList("00001", "1", "あ", "12345", "1234.123", "1970-01-01",
+                "1970-01-01 09:00:00.0", null, "CLOBです1", BinaryUtil.convertToHexString("BLOBです1".getBytes()), "true");
+        List<String> row2 = Arrays.asList("00002", "2", "い", "2", "22.123", "1970-01-01",
+                "1970-01-01 09:00:00.0", "12345", "CLOBです2", BinaryUtil.convertToHexString("BLOBです2".getBytes()), "true");
+        List<String> row2Changed = new ArrayList<String>(row2);
+        row2Changed.set(2, "う");
+        List<String> row3 = new ArrayList<String>(row2);
+        row3.set(0, "00003");
+
+        Assertion.assertTableEqualsByStreaming("", createTestTableData(row1, row2));
+
+        // 値が異なる
+        assertSameFailure(createTestTableData(row1, row2Changed));
+        // 主キーがマッチするレコードが見つからない（後続の値の異なる行より先に通知される）
+        assertSameFailure(createTestTableData(row3, row2Changed, row1));
+        // 期待値にないレコードが含まれる
+        assertSameFailure(createTestTableData(row2));
+    }
+
+    private TableData createTestTableData(List<String>... rows) {
+        TableData e = new TableData();
+        e.setTableName("test_table");
+        e.setDbInfo(dbInfo);
+        e.setColumnNames(new String[] {"PK_COL1", "PK_COL2", "VARCHAR2_COL", "NUMBER_COL",
+                "NUMBER_COL2", "DATE_COL", "TIMESTAMP_COL", "NULL_COL", "CLOB_COL", "BLOB_COL", "BOOL_COL"});
+        for (List<String> row : rows) {
+            e.addRow(row);
+        }
+        return e;
+    }
+
+    private void assertSameFailure(TableData expected) {
+        String expectedMessage = null;
+        try {
+            Assertion.assertTableEquals("msg", expected);
+        } catch (AssertionError e) {
+            expectedMessage = e.getMessage();
+        }
+        assertNotNull(expectedMessage);
+        try {
+            Assertion.assertTableEqualsByStreaming("msg", expected);
+            fail();
+        } catch (AssertionError e) {
+            assertEquals(expectedMessage, e.getMessage());
+        }
+    }
+
     /**
      * 順序、型が異なるSqlResultSetでも比較できること。
      */
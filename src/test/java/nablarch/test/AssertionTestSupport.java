@@ -13,6 +13,7 @@ import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -432,6 +433,39 @@ public class AssertionTestSupport {
         Assertion.assertTableEquals(e);
     }
 
+    /**
+     * 主キーの順序が異なる多数のレコードを比較できること。
+     * 合成主キーの各値の区切りが区別され、期待値にないレコードが検出されること。
+     */
+    @Test
+    public void testAssertTableEqualsManyRows() {
+        TableData exp = createPkTable();
+        TableData act = createPkTable();
+        for (int i = 0; i < 2000; i++) {
+            exp.addRow(Arrays.asList(String.valueOf(i), "1", "v" + i));
+            act.addRow(Arrays.asList(String.valueOf(1999 - i), "1", "v" + (1999 - i)));
+        }
+        Assertion.assertTableEquals(exp, act);
+
+        // 主キーを連結すると同じになるレコード
+        act.addRow(Arrays.asList("19", "991", "x"));
+        try {
+            Assertion.assertTableEquals(exp, act);
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("an unexpected record is included"));
+            assertTrue(e.getMessage(), e.getMessage().contains("991"));
+        }
+    }
+
+    private TableData createPkTable() {
+        TableData table = new TableData();
+        table.setTableName("test_table");
+        table.setDbInfo(dbInfo);
+        table.setColumnNames(new String[] {"PK_COL1", "PK_COL2", "VARCHAR2_COL"});
+        return table;
+    }
+
     @Test
     public void testAssertEqualsIgnoringOrder1() {
 
@@ -551,6 +585,35 @@ public class AssertionTestSupport {
 
     }
 
+    /** 要素数が多い場合でも、順序を考慮しない比較ができること。 */
+    @Test
+    public void testAssertEqualsIgnoringOrderLargeListMap() {
+        int size = 100000;
+        List<Map<String, String>> expected = new ArrayList<Map<String, String>>(size);
+        List<Map<String, Object>> actual = new ArrayList<Map<String, Object>>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, String> e = new HashMap<String, String>();
+            e.put("no", String.valueOf(i));
+            e.put("name", "name" + (i % 10));
+            expected.add(e);
+            Map<String, Object> a = new HashMap<String, Object>();
+            a.put("no", size - 1 - i);
+            a.put("name", "name" + ((size - 1 - i) % 10));
+            actual.add(a);
+        }
+        Assertion.assertEqualsIgnoringOrder("", expected, actual);
+
+        actual.get(0).put("name", "other");
+        try {
+            Assertion.assertEqualsIgnoringOrder("", expected, actual);
+            fail("期待したエラーが発生しませんでした。");
+        } catch (ComparisonFailure e) {
+            assertThat(e.getMessage(), containsString("different element(s) found."));
+            assertThat(e.getMessage(), containsString("actual has [{"));
+            assertThat(e.getMessage(), containsString("=other"));
+        }
+    }
+
     @Test
     public void testAsStringTrue() {
         AsString<String, Integer> asString = new AsString<String, Integer>();
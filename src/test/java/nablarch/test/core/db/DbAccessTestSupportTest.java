@@ -2,17 +2,22 @@ package nablarch.test.core.db;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import nablarch.core.db.connection.AppDbConnection;
 import nablarch.core.db.transaction.SimpleDbTransactionManager;
 import nablarch.test.Trap;
 import nablarch.test.support.SystemRepositoryResource;
@@ -43,6 +48,7 @@ public class DbAccessTestSupportTest {
 
     @After
     public void tearDown() throws Throwable {
+        FixtureStateTracker.clear();
         try {
             target.endTransactions();
         } catch (Exception ignored) {
@@ -259,6 +265,90 @@ public class DbAccessTestSupportTest {
         target.setUpDb("testSetUpDbInOrder");
     }
 
+    /**
+     * 差分投入が有効な場合、前回同じ内容を投入した後に更新されていないテーブルは、
+     * 削除、投入が省略されること。
+     * <p>
+     * JDBCを直接使用した更新はSQLログを経由しないため検知されない。
+     * これを利用して、省略されたテーブルは更新後の状態のままとなることを確認する。
+     * </p>
+     */
+    @Test
+    public void testDifferentialSetUpSkipsUnchangedTables() throws SQLException {
+        repositoryResource.addComponent(FixtureStateTracker.DIFFERENTIAL_SETUP_KEY, "true");
+        setUpFixtureTables();
+
+        String marker = insertGranpaWithoutSqlLog();
+        executeWithoutSqlLog("DELETE FROM SON");
+
+        target.setUpDb("testSetUpDbInOrder");
+        assertThat("省略されたため、検知されない更新が残ること", findGranpaIds(), hasItem(marker));
+        assertThat(VariousDbTestHelper.findAll(Son.class).size(), is(0));
+    }
+
+    /**
+     * 差分投入が有効な場合、テストが更新したテーブルは投入し直され、
+     * 更新されていない親テーブルは省略されること。
+     */
+    @Test
+    public void testDifferentialSetUpReloadsModifiedTable() throws SQLException {
+        repositoryResource.addComponent(FixtureStateTracker.DIFFERENTIAL_SETUP_KEY, "true");
+        int sonCount = setUpFixtureTables();
+
+        String marker = insertGranpaWithoutSqlLog();
+        executeWithSqlLog("DELETE FROM SON");
+        assertThat(VariousDbTestHelper.findAll(Son.class).size(), is(0));
+
+        target.setUpDb("testSetUpDbInOrder");
+        assertThat("更新されたテーブルは投入し直されること",
+                VariousDbTestHelper.findAll(Son.class).size(), is(sonCount));
+        assertThat("更新されていない親テーブルは省略されること", findGranpaIds(), hasItem(marker));
+    }
+
+    /**
+     * 差分投入が有効な場合、更新された親テーブルを参照する子テーブルは、
+     * 子テーブル自体が更新されていなくても投入し直されること。
+     */
+    @Test
+    public void testDifferentialSetUpReloadsChildrenOfModifiedTable() throws SQLException {
+        repositoryResource.addComponent(FixtureStateTracker.DIFFERENTIAL_SETUP_KEY, "true");
+        int sonCount = setUpFixtureTables();
+
+        String marker = insertGranpaWithoutSqlLog();
+        executeWithoutSqlLog("DELETE FROM SON");
+        executeWithSqlLog("UPDATE FATHER SET MY_PARENT = MY_PARENT");
+
+        target.setUpDb("testSetUpDbInOrder");
+        assertThat("更新された親テーブルの子テーブルは投入し直されること",
+                VariousDbTestHelper.findAll(Son.class).size(), is(sonCount));
+        assertThat("更新された親テーブルより先に投入するテーブルは省略されること", findGranpaIds(), hasItem(marker));
+    }
+
+    /**
+     * テストショットごとの差分投入が有効な場合、
+     * {@link DbAccessTestSupport#setUpDbForShot(String, String)}では更新されたテーブルのみが投入し直され、
+     * {@link DbAccessTestSupport#setUpDb(String)}では全てのテーブルが投入し直されること。
+     */
+    @Test
+    public void testShotIsolation() throws SQLException {
+        repositoryResource.addComponent(FixtureStateTracker.SHOT_ISOLATION_KEY, "true");
+        TableDataSorterTest.createFKTables();
+        target.setUpDbForShot("testSetUpDbInOrder", null);
+        assertThat("SqlLogWatchingFormatterが使用されていること", FixtureStateTracker.isEnabledForShot(), is(true));
+        FixtureStateTracker.clear();
+        target.setUpDbForShot("testSetUpDbInOrder", null);
+        int sonCount = VariousDbTestHelper.findAll(Son.class).size();
+
+        String marker = insertGranpaWithoutSqlLog();
+        executeWithSqlLog("DELETE FROM SON");
+        target.setUpDbForShot("testSetUpDbInOrder", null);
+        assertThat(VariousDbTestHelper.findAll(Son.class).size(), is(sonCount));
+        assertThat(findGranpaIds(), hasItem(marker));
+
+        target.setUpDb("testSetUpDbInOrder");
+        assertThat("テストショット以外の投入では省略されないこと", findGranpaIds(), not(hasItem(marker)));
+    }
+
     /**
      * テストデータのソート機能をOFF(nablarch.suppress-table-sort=true)にし、
      * Excelの記載順がFKと合致していない場合。
@@ -315,4 +405,74 @@ public class DbAccessTestSupportTest {
             assertThat(cause.getSQLState(), is("23503"));
         }
     }
+
+    /**
+     * 差分投入の対象となるテーブルに準備データを投入する。<br/>
+     * 準備データの投入前にSQLログが出力されていない場合に備え、一度投入した後に記録を破棄して投入し直す。
+     *
+     * @return SONテーブルの件数
+     */
+    private int setUpFixtureTables() {
+        TableDataSorterTest.createFKTables();
+        target.setUpDb("testSetUpDbInOrder");
+        assertThat("SqlLogWatchingFormatterが使用されていること", FixtureStateTracker.isEnabled(), is(true));
+        FixtureStateTracker.clear();
+        target.setUpDb("testSetUpDbInOrder");
+        int sonCount = VariousDbTestHelper.findAll(Son.class).size();
+        assertThat(sonCount, is(not(0)));
+        return sonCount;
+    }
+
+    /**
+     * SQLログを経由せずに、GRANPAテーブルに準備データに無い行を登録する。
+     *
+     * @return 登録した行のID
+     */
+    private String insertGranpaWithoutSqlLog() throws SQLException {
+        List<String> ids = findGranpaIds();
+        for (char c = '0'; c <= 'Z'; c++) {
+            String id = String.valueOf(c);
+            if (!ids.contains(id)) {
+                executeWithoutSqlLog("INSERT INTO GRANPA (MYID) VALUES ('" + id + "')");
+                return id;
+            }
+        }
+        throw new IllegalStateException("no unused id.");
+    }
+
+    private List<String> findGranpaIds() {
+        List<String> ids = new ArrayList<String>();
+        for (Granpa granpa : VariousDbTestHelper.findAll(Granpa.class)) {
+            ids.add(granpa.myid);
+        }
+        return ids;
+    }
+
+    /** JDBCを直接使用して更新する（SQLログに出力されないため、更新は検知されない）。 */
+    private static void executeWithoutSqlLog(String sql) throws SQLException {
+        Connection conn = VariousDbTestHelper.getNativeConnection();
+        try {
+            Statement statement = conn.createStatement();
+            try {
+                statement.executeUpdate(sql);
+            } finally {
+                statement.close();
+            }
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    /** フレームワークのコネクションを使用して更新する（SQLログに出力されるため、更新が検知される）。 */
+    private static void executeWithSqlLog(final String sql) {
+        new TransactionTemplate(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST) {
+            @Override
+            protected void doInTransaction(AppDbConnection conn) {
+                conn.prepareStatement(sql).executeUpdate();
+            }
+        }.execute();
+    }
 }
@@ -0,0 +1,157 @@
+package nablarch.test.core.db;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * {@link DmlTargetExtractor}のテストクラス。
+ */
+public class DmlTargetExtractorTest {
+
+    /** 基本的な更新系SQL文から、対象テーブルが抽出されること。 */
+    @Test
+    public void testBasicStatements() {
+        assertThat(tables("INSERT INTO table1 (col1, col2) VALUES (?, ?)"), is(list("TABLE1")));
+        assertThat(tables("update TABLE1 set col1 = ? where col2 = ?"), is(list("TABLE1")));
+        assertThat(tables("DELETE FROM TABLE1 WHERE COL1 = ?"), is(list("TABLE1")));
+        assertThat(tables("DELETE TABLE1"), is(list("TABLE1")));
+        assertThat(tables("TRUNCATE TABLE TABLE1"), is(list("TABLE1")));
+        assertThat(tables("MERGE INTO TABLE1 T USING TABLE2 S ON (T.ID = S.ID)"
+                + " WHEN MATCHED THEN UPDATE SET T.NAME = S.NAME"
+                + " WHEN NOT MATCHED THEN INSERT (ID, NAME) VALUES (S.ID, S.NAME)"), is(list("TABLE1")));
+        assertThat(tables("INSERT IGNORE INTO TABLE1 VALUES (?)"), is(list("TABLE1")));
+    }
+
+    /** 命令が抽出されること。 */
+    @Test
+    public void testVerbs() {
+        Map<String, Set<String>> actual = DmlTargetExtractor.extract(
+                "UPDATE TABLE1 SET COL1 = 1; DELETE FROM TABLE1; INSERT INTO TABLE2 SELECT * FROM TABLE1");
+        assertThat(new ArrayList<String>(actual.get("TABLE1")), is(list("DELETE", "UPDATE")));
+        assertThat(new ArrayList<String>(actual.get("TABLE2")), is(list("INSERT")));
+    }
+
+    /** 参照系のSQL文からは、何も抽出されないこと。 */
+    @Test
+    public void testSelect() {
+        assertThat(tables("SELECT * FROM TABLE1 WHERE UPDATE_DATE = ?").isEmpty(), is(true));
+        assertThat(tables("SELECT * FROM TABLE1 FOR UPDATE").isEmpty(), is(true));
+        assertThat(tables("SELECT * FROM TABLE1 FOR UPDATE OF COL1 NOWAIT").isEmpty(), is(true));
+        assertThat(tables("SELECT REPLACE(COL1, 'a', 'b') FROM TABLE1").isEmpty(), is(true));
+        assertThat(tables("CREATE OR REPLACE VIEW VIEW1 AS SELECT * FROM TABLE1").isEmpty(), is(true));
+    }
+
+    /** コメント、文字列リテラル中のキーワードは無視されること。 */
+    @Test
+    public void testCommentsAndLiterals() {
+        assertThat(tables("DELETE /* テスト */ FROM TABLE1"), is(list("TABLE1")));
+        assertThat(tables("SELECT 'UPDATE TABLE2' FROM TABLE1").isEmpty(), is(true));
+        assertThat(tables("SELECT 'it''s UPDATE TABLE2' FROM TABLE1").isEmpty(), is(true));
+        assertThat(tables("-- UPDATE TABLE2\nSELECT * FROM TABLE1").isEmpty(), is(true));
+        assertThat(tables("/* UPDATE TABLE2 */ UPDATE TABLE1 SET COL1 = '/* x */'"), is(list("TABLE1")));
+    }
+
+    /** 修飾、引用符付きのテーブル名が抽出されること。 */
+    @Test
+    public void testQualifiedAndQuotedNames() {
+        assertThat(tables("INSERT INTO SCHEMA1.TABLE1 SELECT * FROM SCHEMA2.TABLE1"), is(list("TABLE1")));
+        assertThat(tables("UPDATE \"Table1\" SET COL1 = ?"), is(list("TABLE1")));
+        assertThat(tables("UPDATE \"SCHEMA1\".\"TABLE1\" SET COL1 = ?"), is(list("TABLE1")));
+        assertThat(tables("DELETE FROM `table1`"), is(list("TABLE1")));
+        assertThat(tables("DELETE FROM [dbo].[table1]"), is(list("TABLE1")));
+    }
+
+    /** 複数の更新対象を含むSQL文から、全ての対象テーブルが抽出されること。 */
+    @Test
+    public void testMultipleTargets() {
+        assertThat(tables("INSERT ALL INTO TABLE1 (COL1) VALUES (?) INTO TABLE2 (COL1) VALUES (?) SELECT * FROM DUAL"),
+                is(list("TABLE1", "TABLE2")));
+        assertThat(tables("WITH T AS (SELECT * FROM TABLE3) UPDATE TABLE1 SET COL1 = (SELECT COL1 FROM T)"),
+                is(list("TABLE1")));
+        assertThat(tables("BEGIN UPDATE TABLE1 SET COL1 = 1; IF X THEN DELETE FROM TABLE2; END IF; END;"),
+                is(list("TABLE1", "TABLE2")));
+        assertThat(tables("INSERT INTO TABLE1 (COL1) VALUES (?) ON DUPLICATE KEY UPDATE COL1 = ?"),
+                is(list("TABLE1")));
+        assertThat(tables("INSERT INTO TABLE1 (COL1) VALUES (?) ON CONFLICT DO UPDATE SET COL1 = ?"),
+                is(list("TABLE1")));
+    }
+
+    /**
+     * 別名で更新対象を指定するSQL文から、FROM句、テーブルの並びのテーブルが抽出されること。<br/>
+     * 別名も抽出されるが、監視対象のテーブル名と一致しない限り影響しない。
+     */
+    @Test
+    public void testAliasFirstStatements() {
+        // SQL Server
+        assertThat(tables("UPDATE t SET t.COL1 = ? FROM MASTER_TBL t WHERE t.ID = ?"),
+                is(list("T", "MASTER_TBL")));
+        assertThat(tables("UPDATE t SET t.COL1 = o.COL1 FROM MASTER_TBL t INNER JOIN OTHER_TBL o ON t.ID = o.ID"),
+                is(list("T", "MASTER_TBL", "OTHER_TBL")));
+        // MySQL
+        assertThat(tables("DELETE t FROM MASTER_TBL t JOIN OTHER_TBL o ON t.ID = o.ID WHERE o.COL1 = ?"),
+                is(list("T", "MASTER_TBL", "OTHER_TBL")));
+        assertThat(tables("DELETE t1, t2 FROM TABLE1 t1, TABLE2 t2 WHERE t1.ID = t2.ID"),
+                is(list("T1", "T2", "TABLE1", "TABLE2")));
+        assertThat(tables("UPDATE TABLE1, TABLE2 SET TABLE1.COL1 = TABLE2.COL1, TABLE2.COL2 = ?"),
+                is(list("TABLE1", "TABLE2")));
+        assertThat(tables("UPDATE TABLE1 t1 LEFT JOIN TABLE2 t2 ON t1.ID = t2.ID SET t1.COL1 = ?"),
+                is(list("TABLE1", "TABLE2")));
+        // 副問い合わせのFROM句、SET句のカンマは対象外
+        assertThat(tables("UPDATE TABLE1 SET COL1 = (SELECT COL1 FROM TABLE2), COL2 = ? WHERE ID IN"
+                + " (SELECT ID FROM TABLE3)"), is(list("TABLE1")));
+        assertThat(tables("TRUNCATE TABLE TABLE1, TABLE2"), is(list("TABLE1", "TABLE2")));
+    }
+
+    /** 追加したキーワードに続く全ての識別子が、文の終わりまで抽出されること。 */
+    @Test
+    public void testAdditionalKeywords() {
+        DmlTargetExtractor.addKeywords(Arrays.asList("exec", "update"));
+        Map<String, Set<String>> actual = DmlTargetExtractor.extract(
+                "EXEC SCHEMA1.PROC1 TABLE1, 'TABLE3'; UPDATE TABLE2 SET COL1 = 1");
+        assertThat(new ArrayList<String>(actual.keySet()), is(list("PROC1", "TABLE1", "TABLE2")));
+        assertThat(new ArrayList<String>(actual.get("TABLE1")), is(list("EXEC")));
+        assertThat(new ArrayList<String>(actual.get("TABLE2")), is(list("UPDATE")));
+    }
+
+    /** 1つの識別子でないキーワードは、追加できないこと。 */
+    @Test
+    public void testInvalidAdditionalKeywords() {
+        for (String keyword : list("", "EXEC PROC", "'EXEC'", ";")) {
+            try {
+                DmlTargetExtractor.addKeywords(Arrays.asList(keyword));
+                fail("keyword=[" + keyword + "]");
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage(), containsString("keyword=[" + keyword + "]"));
+            }
+        }
+    }
+
+    /** 不正なSQL文でも、例外が発生しないこと。 */
+    @Test
+    public void testMalformed() {
+        assertThat(tables("").isEmpty(), is(true));
+        assertThat(tables(null).isEmpty(), is(true));
+        assertThat(tables("UPDATE").isEmpty(), is(true));
+        assertThat(tables("UPDATE \"").isEmpty(), is(true));
+        assertThat(tables("UPDATE \"TABLE1"), is(list("TABLE1")));
+        assertThat(tables("UPDATE TABLE1 SET COL1 = 'abc").isEmpty(), is(false));
+        assertThat(tables("DELETE FROM /* unclosed").isEmpty(), is(true));
+    }
+
+    private static List<String> tables(String sql) {
+        return new ArrayList<String>(DmlTargetExtractor.extract(sql).keySet());
+    }
+
+    private static List<String> list(String... values) {
+        return Arrays.asList(values);
+    }
+}
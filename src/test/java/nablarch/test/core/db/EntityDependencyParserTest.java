@@ -9,6 +9,7 @@ import static org.junit.Assert.fail;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -35,6 +36,48 @@ public class EntityDependencyParserTest {
         }
     }
 
+    /** ルートが存在する場合も、循環参照が検出されること。 */
+    @Test
+    public void testCircularReferenceUnderRoot() {
+        parser.associate("ROOT", "A");
+        parser.associate("A", "B");
+        parser.associate("B", "A");
+        parser.associate("ROOT", "C");
+        try {
+            parser.getTableList();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("循環参照になっていると思います！"));
+            assertThat(e.getMessage(), containsString("tables=[A, B]"));
+        }
+    }
+
+    /** ひし形の参照関係で、全ての親テーブルより後に子テーブルが位置すること。 */
+    @Test
+    public void testDiamond() {
+        parser.associate("TOP", "LEFT");
+        parser.associate("TOP", "RIGHT");
+        parser.associate("LEFT", "MIDDLE");
+        parser.associate("MIDDLE", "BOTTOM");
+        parser.associate("RIGHT", "BOTTOM");
+        // 複合外部キーの場合、同じ親子が複数回関連付けられる
+        parser.associate("RIGHT", "BOTTOM");
+
+        Map<String, Integer> ranks = parser.getTableRanks();
+        assertThat(ranks.get("TOP"), is(0));
+        assertThat(ranks.get("LEFT"), is(1));
+        assertThat(ranks.get("RIGHT"), is(1));
+        assertThat(ranks.get("MIDDLE"), is(2));
+        assertThat(ranks.get("BOTTOM"), is(3));
+        // 大文字小文字は区別しない
+        assertThat(ranks.get("bottom"), is(3));
+
+        List<String> tableList = parser.getTableList();
+        assertThat(tableList.get(0), is("TOP"));
+        assertThat(tableList.get(3), is("MIDDLE"));
+        assertThat(tableList.get(4), is("BOTTOM"));
+    }
+
     /** 自己参照のテスト。 */
     @Test
     public void testSelfReference() {
@@ -0,0 +1,165 @@
+package nablarch.test.core.db;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import nablarch.test.support.SystemRepositoryResource;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * {@link FixtureStateTracker}のテストクラス。
+ */
+public class FixtureStateTrackerTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("unit-test.xml");
+
+    /** カラム型を全てVARCHARとするデータベース情報 */
+    private final DbInfo dbInfo = new GenericJdbcDbInfo() {
+        @Override
+        public int getColumnType(String tableName, String columnName) {
+            return Types.VARCHAR;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        FixtureStateTracker.clear();
+    }
+
+    /** キーが設定されている場合のみ、差分投入が有効となること。 */
+    @Test
+    public void testIsEnabled() {
+        FixtureStateTracker.startWatching();
+        assertThat(FixtureStateTracker.isEnabled(), is(false));
+        repositoryResource.addComponent(FixtureStateTracker.DIFFERENTIAL_SETUP_KEY, "true");
+        assertThat(FixtureStateTracker.isEnabled(), is(true));
+    }
+
+    /** テストショットごとの投入では、いずれかのキーが設定されている場合に差分投入が有効となること。 */
+    @Test
+    public void testIsEnabledForShot() {
+        FixtureStateTracker.startWatching();
+        assertThat(FixtureStateTracker.isEnabledForShot(), is(false));
+        repositoryResource.addComponent(FixtureStateTracker.SHOT_ISOLATION_KEY, "true");
+        assertThat(FixtureStateTracker.isEnabledForShot(), is(true));
+        assertThat("テストショット以外の投入には影響しないこと", FixtureStateTracker.isEnabled(), is(false));
+    }
+
+    /** 差分投入が有効な場合、テストショットごとの投入でも差分投入が有効となること。 */
+    @Test
+    public void testIsEnabledForShotByDifferentialSetUp() {
+        FixtureStateTracker.startWatching();
+        repositoryResource.addComponent(FixtureStateTracker.DIFFERENTIAL_SETUP_KEY, "true");
+        assertThat(FixtureStateTracker.isEnabledForShot(), is(true));
+    }
+
+    /** 内容が同じ場合は同じフィンガープリントとなり、異なる場合は異なるフィンガープリントとなること。 */
+    @Test
+    public void testCreateFingerprint() {
+        String fingerprint = FixtureStateTracker.createFingerprint(
+                createTable("TABLE1", new String[] {"a", "b"}));
+        assertThat(FixtureStateTracker.createFingerprint(
+                createTable("table1", new String[] {"a", "b"})), is(fingerprint));
+
+        // テーブル名が異なる
+        assertThat(FixtureStateTracker.createFingerprint(
+                createTable("TABLE2", new String[] {"a", "b"})), not(fingerprint));
+        // 値が異なる
+        assertThat(FixtureStateTracker.createFingerprint(
+                createTable("TABLE1", new String[] {"a", "c"})), not(fingerprint));
+        // 値の区切りが異なる
+        assertThat(FixtureStateTracker.createFingerprint(
+                createTable("TABLE1", new String[] {"ab", ""})), not(fingerprint));
+        // 行が異なる
+        assertThat(FixtureStateTracker.createFingerprint(
+                createTable("TABLE1", new String[] {"a", "b"}, new String[] {"a", "b"})), not(fingerprint));
+        // nullと"null"が区別されること
+        assertThat(FixtureStateTracker.createFingerprint(
+                        createTable("TABLE1", new String[] {"a", null})),
+                not(FixtureStateTracker.createFingerprint(
+                        createTable("TABLE1", new String[] {"a", "null"}))));
+    }
+
+    /** 投入順で最初に変更されたテーブル以降が、投入対象となること。 */
+    @Test
+    public void testGetTablesToSetUp() {
+        TableData parent = createTable("PARENT", new String[] {"1", "a"});
+        TableData child = createTable("CHILD", new String[] {"1", "b"});
+        TableData grandChild = createTable("GRAND_CHILD", new String[] {"1", "c"});
+        List<TableData> tables = Arrays.asList(parent, child, grandChild);
+        List<String> fingerprints = createFingerprints(tables);
+
+        // 未投入の場合、全て投入対象
+        assertThat(FixtureStateTracker.getTablesToSetUp(tables, fingerprints), is(tables));
+        markClean(tables, fingerprints);
+
+        // 変更がない場合、投入対象なし
+        assertThat(FixtureStateTracker.getTablesToSetUp(tables, fingerprints).isEmpty(), is(true));
+
+        // 子テーブルが更新された場合、子テーブル以降が投入対象
+        markClean(tables, fingerprints);
+        FixtureStateTracker.notifyModified(Collections.singleton("CHILD"));
+        assertThat(FixtureStateTracker.getTablesToSetUp(tables, fingerprints),
+                is(Arrays.asList(child, grandChild)));
+
+        // 投入対象としたテーブルは、記録から除外されていること
+        assertThat(FixtureStateTracker.getTablesToSetUp(tables, fingerprints),
+                is(Arrays.asList(child, grandChild)));
+
+        // 投入内容が異なる場合、そのテーブル以降が投入対象
+        markClean(tables, fingerprints);
+        TableData otherParent = createTable("PARENT", new String[] {"2", "a"});
+        List<TableData> otherTables = Arrays.asList(otherParent, child, grandChild);
+        assertThat(FixtureStateTracker.getTablesToSetUp(otherTables, createFingerprints(otherTables)),
+                is(otherTables));
+    }
+
+    /** 更新されたテーブルが、記録から除外されること。 */
+    @Test
+    public void testNotifyModified() {
+        TableData table1 = createTable("TABLE1", new String[] {"1", "a"});
+        TableData table2 = createTable("TABLE2", new String[] {"1", "b"});
+        List<TableData> tables = Arrays.asList(table1, table2);
+        List<String> fingerprints = createFingerprints(tables);
+        markClean(tables, fingerprints);
+
+        FixtureStateTracker.notifyModified(Collections.singleton("OTHER_TABLE"));
+        assertThat(FixtureStateTracker.getTablesToSetUp(tables, fingerprints).isEmpty(), is(true));
+
+        markClean(tables, fingerprints);
+        FixtureStateTracker.notifyModified(Collections.singleton("TABLE2"));
+        assertThat(FixtureStateTracker.getTablesToSetUp(tables, fingerprints), is(Arrays.asList(table2)));
+    }
+
+    private TableData createTable(String tableName, String[]... rows) {
+        TableData table = new TableData(dbInfo, tableName, new String[] {"col1", "col2"});
+        for (String[] row : rows) {
+            table.addRow(Arrays.asList(row));
+        }
+        return table;
+    }
+
+    private List<String> createFingerprints(List<TableData> tables) {
+        List<String> fingerprints = new ArrayList<String>();
+        for (TableData table : tables) {
+            fingerprints.add(FixtureStateTracker.createFingerprint(table));
+        }
+        return fingerprints;
+    }
+
+    private void markClean(List<TableData> tables, List<String> fingerprints) {
+        for (int i = 0; i < tables.size(); i++) {
+            FixtureStateTracker.markClean(tables.get(i).getTableName(), fingerprints.get(i));
+        }
+    }
+}
@@ -5,11 +5,21 @@ import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import javax.sql.DataSource;
+
 import nablarch.core.db.connection.AppDbConnection;
 import nablarch.core.util.StringUtil;
 import nablarch.test.support.SystemRepositoryResource;
@@ -125,6 +135,119 @@ public abstract class GenericJdbcDbInfoTestBase {
         assertThat(dbInfo.getColumnLength("non_pk", "number_col2"), is(10));
     }
 
+    /**
+     * {@link nablarch.test.core.db.GenericJdbcDbInfo#setBulkLoad(boolean)}のテスト。
+     */
+    @Test
+    public void testBulkLoad() {
+        final DataSource original = repositoryResource.getComponent("dataSource");
+        final int[] connectionCount = {0};
+        DataSource counting = (DataSource) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {DataSource.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getConnection")) {
+                            connectionCount[0]++;
+                        }
+                        try {
+                            return method.invoke(original, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        dbInfo.setDataSource(counting);
+        dbInfo.setBulkLoad(true);
+        try {
+            // 最初の参照時に、スキーマ全体のカラム情報が読み込まれること
+            assertEqualsToIgnoreCase(dbInfo.getColumns("one_pk"), new String[] {"PK_COL", "NOT_PK1", "NOT_PK2"});
+            assertThat(connectionCount[0], is(1));
+            assertEqualsToIgnoreCase(dbInfo.getColumns("non_pk"), new String[] {"CHAR_COL", "VARCHAR_COL",
+                    "NUMBER_COL", "NUMBER_COL2", "BLOB_COL", "DATE_COL", "TIMESTAMP_COL"});
+            assertThat(dbInfo.getColumnLength("non_pk", "char_col"), is(10));
+            assertThat(dbInfo.getColumnLength("non_pk", "number_col2"), is(10));
+            assertThat(dbInfo.isNumberTypeColumn("non_pk", "number_col"), is(true));
+            assertThat(connectionCount[0], is(1));
+
+            // 主キー、ユニークインデックスは、テーブルごとに読み込む場合と同じ結果となること
+            assertEqualsToIgnoreCase(dbInfo.getPrimaryKeys("non_pk"), new String[] {});
+            assertEqualsToIgnoreCase(dbInfo.getPrimaryKeys("one_pk"), new String[] {"PK_COL"});
+            assertEqualsToIgnoreCase(dbInfo.getPrimaryKeys("multi_pk"), new String[] {"PK_COL1", "PK_COL2", "PK_COL3"});
+            assertThat(dbInfo.isUniqueIndex("unique_index", "unq_1"), is(true));
+            assertThat(dbInfo.isUniqueIndex("unique_index", "unq_2_1"), is(true));
+            assertThat(dbInfo.isUniqueIndex("unique_index", "unq_2_2"), is(true));
+            assertThat(dbInfo.isUniqueIndex("unique_index", "pk_col"), is(false));
+        } finally {
+            dbInfo.setDataSource(original);
+            dbInfo.setBulkLoad(false);
+        }
+    }
+
+    /**
+     * {@link nablarch.test.core.db.GenericJdbcDbInfo#setBulkLoad(boolean)}のテスト。<br/>
+     * テーブル名にnullを指定したインデックス情報の取得で何も返さないJDBCドライバの場合、
+     * ユニークインデックスがテーブルごとの取得で補われること。
+     */
+    @Test
+    public void testBulkLoadWithoutIndexInfoOfWholeSchema() {
+        final DataSource original = repositoryResource.getComponent("dataSource");
+        final List<String> indexInfoTables = new ArrayList<String>();
+        dbInfo.setDataSource(withoutIndexInfoOfWholeSchema(original, DataSource.class, indexInfoTables));
+        dbInfo.setBulkLoad(true);
+        try {
+            assertThat(dbInfo.isUniqueIndex("unique_index", "unq_1"), is(true));
+            assertThat(dbInfo.isUniqueIndex("unique_index", "unq_2_1"), is(true));
+            assertThat(dbInfo.isUniqueIndex("unique_index", "pk_col"), is(false));
+
+            // スキーマ全体での取得の後に、テーブルごとの取得が行われていること
+            assertThat(indexInfoTables.size(), is(2));
+            assertThat(indexInfoTables.get(0), is(nullValue()));
+            assertEqualsToIgnoreCase(indexInfoTables.get(1), "unique_index");
+        } finally {
+            dbInfo.setDataSource(original);
+            dbInfo.setBulkLoad(false);
+        }
+    }
+
+    /**
+     * テーブル名にnullを指定したインデックス情報の取得で、何も返さないように
+     * {@link DataSource}、{@link Connection}、{@link DatabaseMetaData}をラップする。
+     *
+     * @param target          ラップ対象
+     * @param type            ラップ対象の型
+     * @param indexInfoTables インデックス情報の取得時に指定されたテーブル名の格納先
+     * @param <T>             ラップ対象の型
+     * @return ラップしたオブジェクト
+     */
+    private static <T> T withoutIndexInfoOfWholeSchema(
+            final Object target, Class<T> type, final List<String> indexInfoTables) {
+        return type.cast(Proxy.newProxyInstance(
+                GenericJdbcDbInfoTestBase.class.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getIndexInfo")) {
+                            indexInfoTables.add((String) args[2]);
+                            if (args[2] == null) {
+                                // 存在しないテーブルを指定し、空の結果を返す
+                                args = args.clone();
+                                args[2] = "NO_SUCH_TABLE";
+                            }
+                        }
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (result instanceof Connection) {
+                            return withoutIndexInfoOfWholeSchema(result, Connection.class, indexInfoTables);
+                        }
+                        if (result instanceof DatabaseMetaData) {
+                            return withoutIndexInfoOfWholeSchema(result, DatabaseMetaData.class, indexInfoTables);
+                        }
+                        return result;
+                    }
+                }));
+    }
+
     @Test
     public void testIsNumberTypeColumn() {
         assertThat(dbInfo.isNumberTypeColumn("non_pk", "number_col"), is(true));
@@ -11,12 +11,16 @@ import static org.junit.Assert.assertTrue;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.sql.DataSource;
+
 import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.repository.SystemRepository;
 import nablarch.test.event.TestEventDispatcher;
 import nablarch.test.support.SystemRepositoryResource;
 import nablarch.test.support.db.helper.DatabaseTestRunner;
@@ -102,6 +106,7 @@ public class MasterDataRestorerTest extends TestEventDispatcher {
         FamilySsdMaster family1b = new FamilySsdMaster("7", father1b, daughter1b);
         FamilySsdMaster family2b = new FamilySsdMaster("8", father2b, daughter2b);
         VariousDbTestHelper.setUpTable(family1b, family2b);
+        TableDataSorter.clearCache();
     }
 
     @Before
@@ -194,6 +199,30 @@ public class MasterDataRestorerTest extends TestEventDispatcher {
                 "TARGET_TBL UPDATE"));
     }
 
+    /** 更新系の命令でないキーワードを設定した場合、同じSQL文でキーワードに続いて名前が現れたテーブルが更新されたとみなされること。 */
+    @Test
+    public void testCustomUpdateSqlKeyword() {
+        MasterDataRestorer target = new MasterDataRestorer();
+        target.setTablesTobeWatched(Arrays.asList("TARGET_TBL"));
+        target.setUpdateSqlKeywords(Arrays.asList("update", "call"));
+
+        assertTrue(target.containsUpdateSqlKeyword("TARGET_TBL", "UPDATE TARGET_TBL SET NAME = ?"));
+        assertTrue(target.containsUpdateSqlKeyword("TARGET_TBL", "CALL TARGET_TBL"));
+        assertTrue(target.containsUpdateSqlKeyword("TARGET_TBL", "call UPDATE_PROC(TARGET_TBL, ?)"));
+        assertFalse(target.containsUpdateSqlKeyword("TARGET_TBL", "CALL UPDATE_PROC(?)"));
+        assertFalse(target.containsUpdateSqlKeyword("TARGET_TBL", "TARGET_TBL; CALL UPDATE_PROC(?)"));
+
+        // 監視対象テーブルが更新されたとみなされること
+        Set<String> actual = target.getUpdatedTables(Arrays.asList("CALL UPDATE_PROC(TARGET_TBL)"));
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("TARGET_TBL")), actual);
+    }
+
+    /** 1つの語でないキーワードを設定した場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidUpdateSqlKeyword() {
+        new MasterDataRestorer().setUpdateSqlKeywords(Arrays.asList("update", "call proc"));
+    }
+
     @Test
     public void testAfterTestMethodWithReferenceTables() {
         MasterDataRestorer target = getFromRepository();
@@ -248,4 +277,159 @@ public class MasterDataRestorerTest extends TestEventDispatcher {
         assertEquals(2, VariousDbTestHelper.findAll(Family.class)
                 .size());
     }
+
+    /** 変更された行のみを復旧する設定の場合、差分の行のみで復旧されること。 */
+    @Test
+    public void testAfterTestMethodIncrementally() {
+        MasterDataRestorer target = createIncrementalRestorer(10);
+        modifyFamily();
+
+        OnMemoryLogWriter.clear();
+        target.afterTestMethod();
+
+        assertFamilyRestored();
+        assertThat(containsLog("table [FAMILY] was restored incrementally"), is(true));
+    }
+
+    /** 変更された行の割合が閾値を超える場合、テーブル全件のコピーで復旧されること。 */
+    @Test
+    public void testAfterTestMethodIncrementallyFallback() {
+        MasterDataRestorer target = createIncrementalRestorer(0.5);
+        modifyFamily();
+
+        OnMemoryLogWriter.clear();
+        target.afterTestMethod();
+
+        assertFamilyRestored();
+        assertThat(containsLog("table [FAMILY] was restored incrementally"), is(false));
+        assertThat(containsLog("table [FAMILY] was overwritten"), is(true));
+    }
+
+    /**
+     * 子テーブルから参照されている親テーブルの、主キー以外のカラムが変更された場合、
+     * 行の更新で復旧されること（子テーブルの行に影響しないこと）。
+     */
+    @Test
+    public void testAfterTestMethodIncrementallyReferencedTable() {
+        MasterDataRestorer target = new MasterDataRestorer();
+        target.setBackupSchema("ssd_master");
+        target.setTablesTobeWatched(Arrays.asList("FATHER"));
+        target.setIncrementalRestore(true);
+        target.setMaxChangeRatio(10);
+        new TransactionTemplate(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST) {
+            @Override
+            protected void doInTransaction(AppDbConnection conn) {
+                conn.prepareStatement("UPDATE FATHER SET MY_PARENT = '2' WHERE MYID = '3'").execute();
+            }
+        }.execute();
+
+        OnMemoryLogWriter.clear();
+        target.afterTestMethod();
+
+        List<Father> fathers = VariousDbTestHelper.findAll(Father.class);
+        assertEquals(2, fathers.size());
+        for (Father father : fathers) {
+            assertEquals(father.myid.equals("3") ? "1" : "2", father.granpa.myid);
+        }
+        assertEquals(2, VariousDbTestHelper.findAll(Daughter.class).size());
+        assertEquals(2, VariousDbTestHelper.findAll(Family.class).size());
+        assertThat(containsLog("table [FATHER] was restored incrementally"), is(true));
+    }
+
+    /**
+     * 比較できない型のカラムを含む親テーブル（テーブル全件のコピー）と、
+     * 変更された行のみを復旧できる子テーブルを同時に復旧する場合、
+     * 子テーブルもテーブル全件のコピーで復旧されること（外部キー制約に違反しないこと）。
+     */
+    @Test
+    public void testAfterTestMethodIncrementallyChildOfFullCopy() throws Exception {
+        Object original = SystemRepository.get("dbInfo");
+        GenericJdbcDbInfo dbInfo = new GenericJdbcDbInfo() {
+            @Override
+            public int getColumnType(String table, String column) {
+                // DAUGHTERテーブルは比較できない型のカラムを含むものとする
+                return "DAUGHTER".equalsIgnoreCase(table) ? Types.CLOB : super.getColumnType(table, column);
+            }
+        };
+        DataSource dataSource = repositoryResource.getComponent("dataSource");
+        dbInfo.setDataSource(dataSource);
+        dbInfo.setSchema(SystemRepository.getString("nablarch.db.schema"));
+        repositoryResource.addComponent("dbInfo", dbInfo);
+        try {
+            MasterDataRestorer target = new MasterDataRestorer();
+            target.setBackupSchema("ssd_master");
+            target.setTablesTobeWatched(Arrays.asList("DAUGHTER", "FAMILY"));
+            target.setIncrementalRestore(true);
+            target.setMaxChangeRatio(10);
+            new TransactionTemplate(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST) {
+                @Override
+                protected void doInTransaction(AppDbConnection conn) {
+                    conn.prepareStatement("UPDATE DAUGHTER SET MY_PARENT = MY_PARENT").execute();
+                }
+            }.execute();
+            modifyFamily();
+
+            OnMemoryLogWriter.clear();
+            target.afterTestMethod();
+
+            assertEquals(2, VariousDbTestHelper.findAll(Daughter.class).size());
+            assertFamilyRestored();
+            assertThat(containsLog("table [DAUGHTER] was overwritten"), is(true));
+            assertThat(containsLog("table [FAMILY] was overwritten"), is(true));
+            assertThat(containsLog("was restored incrementally"), is(false));
+        } finally {
+            repositoryResource.addComponent("dbInfo", original);
+        }
+    }
+
+    /** 負の閾値を設定した場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxChangeRatio() {
+        new MasterDataRestorer().setMaxChangeRatio(-0.1);
+    }
+
+    private MasterDataRestorer createIncrementalRestorer(double maxChangeRatio) {
+        MasterDataRestorer target = new MasterDataRestorer();
+        target.setBackupSchema("ssd_master");
+        target.setTablesTobeWatched(Arrays.asList("FAMILY"));
+        target.setIncrementalRestore(true);
+        target.setMaxChangeRatio(maxChangeRatio);
+        return target;
+    }
+
+    /** FAMILYテーブルの行を削除、更新、追加する。 */
+    private void modifyFamily() {
+        new TransactionTemplate(DbAccessTestSupport.DB_TRANSACTION_FOR_TEST) {
+            @Override
+            protected void doInTransaction(AppDbConnection conn) {
+                conn.prepareStatement("DELETE FROM FAMILY WHERE FAMID = '7'").execute();
+                conn.prepareStatement("UPDATE FAMILY SET PARENT = '3' WHERE FAMID = '8'").execute();
+                conn.prepareStatement("INSERT INTO FAMILY (FAMID, PARENT, CHILD2) VALUES ('9', '4', '6')").execute();
+            }
+        }.execute();
+    }
+
+    private void assertFamilyRestored() {
+        List<Family> families = VariousDbTestHelper.findAll(Family.class);
+        assertEquals(2, families.size());
+        for (Family family : families) {
+            if (family.famid.equals("7")) {
+                assertEquals("3", family.father.myid);
+                assertEquals("5", family.daughter.myid);
+            } else {
+                assertEquals("8", family.famid);
+                assertEquals("4", family.father.myid);
+                assertEquals("6", family.daughter.myid);
+            }
+        }
+    }
+
+    private boolean containsLog(String message) {
+        for (String log : OnMemoryLogWriter.getMessages("writer.memlog")) {
+            if (log.contains(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -1,12 +1,18 @@
 package nablarch.test.core.db;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.File;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import nablarch.core.repository.SystemRepository;
+import nablarch.test.RepositoryInitializer;
 import nablarch.test.support.SystemRepositoryResource;
 import nablarch.test.support.db.helper.DatabaseTestRunner;
 import nablarch.test.support.db.helper.VariousDbTestHelper;
@@ -50,6 +56,7 @@ public class MasterDataSetUpperTest {
         VariousDbTestHelper.dropTable(DaughterSsdMaster.class);
         VariousDbTestHelper.dropTable(SonSsdMaster.class);
         VariousDbTestHelper.dropTable(StrangerSsdMaster.class);
+        TableDataSorter.clearCache();
     }
 
     /** {@link nablarch.test.core.db.MasterDataSetUpper#setUpMasterData()} のテスト */
@@ -160,6 +167,151 @@ public class MasterDataSetUpperTest {
         doSetUpWithBackUp();
     }
 
+    /** 並列度を指定した場合も、依存関係に則って投入されること。 */
+    @Test
+    public void testSetUpInParallel() throws SQLException {
+        VariousDbTestHelper.createTable(Granpa.class);
+        VariousDbTestHelper.createTable(Father.class);
+        VariousDbTestHelper.createTable(Daughter.class);
+        VariousDbTestHelper.createTable(Son.class);
+        VariousDbTestHelper.createTable(Stranger.class);
+        VariousDbTestHelper.createTable(GranpaSsdMaster.class);
+        VariousDbTestHelper.createTable(FatherSsdMaster.class);
+        VariousDbTestHelper.createTable(DaughterSsdMaster.class);
+        VariousDbTestHelper.createTable(SonSsdMaster.class);
+        VariousDbTestHelper.createTable(StrangerSsdMaster.class);
+        final String prefix = "src/test/resources/nablarch/test/core/db/masterdata/";
+        for (int i = 0; i < 2; i++) {
+            MasterDataSetUpper.main("unit-test.xml",
+                    prefix + "MASTER_DATA.xls",
+                    "--parallelism:4",
+                    prefix + "MASTER_DATA2.xls",
+                    "--backUpSchema:" + BACKUP_SCHEMA);
+        }
+        assertEquals(VariousDbTestHelper.findAll(Granpa.class).size(),
+                VariousDbTestHelper.findAll(GranpaSsdMaster.class).size());
+        assertEquals(VariousDbTestHelper.findAll(Son.class).size(),
+                VariousDbTestHelper.findAll(SonSsdMaster.class).size());
+    }
+
+    /**
+     * メタデータの一括読み込みを行わない場合も、並列投入で使用するメタデータが
+     * 並列投入の開始前に呼び出し元スレッドで取得されること。
+     */
+    @Test
+    public void testSetUpInParallelWithoutBulkLoad() {
+        VariousDbTestHelper.createTable(Granpa.class);
+        VariousDbTestHelper.createTable(Father.class);
+        VariousDbTestHelper.createTable(Daughter.class);
+        VariousDbTestHelper.createTable(Son.class);
+        VariousDbTestHelper.createTable(Stranger.class);
+        // メタデータをキャッシュしていないDbInfoを使用する
+        RepositoryInitializer.reInitializeRepository("unit-test.xml");
+        ThreadRecordingDbInfo dbInfo = new ThreadRecordingDbInfo(
+                SystemRepository.<DbInfo>get("dbInfo"), Thread.currentThread());
+
+        List<File> files = new ArrayList<File>();
+        files.add(new File("src/test/resources/nablarch/test/core/db/masterdata/MASTER_DATA.xls"));
+        MasterDataSetUpper target = new MasterDataSetUpper(files, null);
+        target.setParallelism(4);
+        List<TableData> tables = target.getAllTableData(files.get(0));
+        for (TableData table : tables) {
+            table.setDbInfo(dbInfo);
+        }
+        target.replaceAllInParallel(tables);
+
+        assertEquals(Collections.<String>emptyList(), dbInfo.notLoaded);
+        assertFalse(VariousDbTestHelper.findAll(Son.class).isEmpty());
+    }
+
+    /**
+     * 呼び出し元スレッド以外から、呼び出し元スレッドで取得されていないメタデータを
+     * 取得しようとしたことを記録する{@link DbInfo}。
+     */
+    private static class ThreadRecordingDbInfo implements DbInfo {
+
+        /** 委譲先 */
+        private final DbInfo delegate;
+
+        /** 呼び出し元スレッド */
+        private final Thread caller;
+
+        /** 呼び出し元スレッドで取得されたメタデータ */
+        private final Set<String> loaded = Collections.synchronizedSet(new HashSet<String>());
+
+        /** 呼び出し元スレッドで取得される前に、別スレッドで取得されたメタデータ */
+        private final List<String> notLoaded = Collections.synchronizedList(new ArrayList<String>());
+
+        ThreadRecordingDbInfo(DbInfo delegate, Thread caller) {
+            this.delegate = delegate;
+            this.caller = caller;
+        }
+
+        private void record(String kind, String tableName) {
+            String key = kind + ':' + tableName.toUpperCase();
+            if (Thread.currentThread() == caller) {
+                loaded.add(key);
+            } else if (!loaded.contains(key)) {
+                notLoaded.add(key);
+            }
+        }
+
+        public String[] getPrimaryKeys(String tabName) {
+            record("primaryKeys", tabName);
+            return delegate.getPrimaryKeys(tabName);
+        }
+
+        public String[] getColumns(String tabName) {
+            record("columns", tabName);
+            return delegate.getColumns(tabName);
+        }
+
+        public int getColumnType(String tabName, String columnName) {
+            record("columnType", tabName);
+            return delegate.getColumnType(tabName, columnName);
+        }
+
+        public boolean isUniqueIndex(String tabName, String colName) {
+            record("uniqueIndex", tabName);
+            return delegate.isUniqueIndex(tabName, colName);
+        }
+
+        public int getColumnLength(String tabName, String colName) {
+            record("columnLength", tabName);
+            return delegate.getColumnLength(tabName, colName);
+        }
+
+        public boolean isComputedColumn(String tabName, String colName) {
+            return delegate.isComputedColumn(tabName, colName);
+        }
+
+        public boolean isNumberTypeColumn(String tableName, String columnName) {
+            record("columnType", tableName);
+            return delegate.isNumberTypeColumn(tableName, columnName);
+        }
+
+        public boolean isDateTypeColumn(String tableName, String columnName) {
+            record("columnType", tableName);
+            return delegate.isDateTypeColumn(tableName, columnName);
+        }
+
+        public boolean isBinaryTypeColumn(String tableName, String columnName) {
+            record("columnType", tableName);
+            return delegate.isBinaryTypeColumn(tableName, columnName);
+        }
+
+        public boolean isBooleanTypeColumn(String tableName, String columnName) {
+            record("columnType", tableName);
+            return delegate.isBooleanTypeColumn(tableName, columnName);
+        }
+    }
+
+    /** 並列度に1未満の値を指定した場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelism() {
+        new MasterDataSetUpper(new ArrayList<File>(), null).setParallelism(0);
+    }
+
     private void doSetUp() {
         final String prefix = "src/test/resources/nablarch/test/core/db/masterdata/";
         MasterDataSetUpper.main("unit-test.xml",
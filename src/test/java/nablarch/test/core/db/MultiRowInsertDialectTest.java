@@ -0,0 +1,47 @@
+package nablarch.test.core.db;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * {@link MultiRowInsertDialect}のテストクラス。
+ */
+public class MultiRowInsertDialectTest {
+
+    private static final String[] COLUMNS = {"COL1", "COL2"};
+
+    /** VALUES句に複数行を列挙したINSERT文が作成されること。 */
+    @Test
+    public void testValuesList() {
+        assertThat(new ValuesListInsertDialect().createInsertStatement("TEST_TABLE", COLUMNS, 3),
+                is("INSERT INTO TEST_TABLE(COL1,COL2) VALUES (?,?),(?,?),(?,?)"));
+    }
+
+    /** INSERT ALL形式のINSERT文が作成されること。 */
+    @Test
+    public void testInsertAll() {
+        assertThat(new InsertAllDialect().createInsertStatement("TEST_TABLE", COLUMNS, 2),
+                is("INSERT ALL INTO TEST_TABLE(COL1,COL2) VALUES (?,?) INTO TEST_TABLE(COL1,COL2) VALUES (?,?)"
+                        + " SELECT * FROM DUAL"));
+    }
+
+    /** 1つのINSERT文で登録する行数が、バッチサイズとバインド変数の上限の小さい方となること。 */
+    @Test
+    public void testRowsPerStatement() {
+        MultiRowInsertDialect dialect = new ValuesListInsertDialect();
+        assertThat(dialect.getRowsPerStatement(10, 100), is(100));
+        assertThat(dialect.getRowsPerStatement(100, 100), is(20));
+        dialect.setMaxParameters(5);
+        assertThat(dialect.getRowsPerStatement(2, 100), is(2));
+        // 1行でも上限を超える場合は1行ずつ
+        assertThat(dialect.getRowsPerStatement(10, 100), is(1));
+    }
+
+    /** バインド変数の上限が不正な場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxParameters() {
+        new InsertAllDialect().setMaxParameters(0);
+    }
+}
@@ -0,0 +1,151 @@
+package nablarch.test.core.db;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import nablarch.core.repository.SystemRepository;
+import nablarch.test.support.SystemRepositoryResource;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/**
+ * {@link SchemaMetaDataSnapshot}のテストクラス。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class SchemaMetaDataSnapshotTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("unit-test.xml");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection conn;
+
+    private File file;
+
+    private String schema;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = VariousDbTestHelper.getNativeConnection();
+        file = new File(folder.getRoot(), "snapshot/metadata.ser");
+        schema = SystemRepository.getString("nablarch.db.schema");
+        SchemaMetaDataSnapshot.clear();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        SchemaMetaDataSnapshot.clear();
+        conn.close();
+    }
+
+    /** ファイルのパスが設定されていない場合、スナップショットは使用されないこと。 */
+    @Test
+    public void testNotEnabled() {
+        assertThat(SchemaMetaDataSnapshot.isEnabled(), is(false));
+        assertThat(SchemaMetaDataSnapshot.get(conn, schema), nullValue());
+    }
+
+    /** 保存したスナップショットが、別のプロセス（クリア後）で読み込まれること。 */
+    @Test
+    public void testWriteAndRead() {
+        repositoryResource.addComponent(SchemaMetaDataSnapshot.FILE_KEY, file.getPath());
+        SchemaMetaDataSnapshot snapshot = SchemaMetaDataSnapshot.get(conn, schema);
+        assertThat(snapshot.getReferences(), nullValue());
+        assertThat(snapshot.hasTableMetaData(), is(false));
+        snapshot.setReferences(Collections.singletonList(new String[] {"PARENT", "CHILD"}));
+        assertThat(SchemaMetaDataSnapshot.getFile(file.getPath(), schema).isFile(), is(true));
+
+        SchemaMetaDataSnapshot.clear();
+        List<String[]> references = SchemaMetaDataSnapshot.get(conn, schema).getReferences();
+        assertThat(references.size(), is(1));
+        assertThat(Arrays.asList(references.get(0)), is(Arrays.asList("PARENT", "CHILD")));
+    }
+
+    /** 取得元が異なる場合、保存したスナップショットは使用されないこと。 */
+    @Test
+    public void testOutdated() {
+        repositoryResource.addComponent(SchemaMetaDataSnapshot.FILE_KEY, file.getPath());
+        SchemaMetaDataSnapshot snapshot = SchemaMetaDataSnapshot.get(conn, schema);
+        snapshot.setReferences(Collections.singletonList(new String[] {"PARENT", "CHILD"}));
+
+        SchemaMetaDataSnapshot.clear();
+        SchemaMetaDataSnapshot other = SchemaMetaDataSnapshot.get(conn, schema + "_OTHER");
+        assertThat(other.getReferences(), nullValue());
+    }
+
+    /** 複数のスキーマのスナップショットが、互いに上書きされずに保存されること。 */
+    @Test
+    public void testMultipleSchemas() {
+        repositoryResource.addComponent(SchemaMetaDataSnapshot.FILE_KEY, file.getPath());
+        SchemaMetaDataSnapshot.get(conn, "").setReferences(
+                Collections.singletonList(new String[] {"PARENT1", "CHILD1"}));
+        SchemaMetaDataSnapshot.get(conn, "schema2").setReferences(
+                Collections.singletonList(new String[] {"PARENT2", "CHILD2"}));
+        assertThat(file.isFile(), is(true));
+        assertThat(new File(file.getPath() + ".SCHEMA2").isFile(), is(true));
+
+        SchemaMetaDataSnapshot.clear();
+        List<String[]> references1 = SchemaMetaDataSnapshot.get(conn, "").getReferences();
+        assertThat(references1.size(), is(1));
+        assertThat(Arrays.asList(references1.get(0)), is(Arrays.asList("PARENT1", "CHILD1")));
+        List<String[]> references2 = SchemaMetaDataSnapshot.get(conn, "SCHEMA2").getReferences();
+        assertThat(references2.size(), is(1));
+        assertThat(Arrays.asList(references2.get(0)), is(Arrays.asList("PARENT2", "CHILD2")));
+    }
+
+    /** {@link GenericJdbcDbInfo}が、スナップショットからメタデータを復元すること。 */
+    @Test
+    public void testRestoredByDbInfo() {
+        repositoryResource.addComponent(SchemaMetaDataSnapshot.FILE_KEY, file.getPath());
+        Map<String, Map<String, Integer>> lengths = new HashMap<String, Map<String, Integer>>();
+        lengths.put("SNAPSHOT_ONLY", new HashMap<String, Integer>());
+        lengths.get("SNAPSHOT_ONLY").put("COL1", 10);
+        Map<String, Map<String, Integer>> types = new HashMap<String, Map<String, Integer>>();
+        types.put("SNAPSHOT_ONLY", new HashMap<String, Integer>());
+        types.get("SNAPSHOT_ONLY").put("COL1", Types.CHAR);
+        SchemaMetaDataSnapshot.get(conn, schema).setTableMetaData(
+                singleton("SNAPSHOT_ONLY", "COL1"),
+                singleton("SNAPSHOT_ONLY", "COL1"),
+                lengths,
+                types,
+                singleton("SNAPSHOT_ONLY"));
+        SchemaMetaDataSnapshot.clear();
+
+        DataSource dataSource = repositoryResource.getComponent("dataSource");
+        GenericJdbcDbInfo dbInfo = new GenericJdbcDbInfo();
+        dbInfo.setDataSource(dataSource);
+        dbInfo.setSchema(schema);
+        // データベースに存在しないテーブルのメタデータが、スナップショットから取得できること
+        assertThat(Arrays.asList(dbInfo.getColumns("snapshot_only")), is(Arrays.asList("COL1")));
+        assertThat(Arrays.asList(dbInfo.getPrimaryKeys("snapshot_only")), is(Arrays.asList("COL1")));
+        assertThat(dbInfo.getColumnLength("snapshot_only", "col1"), is(10));
+        assertThat(dbInfo.isNumberTypeColumn("snapshot_only", "col1"), is(false));
+    }
+
+    private static Map<String, String[]> singleton(String table, String... values) {
+        Map<String, String[]> map = new HashMap<String, String[]>();
+        map.put(table, values);
+        return map;
+    }
+}
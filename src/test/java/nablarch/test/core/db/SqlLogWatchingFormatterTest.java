@@ -6,6 +6,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
@@ -34,11 +39,10 @@ public class SqlLogWatchingFormatterTest {
      */
     @Test
     public void testStartExecuteUpdate() {
-        // 発行したSQL文が取得できること。
+        // 更新されたテーブルが取得できること。
         target.startExecuteUpdate("testStartExecuteUpdate", "UPDATE hoge", "");
         target.startExecuteUpdate("testStartExecuteUpdate", "UPDATE fuga", "");
-        assertThat(SqlLogWatchingFormatter.getExecuted(),
-                is(Arrays.asList("UPDATE hoge", "UPDATE fuga")));
+        assertThat(SqlLogWatchingFormatter.getModifiedTables(), is(modified("HOGE", "FUGA")));
     }
 
 
@@ -47,11 +51,10 @@ public class SqlLogWatchingFormatterTest {
      */
     @Test
     public void testStartExecute() {
-        // 発行したSQL文が取得できること。
+        // 更新されたテーブルが取得できること。
         target.startExecute("testStartExecuteUpdate", "UPDATE hoge", "");
         target.startExecute("testStartExecuteUpdate", "UPDATE fuga", "");
-        assertThat(SqlLogWatchingFormatter.getExecuted(),
-                is(Arrays.asList("UPDATE hoge", "UPDATE fuga")));
+        assertThat(SqlLogWatchingFormatter.getModifiedTables(), is(modified("HOGE", "FUGA")));
     }
 
     /**
@@ -59,11 +62,45 @@ public class SqlLogWatchingFormatterTest {
      */
     @Test
     public void testStartExecuteBatch() {
-        // 発行したSQL文が取得できること。
+        // 更新されたテーブルが取得できること。
         target.startExecuteBatch("testStartExecuteUpdate", "UPDATE hoge", "");
         target.startExecuteBatch("testStartExecuteUpdate", "UPDATE fuga", "");
-        assertThat(SqlLogWatchingFormatter.getExecuted(),
-                is(Arrays.asList("UPDATE hoge", "UPDATE fuga")));
+        assertThat(SqlLogWatchingFormatter.getModifiedTables(), is(modified("HOGE", "FUGA")));
 
     }
+
+    /**
+     * 同じテーブルを何度更新しても、記録が増えないこと。
+     */
+    @Test
+    public void testSameTableRecordedOnce() {
+        for (int i = 0; i < 1000; i++) {
+            target.startExecuteUpdate("testSameTableRecordedOnce", "UPDATE hoge SET col = ?", "");
+        }
+        target.startExecuteUpdate("testSameTableRecordedOnce", "DELETE FROM hoge", "");
+        // 参照系のSQL文は記録されないこと
+        target.startExecute("testSameTableRecordedOnce", "SELECT * FROM fuga", "");
+
+        Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+        expected.put("HOGE", new TreeSet<String>(Arrays.asList("DELETE", "UPDATE")));
+        assertThat(SqlLogWatchingFormatter.getModifiedTables(), is(expected));
+    }
+
+    /**
+     * 監視を開始した場合、記録が破棄されること。
+     */
+    @Test
+    public void testBegin() {
+        target.startExecuteUpdate("testBegin", "UPDATE hoge SET col = ?", "");
+        SqlLogWatchingFormatter.begin();
+        assertThat(SqlLogWatchingFormatter.getModifiedTables().isEmpty(), is(true));
+    }
+
+    private static Map<String, Set<String>> modified(String... updatedTables) {
+        Map<String, Set<String>> modified = new HashMap<String, Set<String>>();
+        for (String table : updatedTables) {
+            modified.put(table, Collections.singleton("UPDATE"));
+        }
+        return modified;
+    }
 }
@@ -0,0 +1,191 @@
+package nablarch.test.core.db;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.connection.TransactionManagerConnection;
+import nablarch.core.db.statement.SqlPStatement;
+import nablarch.test.support.SystemRepositoryResource;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * {@link TableClearingStrategy}のテストクラス。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class TableClearingStrategyTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("unit-test.xml");
+
+    /** 発行されたSQL文 */
+    private final List<String> executed = new ArrayList<String>();
+
+    /** デフォルトでは、DELETE文で削除されること。 */
+    @Test
+    public void testClearByDelete() {
+        new TableClearingStrategy().clear(createConnection(), "TEST_TABLE");
+        assertThat(executed, is(Arrays.asList("DELETE FROM TEST_TABLE")));
+    }
+
+    /** {@link TruncateTableClearingStrategy}では、TRUNCATE文で削除されること。 */
+    @Test
+    public void testClearByTruncate() {
+        new TruncateTableClearingStrategy().clear(createConnection(), "TEST_TABLE");
+        assertThat(executed, is(Arrays.asList("TRUNCATE TABLE TEST_TABLE")));
+    }
+
+    /** 投入前後に、設定したSQL文が順に実行されること。 */
+    @Test
+    public void testSetUpStatements() {
+        TableClearingStrategy target = new TableClearingStrategy();
+        target.setBeforeSetUpStatements(Arrays.asList("SET A = 0", "SET B = 0"));
+        target.setAfterSetUpStatements(Arrays.asList("SET A = 1"));
+        AppDbConnection conn = createConnection();
+
+        target.beforeSetUp(conn);
+        assertThat(executed, is(Arrays.asList("SET A = 0", "SET B = 0")));
+        target.afterSetUp(conn);
+        assertThat(executed, is(Arrays.asList("SET A = 0", "SET B = 0", "SET A = 1")));
+    }
+
+    /** 投入前後のSQL文が設定されていない場合、何も実行されないこと。 */
+    @Test
+    public void testNoSetUpStatements() {
+        TableClearingStrategy target = new TableClearingStrategy();
+        target.beforeSetUp(createConnection());
+        target.afterSetUp(createConnection());
+        assertThat(executed.isEmpty(), is(true));
+    }
+
+    /** {@link GenericJdbcDbInfo}に設定された削除方法が取得されること。 */
+    @Test
+    public void testForDbInfo() {
+        GenericJdbcDbInfo dbInfo = new GenericJdbcDbInfo();
+        assertThat(TableClearingStrategy.forDbInfo(dbInfo), is(sameInstance(dbInfo.getTableClearingStrategy())));
+        TableClearingStrategy truncate = new TruncateTableClearingStrategy();
+        dbInfo.setTableClearingStrategy(truncate);
+        assertThat(TableClearingStrategy.forDbInfo(dbInfo), is(sameInstance(truncate)));
+        assertThat(TableClearingStrategy.forTables(
+                Collections.singletonList(new TableData(dbInfo, "TEST_TABLE", new String[0]))),
+                is(sameInstance(truncate)));
+
+        // GenericJdbcDbInfo以外の場合は、DELETE文で削除される
+        TableClearingStrategy.forDbInfo(null).clear(createConnection(), "TEST_TABLE");
+        TableClearingStrategy.forTables(Collections.<TableData>emptyList()).clear(createConnection(), "TEST_TABLE");
+        assertThat(executed, is(Arrays.asList("DELETE FROM TEST_TABLE", "DELETE FROM TEST_TABLE")));
+    }
+
+    /** 削除方法にnullを設定した場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetNullStrategy() {
+        new GenericJdbcDbInfo().setTableClearingStrategy(null);
+    }
+
+    /** 外部キーで参照されているテーブルは、TRUNCATE文ではなくDELETE文で削除されること。 */
+    @Test
+    public void testClearReferencedTableByDelete() throws SQLException {
+        TableDataSorterTest.createFKTables();
+        Connection nativeConnection = VariousDbTestHelper.getNativeConnection();
+        try {
+            TruncateTableClearingStrategy target = new TruncateTableClearingStrategy();
+            AppDbConnection conn = createConnection(TransactionManagerConnection.class, nativeConnection);
+            target.clear(conn, "FATHER");   // SON、DAUGHTERから参照されている
+            target.clear(conn, "SON");      // 参照されていない
+        } finally {
+            nativeConnection.close();
+        }
+        assertThat(executed, is(Arrays.asList("DELETE FROM FATHER", "TRUNCATE TABLE SON")));
+    }
+
+    /** 投入に失敗した場合、投入後のSQL文の失敗は例外を送出せず、ログ出力のみ行われること。 */
+    @Test
+    public void testAfterSetUpErrorDuringFailedSetUp() {
+        TableClearingStrategy target = new TableClearingStrategy();
+        target.setAfterSetUpStatements(Arrays.asList("FAIL"));
+        OnMemoryLogWriter.clear();
+
+        target.afterSetUp(createConnection(), false);
+        assertThat(executed, is(Arrays.asList("FAIL")));
+        boolean logged = false;
+        for (String message : OnMemoryLogWriter.getMessages("writer.memlog")) {
+            logged |= message.contains("statement after set up failed.");
+        }
+        assertThat(logged, is(true));
+
+        // 投入が正常に終了した場合は、例外が送出される
+        try {
+            target.afterSetUp(createConnection(), true);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("FAIL"));
+        }
+    }
+
+    /**
+     * 発行されたSQL文を記録するコネクションを作成する。
+     *
+     * @return コネクション
+     */
+    private AppDbConnection createConnection() {
+        return createConnection(AppDbConnection.class, null);
+    }
+
+    /**
+     * 発行されたSQL文を記録するコネクションを作成する。<br/>
+     * 「FAIL」で始まるSQL文は、実行時に例外が発生する。
+     *
+     * @param type             コネクションの型
+     * @param nativeConnection {@link TransactionManagerConnection#getConnection()}で返却するコネクション
+     * @return コネクション
+     */
+    private AppDbConnection createConnection(Class<? extends AppDbConnection> type, final Connection nativeConnection) {
+        return (AppDbConnection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("prepareStatement") && args.length == 1) {
+                            executed.add((String) args[0]);
+                            return createStatement((String) args[0]);
+                        }
+                        if (method.getName().equals("getConnection")) {
+                            return nativeConnection;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private SqlPStatement createStatement(final String sql) {
+        return (SqlPStatement) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {SqlPStatement.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("executeUpdate")) {
+                            if (sql.startsWith("FAIL")) {
+                                throw new IllegalStateException(sql);
+                            }
+                            return 0;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -63,6 +63,7 @@ public class TableDataSorterTest {
         VariousDbTestHelper.createTable(Daughter.class);
         VariousDbTestHelper.createTable(Son.class);
         VariousDbTestHelper.createTable(Stranger.class);
+        TableDataSorter.clearCache();
     }
 
     @Before
@@ -119,6 +120,25 @@ public class TableDataSorterTest {
         assertThat(itr.next(), anyOf(is("DAUGHTER"), is("SON")));
     }
 
+    /**
+     * 外部キー制約の依存関係が、同じスキーマのソートで共有されること。
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testSortedTablesShared() throws SQLException {
+        String schema = SystemRepository.getString("nablarch.db.schema");
+        List<String> expected = new TableDataSorter(conn, schema).sortTableNamesByFK(
+                Arrays.asList("SON", "FATHER", "GRANPA"));
+        assertThat(expected, is(Arrays.asList("GRANPA", "FATHER", "SON")));
+
+        // 解析済みのため、コネクションを使用しないこと
+        Connection closed = VariousDbTestHelper.getNativeConnection();
+        closed.close();
+        assertThat(new TableDataSorter(closed, schema).sortTableNamesByFK(
+                Arrays.asList("SON", "GRANPA", "FATHER")), is(expected));
+    }
+
     /**
      * nablarch.db.schema に値がセットされていなかった場合に例外が発生すること。
      */
@@ -168,6 +188,58 @@ public class TableDataSorterTest {
         assertThat("元の順番のままであること", reversed, is(reversedOriginalOrder));
     }
 
+    /** 外部キー制約の依存関係の階層ごとに、テーブルデータがグループ化されること。 */
+    @Test
+    public void testGroupByLevel() throws SQLException {
+        RepositoryInitializer.reInitializeRepository("unit-test.xml");
+        new Expectations() {{
+            mockTranConn.getConnection();
+            result = conn;
+        }};
+
+        List<TableData> tables = load("DAUGHTER", "GRANPA", "FATHER", "SON", "STRANGER", "FATHER");
+        List<List<TableData>> levels = TableDataSorter.groupByLevel(tables, mockTranConn);
+
+        assertThat(levels.size(), is(3));
+        assertThat(levels.get(0), is(Arrays.asList(tables.get(1), tables.get(4))));
+        assertThat("同一テーブルは元の順序で同じ階層となること",
+                levels.get(1), is(Arrays.asList(tables.get(2), tables.get(5))));
+        assertThat(levels.get(2), is(Arrays.asList(tables.get(0), tables.get(3))));
+    }
+
+    /** ソートが抑制されている場合、元の順序でテーブルデータ1つずつのグループとなること。 */
+    @Test
+    public void testGroupByLevelSuppressed() {
+        RepositoryInitializer.reInitializeRepository("nablarch/test/core/db/suppress-sort-table.xml");
+
+        final String[] unusedColumnNames = new String[0];
+        TableData son = new TableData(null, "SON", unusedColumnNames);
+        TableData granpa = new TableData(null, "GRANPA", unusedColumnNames);
+        List<List<TableData>> levels = TableDataSorter.groupByLevel(Arrays.asList(son, granpa), mockTranConn);
+
+        assertThat(levels.size(), is(2));
+        assertThat(levels.get(0), is(Collections.singletonList(son)));
+        assertThat(levels.get(1), is(Collections.singletonList(granpa)));
+    }
+
+    /** 外部キーで参照されているテーブルが判定できること。 */
+    @Test
+    public void testIsReferenced() {
+        RepositoryInitializer.reInitializeRepository("unit-test.xml");
+        new Expectations() {{
+            mockTranConn.getConnection();
+            result = conn;
+        }};
+        assertThat(TableDataSorter.isReferenced("GRANPA", mockTranConn), is(true));
+        assertThat(TableDataSorter.isReferenced("father", mockTranConn), is(true));
+        assertThat(TableDataSorter.isReferenced("SON", mockTranConn), is(false));
+        assertThat(TableDataSorter.isReferenced("STRANGER", mockTranConn), is(false));
+
+        // ソートが抑制されている場合は、参照されていないものとみなす
+        RepositoryInitializer.reInitializeRepository("nablarch/test/core/db/suppress-sort-table.xml");
+        assertThat(TableDataSorter.isReferenced("GRANPA", mockTranConn), is(false));
+    }
+
     private List<TableData> load(String... tableNames) throws SQLException {
         List<TableData> ret = new ArrayList<TableData>();
         for (String table : tableNames) {
@@ -9,6 +9,8 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.text.ParseException;
@@ -105,6 +107,24 @@ public class TableDataTest {
                 CoreMatchers.<Object>is(new BigDecimal(1)), CoreMatchers.<Object>is(true)));
     }
 
+    /** {@link TableData#getDeepCopy()}で取得したコピーへの変更が、元のオブジェクトに影響しないこと。 */
+    @Test
+    public void testGetDeepCopy() {
+        TableData original = new TableData(repositoryResource.getComponentByType(DbInfo.class),
+                "TEST_TABLE", new String[] {"PK_COL1", "PK_COL2"});
+        original.addRow(Arrays.asList("00001", "1"));
+
+        TableData copy = original.getDeepCopy();
+        copy.alterColumnValue(0, "PK_COL1", "99999");
+        copy.fillDefaultValues();
+
+        assertThat(copy.getValue(0, "PK_COL1").toString(), is("99999"));
+        assertThat(copy.getColumnNames().length, is(11));
+        assertThat(original.getValue(0, "PK_COL1").toString(), is("00001"));
+        assertThat(original.getColumnNames().length, is(2));
+        assertThat(original.getValue(0, "VARCHAR2_COL"), nullValue());
+    }
+
     @Test
     public void testLoadDataManyData() throws ParseException {
         VariousDbTestHelper.setUpTable(
@@ -329,6 +349,116 @@ public class TableDataTest {
         assertThat(result.get(0).nullCol, is(nullValue()));
     }
 
+    /** 省略されたカラムのデフォルト値が、行ごとではなくカラムごとに一度だけ取得されること。 */
+    @Test
+    public void testDefaultValueResolvedOncePerColumn() {
+        final int[] count = {0};
+        DbInfo dbInfo = repositoryResource.getComponentByType(DbInfo.class);
+        TableData target = new TableData(dbInfo, "test_table", new String[] {"pk_col1", "pk_col2"});
+        target.setDefaultValues(new MockDefaultValues() {
+            @Override
+            public Object get(int columnType, int maxLength) {
+                count[0]++;
+                return super.get(columnType, maxLength);
+            }
+        });
+        for (int i = 1; i <= 3; i++) {
+            target.addRow(Arrays.asList("00001", String.valueOf(i)));
+        }
+        target.replaceData();
+
+        List<TestTable> result = VariousDbTestHelper.findAll(TestTable.class, "pkCol1", "pkCol2");
+        assertThat("3件登録されていること", result.size(), is(3));
+        for (TestTable row : result) {
+            assertThat(row.varchar2Col, is(" "));
+            assertThat(row.numberCol, is(0L));
+            assertThat(row.blobCol.length, is(10));
+            assertThat(row.boolCol, is(false));
+        }
+        int omitted = 0;
+        for (String column : dbInfo.getColumns("test_table")) {
+            if (!dbInfo.isComputedColumn("test_table", column)) {
+                omitted++;
+            }
+        }
+        assertThat(count[0], is(omitted - 2));
+    }
+
+    /** 設定したバッチサイズで、全行が登録されること。 */
+    @Test
+    public void testInsertBatchSize() {
+        GenericJdbcDbInfo dbInfo = repositoryResource.getComponentByType(GenericJdbcDbInfo.class);
+        dbInfo.setInsertBatchSize(2);
+        TableData target = new TableData(dbInfo, "test_table", new String[] {"pk_col1", "pk_col2"});
+        target.setDefaultValues(new MockDefaultValues());
+        for (int i = 1; i <= 5; i++) {
+            target.addRow(Arrays.asList("00001", String.valueOf(i)));
+        }
+        target.replaceData();
+
+        List<TestTable> result = VariousDbTestHelper.findAll(TestTable.class, "pkCol1", "pkCol2");
+        assertThat("5件登録されていること", result.size(), is(5));
+        assertThat(result.get(4).pkCol2, is(5L));
+    }
+
+    /** TRUNCATE文で削除した後に、全行が登録されること。 */
+    @Test
+    public void testReplaceDataWithTruncate() {
+        VariousDbTestHelper.setUpTable(new TestTable("99999", 9L, "削除される", 1L, null, null, null, null, null, null, null));
+        GenericJdbcDbInfo dbInfo = repositoryResource.getComponentByType(GenericJdbcDbInfo.class);
+        dbInfo.setTableClearingStrategy(new TruncateTableClearingStrategy());
+        TableData target = new TableData(dbInfo, "test_table", new String[] {"pk_col1", "pk_col2"});
+        target.setDefaultValues(new MockDefaultValues());
+        target.addRow(Arrays.asList("00001", "1"));
+        target.addRow(Arrays.asList("00001", "2"));
+        target.replaceData();
+
+        List<TestTable> result = VariousDbTestHelper.findAll(TestTable.class, "pkCol1", "pkCol2");
+        assertThat("既存のデータが削除され、2件登録されていること", result.size(), is(2));
+        assertThat(result.get(0).pkCol1, is("00001"));
+    }
+
+    /** バッチサイズが不正な場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidInsertBatchSize() {
+        new GenericJdbcDbInfo().setInsertBatchSize(0);
+    }
+
+    /** 複数行INSERTで、端数の行も含めて全行が登録されること。 */
+    @Test
+    public void testInsertMultiRows() throws SQLException {
+        Connection conn = VariousDbTestHelper.getNativeConnection();
+        MultiRowInsertDialect dialect;
+        try {
+            dialect = conn.getMetaData().getDatabaseProductName().toUpperCase().contains("ORACLE")
+                    ? new InsertAllDialect()
+                    : new ValuesListInsertDialect();
+        } finally {
+            conn.close();
+        }
+        GenericJdbcDbInfo dbInfo = repositoryResource.getComponentByType(GenericJdbcDbInfo.class);
+        // 1つのINSERT文で2行ずつ登録する
+        dialect.setMaxParameters(dbInfo.getColumns("test_table").length * 2);
+        dbInfo.setMultiRowInsertDialect(dialect);
+
+        TableData target = new TableData(dbInfo, "test_table",
+                new String[] {"pk_col1", "pk_col2", "varchar2_col", "number_col"});
+        target.setDefaultValues(new MockDefaultValues());
+        for (int i = 1; i <= 5; i++) {
+            target.addRow(Arrays.asList("00001", String.valueOf(i), "値" + i, String.valueOf(i * 10)));
+        }
+        target.replaceData();
+
+        List<TestTable> result = VariousDbTestHelper.findAll(TestTable.class, "pkCol1", "pkCol2");
+        assertThat("5件登録されていること", result.size(), is(5));
+        for (int i = 0; i < 5; i++) {
+            assertThat(result.get(i).pkCol2, is((long) i + 1));
+            assertThat(result.get(i).varchar2Col, is("値" + (i + 1)));
+            assertThat(result.get(i).numberCol, is((long) (i + 1) * 10));
+            assertThat("省略したカラムはデフォルト値", result.get(i).blobCol.length, is(10));
+        }
+    }
+
     /** JDBCタイムスタンプエスケープ形式で記載したデータをインサートできること。 */
     @Test
     public void testInsertJdbcTimestampEscape() {
@@ -911,4 +911,29 @@ public class BasicTestDataParserTest {
         BasicTestDataParser target = new BasicTestDataParser();
         target.formatGroupId(new String[] {"one", "two"});
     }
+
+    /** 2回目以降はキャッシュから取得され、返却したデータを変更してもキャッシュに影響しないこと。 */
+    @Test
+    public void testResultCache() {
+        String dir = resourceRoot + "nablarch/test/core/reader/";
+
+        List<Map<String, String>> listMap = target.getListMap(dir, "BasicTestDataParserTest/getListMap", "params");
+        Map<String, String> firstRow = listMap.get(0);
+        String key = firstRow.keySet().iterator().next();
+        String original = firstRow.get(key);
+        firstRow.put(key, "changed");
+        listMap.clear();
+        List<Map<String, String>> again = target.getListMap(dir, "BasicTestDataParserTest/getListMap", "params");
+        assertThat(again.size(), is(2));
+        assertThat(again.get(0).get(key), is(original));
+
+        String resource = "BasicTestDataParserTest/completedWithoutId";
+        List<TableData> first = target.getExpectedTableData(dir, resource);
+        first.get(0).alterColumnValue(0, "PK_COL1", "changed");
+        List<TableData> second = target.getExpectedTableData(dir, resource);
+        // デフォルト値の補完はコピーに対して行われる
+        assertThat(second.get(0).getColumnNames().length, is(11));
+        assertThat(second.get(0).getValue(0, "PK_COL1").toString(), is("0000000001"));
+        assertThat(second.get(0).getValue(0, "VARCHAR2_COL").toString(), is(" "));
+    }
 }
@@ -0,0 +1,176 @@
+package nablarch.test.core.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import nablarch.test.Trap;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * {@link DelimitedTextReader}のテストクラス。
+ */
+public class DelimitedTextReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DelimitedTextReader target = new DelimitedTextReader();
+
+    @After
+    public void tearDown() {
+        target.close();
+    }
+
+    /** TSVファイルから、コメント、空行を除いて読み込めること。 */
+    @Test
+    public void testReadTsv() throws Exception {
+        write("Book/sheet.tsv", "\uFEFFLIST_MAP=data\r\n"
+                + "col1\tcol2\tcol3\n"
+                + "//comment\tignored\n"
+                + "\n"
+                + "\t\t\n"
+                + "a\t\"b\"\t\\r\n"
+                + "あいう\t\t");
+        target.open(folder.getRoot().getPath(), "Book/sheet");
+        assertThat(target.readLine(), is(Arrays.asList("LIST_MAP=data")));
+        assertThat(target.readLine(), is(Arrays.asList("col1", "col2", "col3")));
+        assertThat(target.readLine(), is(Arrays.asList("//comment")));
+        assertThat(target.readLine(), is(Arrays.asList("a", "\"b\"", "\\r")));
+        assertThat(target.readLine(), is(Arrays.asList("あいう", "", "")));
+        assertThat(target.readLine(), nullValue());
+    }
+
+    /** CSVファイルから、囲み文字を解釈して読み込めること。 */
+    @Test
+    public void testReadCsv() throws Exception {
+        write("Book/sheet.csv", "SETUP_TABLE=TABLE1\r\n"
+                + "PK1,COL1,COL2\r\n"
+                + "1,\"a,b\",\"x\"\"y\"\r\n"
+                + "2,\"line1\nline2\",\r\n"
+                + "3,\"\"\"quoted\"\"\",\"\"\r\n"
+                + "//comment,ignored\r\n"
+                + ",,\r\n"
+                + "4,last,");
+        target.open(folder.getRoot().getPath(), "Book/sheet");
+        assertThat(target.readLine(), is(Arrays.asList("SETUP_TABLE=TABLE1")));
+        assertThat(target.readLine(), is(Arrays.asList("PK1", "COL1", "COL2")));
+        assertThat(target.readLine(), is(Arrays.asList("1", "a,b", "x\"y")));
+        assertThat(target.readLine(), is(Arrays.asList("2", "line1\nline2", "")));
+        assertThat(target.readLine(), is(Arrays.asList("3", "\"quoted\"", "")));
+        assertThat(target.readLine(), is(Arrays.asList("//comment")));
+        assertThat(target.readLine(), is(Arrays.asList("4", "last", "")));
+        assertThat(target.readLine(), nullValue());
+    }
+
+    /** TSVファイルとCSVファイルが両方存在する場合、TSVファイルが読み込まれること。 */
+    @Test
+    public void testTsvPreferred() throws Exception {
+        write("Book/sheet.tsv", "tsv");
+        write("Book/sheet.csv", "csv");
+        target.open(folder.getRoot().getPath(), "Book/sheet");
+        assertThat(target.readLine(), is(Arrays.asList("tsv")));
+    }
+
+    /** 囲み文字が閉じられていない場合、例外が発生すること。 */
+    @Test
+    public void testUnclosedQuotation() throws Exception {
+        write("Book/sheet.csv", "a,\"b\nc");
+        new Trap("囲み文字が閉じられていない場合、例外が発生すること。") {
+            @Override
+            protected void shouldFail() throws Exception {
+                target.open(folder.getRoot().getPath(), "Book/sheet");
+            }
+        }.capture(IllegalArgumentException.class)
+         .whichMessageContains("unclosed quotation.")
+         .whichMessageContains("line=[1]");
+    }
+
+    /** UTF-8でない場合、例外が発生すること。 */
+    @Test
+    public void testInvalidEncoding() throws Exception {
+        File file = write("Book/sheet.tsv", "");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("あいう".getBytes("Windows-31J"));
+        } finally {
+            out.close();
+        }
+        new Trap("UTF-8でない場合、例外が発生すること。") {
+            @Override
+            protected void shouldFail() throws Exception {
+                target.open(folder.getRoot().getPath(), "Book/sheet");
+            }
+        }.capture(RuntimeException.class)
+         .whichMessageContains("test data file open failed.");
+    }
+
+    /** 指定したシートが存在しない場合、例外が発生すること。*/
+    @Test(expected = IllegalArgumentException.class)
+    public void testSheetNotFound() throws Exception {
+        write("Book/sheet.tsv", "a");
+        target.open(folder.getRoot().getPath(), "Book/NO_SUCH_SHEET");
+    }
+
+    /** テストデータ名の形式が不正な場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenWithInvalidDataName() {
+        target.open("path", "hoge/");
+    }
+
+    /** ブックのディレクトリの存在が判定できること。 */
+    @Test
+    public void testIsResourceExisting() throws Exception {
+        write("Book/sheet.tsv", "a");
+        String basePath = folder.getRoot().getPath();
+        assertThat(target.isResourceExisting(basePath, "Book/sheet"), is(true));
+        assertThat(target.isResourceExisting(basePath, "NoSuchBook/sheet"), is(false));
+    }
+
+    /** 変換したブックから、{@link PoiXlsReader}と同じデータが読み込めること。 */
+    @Test
+    public void testSameResultAsPoiXlsReader() {
+        String xlsFileDir = new File("src/test/java/nablarch/test/core/reader/").getAbsolutePath();
+        File outputDir = new File(folder.getRoot(), "BasicTestDataParserTest");
+        File book = new File(xlsFileDir, "BasicTestDataParserTest.xls");
+        new TestDataTextConverter().convert(book, outputDir);
+
+        PoiXlsReader poi = new PoiXlsReader();
+        poi.setUseCache(false);
+        for (String sheetName : PoiXlsReader.getSheetNames(book)) {
+            String dataName = "BasicTestDataParserTest/" + sheetName;
+            poi.open(xlsFileDir, dataName);
+            target.open(folder.getRoot().getPath(), dataName);
+            try {
+                List<String> expected;
+                do {
+                    expected = poi.readLine();
+                    assertThat(dataName, target.readLine(), is(expected));
+                } while (expected != null);
+            } finally {
+                poi.close();
+                target.close();
+            }
+        }
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
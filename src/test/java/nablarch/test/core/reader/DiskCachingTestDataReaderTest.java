@@ -0,0 +1,190 @@
+package nablarch.test.core.reader;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * {@link DiskCachingTestDataReader}のテストクラス。
+ */
+public class DiskCachingTestDataReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static String xlsFileDir = new File("src/test/java/nablarch/test/core/reader/").getAbsolutePath();
+
+    private File cacheDir;
+
+    private CountingReader delegate;
+
+    private DiskCachingTestDataReader target;
+
+    @Before
+    public void setUp() {
+        cacheDir = new File(temporaryFolder.getRoot(), "cache");
+        delegate = new CountingReader();
+        target = newTarget(delegate);
+    }
+
+    private DiskCachingTestDataReader newTarget(TestDataReader reader) {
+        DiskCachingTestDataReader ret = new DiskCachingTestDataReader();
+        ret.setTestDataReader(reader);
+        ret.setCacheDirectory(cacheDir.getPath());
+        return ret;
+    }
+
+    /** 初回は委譲先から読み込み、2回目以降はキャッシュファイルから同じ内容が読み込まれること。 */
+    @Test
+    public void testReadFromCache() {
+        List<List<String>> first = readAll(target, "PoiXlsReaderTestData/EXCEL_TEST_DATA");
+        assertThat(delegate.openCount, is(1));
+        assertThat(cacheDir.listFiles().length, is(1));
+
+        // 別インスタンス（別JVMを想定）でもキャッシュが使用されること
+        CountingReader another = new CountingReader();
+        List<List<String>> second = readAll(newTarget(another), "PoiXlsReaderTestData/EXCEL_TEST_DATA");
+        assertThat(another.openCount, is(0));
+        assertThat(second, is(first));
+        assertThat(second.get(0), is(Arrays.asList("1", "2", "3", "4", "5")));
+        assertThat(second.get(3), is(Arrays.asList("あいうえお", "かきくけこ")));
+    }
+
+    /** シート毎にキャッシュされること。 */
+    @Test
+    public void testCachePerSheet() {
+        readAll(target, "PoiXlsReaderTestData/EXCEL_TEST_DATA");
+        readAll(target, "PoiXlsReaderTestData/EMPTY_ROW");
+        assertThat(delegate.openCount, is(2));
+        assertThat(cacheDir.listFiles().length, is(2));
+    }
+
+    /** ブックの内容が変更された場合、キャッシュが使用されないこと。 */
+    @Test
+    public void testBookModified() throws Exception {
+        File dir = temporaryFolder.newFolder("books");
+        File book = new File(dir, "book.xls");
+        write(book, "1st");
+        MockLines reader = new MockLines();
+        reader.lines = Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("// comment"), Arrays.asList("c", "//d"));
+        DiskCachingTestDataReader caching = newTarget(reader);
+        assertThat(readAll(caching, dir.getPath(), "book/sheet").toString(), is("[[a, b], [c]]"));
+
+        // 内容が変わらなければキャッシュが使用される
+        reader.lines = Arrays.asList(Arrays.asList("x"));
+        assertThat(readAll(caching, dir.getPath(), "book/sheet").toString(), is("[[a, b], [c]]"));
+
+        // 最終更新日時だけが変わった場合もキャッシュが使用され、キャッシュの最終更新日時が更新される
+        assertTrue(book.setLastModified(book.lastModified() - 10000L));
+        assertThat(readAll(caching, dir.getPath(), "book/sheet").toString(), is("[[a, b], [c]]"));
+        assertThat(readCachedLastModified(), is(book.lastModified()));
+
+        // 内容が変われば再読み込みされる
+        write(book, "2nd!!");
+        assertThat(readAll(caching, dir.getPath(), "book/sheet").toString(), is("[[x]]"));
+    }
+
+    /** シートが存在しない場合は、委譲先の例外がそのまま送出されること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSheetNotFound() {
+        DiskCachingTestDataReader caching = newTarget(new PoiXlsReader());
+        caching.open(xlsFileDir, "PoiXlsReaderTestData/NO_SUCH_SHEET");
+    }
+
+    /** リソースの存在確認は委譲先に委譲されること。 */
+    @Test
+    public void testIsResourceExisting() {
+        assertThat(target.isResourceExisting(xlsFileDir, "PoiXlsReaderTestData/EXCEL_TEST_DATA"), is(true));
+        assertThat(target.isResourceExisting(xlsFileDir, "NoSuchFile/EXCEL_TEST_DATA"), is(false));
+    }
+
+    private static List<List<String>> readAll(TestDataReader reader, String dataName) {
+        return readAll(reader, xlsFileDir, dataName);
+    }
+
+    private static List<List<String>> readAll(TestDataReader reader, String path, String dataName) {
+        reader.open(path, dataName);
+        List<List<String>> result = new ArrayList<List<String>>();
+        try {
+            List<String> line;
+            while ((line = reader.readLine()) != null) {
+                result.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private long readCachedLastModified() throws IOException {
+        File[] files = cacheDir.listFiles();
+        assertThat(files.length, is(1));
+        DataInputStream in = new DataInputStream(new FileInputStream(files[0]));
+        try {
+            in.readInt();   // マジックナンバー
+            in.readInt();   // バージョン
+            in.readLong();  // ファイルサイズ
+            return in.readLong();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /** 委譲先の読み込み回数を数えるリーダ */
+    private static class CountingReader extends PoiXlsReader {
+        private int openCount = 0;
+
+        CountingReader() {
+            setUseCache(false);
+        }
+
+        @Override
+        public void open(String path, String dataName) {
+            openCount++;
+            super.open(path, dataName);
+        }
+    }
+
+    /** 任意の行を返却するリーダ */
+    private class MockLines implements TestDataReader {
+        private List<List<String>> lines;
+        private int idx;
+
+        public void open(String path, String dataName) {
+            idx = 0;
+        }
+
+        public void close() {
+        }
+
+        public List<String> readLine() {
+            return idx < lines.size() ? lines.get(idx++) : null;
+        }
+
+        public boolean isResourceExisting(String basePath, String resourceName) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package nablarch.test.core.reader;
+
+import nablarch.test.Trap;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * {@link PoiEventXlsReader}のテストクラス。
+ */
+public class PoiEventXlsReaderTest {
+
+    private PoiEventXlsReader target = new PoiEventXlsReader();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        target.close();
+    }
+
+    private static String xlsFileDir = new File("src/test/java/nablarch/test/core/reader/").getAbsolutePath();
+
+    /** .xlsファイルから{@link PoiXlsReader}と同じデータが読み込めること。 */
+    @Test
+    public void testOpenXlsFile() {
+        target.open(xlsFileDir, "PoiXlsReaderTestData/EXCEL_TEST_DATA");
+        assertReadData();
+    }
+
+    /** .xlsxファイルから{@link PoiXlsReader}と同じデータが読み込めること。 */
+    @Test
+    public void testOpenXlsxFile() {
+        target.open(xlsFileDir, "PoiXlsReaderXLSXTestData/EXCEL_TEST_DATA");
+        assertReadData();
+    }
+
+    /** 両リーダで読み込んだ結果が一致すること。 */
+    @Test
+    public void testSameResultAsPoiXlsReader() {
+        PoiXlsReader poi = new PoiXlsReader();
+        poi.setUseCache(false);
+        for (String dataName : Arrays.asList("PoiXlsReaderTestData/EXCEL_TEST_DATA",
+                                             "PoiXlsReaderTestData/EMPTY_ROW",
+                                             "PoiXlsReaderXLSXTestData/EXCEL_TEST_DATA")) {
+            poi.open(xlsFileDir, dataName);
+            target.open(xlsFileDir, dataName);
+            try {
+                List<String> expected;
+                do {
+                    expected = poi.readLine();
+                    assertThat(dataName, target.readLine(), is(expected));
+                } while (expected != null);
+            } finally {
+                poi.close();
+                target.close();
+            }
+        }
+    }
+
+    /**
+     * 数式、エラー、末尾の空セル等を含む同じ内容の.xls、.xlsxファイルを両リーダで読み込んだ結果が、
+     * セル単位で一致すること。
+     */
+    @Test
+    public void testSameCellsAsPoiXlsReader() throws IOException {
+        File dir = folder.getRoot();
+        writeBook(new HSSFWorkbook(), new File(dir, "CELLS.xls"));
+        writeBook(new XSSFWorkbook(), new File(dir, "CELLS_X.xlsx"));
+
+        PoiXlsReader poi = new PoiXlsReader();
+        poi.setUseCache(false);
+        for (String dataName : Arrays.asList("CELLS/DATA", "CELLS_X/DATA")) {
+            poi.open(dir.getPath(), dataName);
+            target.open(dir.getPath(), dataName);
+            try {
+                List<String> expected = poi.readLine();
+                // 数式は数式の文字列表現、末尾の空セルは空文字として読み込まれること
+                assertThat(dataName, expected, is(Arrays.asList(
+                        "abc", "1.5", "TRUE", "1+2", "\"a\"&\"b\"", "B1*2", "OTHER!A1", "#DIV/0!", "", "")));
+                do {
+                    assertThat(dataName, target.readLine(), is(expected));
+                    expected = poi.readLine();
+                } while (expected != null);
+                assertThat(dataName, target.readLine(), nullValue());
+            } finally {
+                poi.close();
+                target.close();
+            }
+        }
+    }
+
+    /**
+     * テスト用のブックを作成する。<br/>
+     * 数式の計算結果をキャッシュさせるため、全ての数式を評価してから保存する。
+     *
+     * @param book ブック
+     * @param file 保存先
+     * @throws IOException 予期しない例外
+     */
+    private static void writeBook(Workbook book, File file) throws IOException {
+        Sheet sheet = book.createSheet("DATA");
+        book.createSheet("OTHER").createRow(0).createCell(0).setCellValue("other");
+
+        Row row = sheet.createRow(0);
+        row.createCell(0).setCellValue("abc");
+        row.createCell(1).setCellValue(1.5);
+        row.createCell(2).setCellValue(true);
+        row.createCell(3).setCellFormula("1+2");
+        row.createCell(4).setCellFormula("\"a\"&\"b\"");
+        row.createCell(5).setCellFormula("B1*2");
+        row.createCell(6).setCellFormula("OTHER!A1");
+        row.createCell(7).setCellErrorValue(FormulaError.DIV0.getCode());
+        row.createCell(8, Cell.CELL_TYPE_BLANK);
+        row.createCell(9, Cell.CELL_TYPE_BLANK);
+
+        row = sheet.createRow(1);
+        row.createCell(0, Cell.CELL_TYPE_BLANK);
+        row.createCell(1).setCellValue("x");
+        row.createCell(2, Cell.CELL_TYPE_BLANK);
+
+        row = sheet.createRow(3);
+        row.createCell(0).setCellValue("//comment");
+        row.createCell(1).setCellValue("y");
+
+        FormulaEvaluator evaluator = book.getCreationHelper().createFormulaEvaluator();
+        for (Cell cell : sheet.getRow(0)) {
+            if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+                evaluator.evaluateFormulaCell(cell);
+            }
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            book.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void assertReadData() {
+        assertThat(target.readLine(), is(Arrays.asList("1", "2", "3", "4", "5")));
+        assertThat(target.readLine(), is(Arrays.asList("2010/8/27", "16:37", "2010/8/27 16:37")));
+        assertThat(target.readLine(), is(Arrays.asList("ABC", "D", "EF", "G")));
+        assertThat(target.readLine(), is(Arrays.asList("あいうえお", "かきくけこ")));
+        assertThat(target.readLine(), is(Arrays.asList("TRUE", "FALSE")));
+        // 6行目は存在しないのでnull
+        assertThat(target.readLine(), nullValue());
+    }
+
+    /** 完全な空行を含むシートを読む場合、空行が読み込まれないこと。 */
+    @Test
+    public void testEmptyRow() {
+        target.open(xlsFileDir, "PoiXlsReaderTestData/EMPTY_ROW");
+        assertThat(target.readLine(), is(Arrays.asList("1", "2", "3", "4", "5")));
+        assertThat(target.readLine(), is(Arrays.asList("あいうえお", "かきくけこ")));
+        assertThat(target.readLine(), is(nullValue()));
+    }
+
+    /** テストデータ名がnullの場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenWithDataNameNull() {
+        target.open("path", null);
+    }
+
+    /** テストデータ名の形式が不正な場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOpenWithInvalidDataName() {
+        target.open("path", "hoge/");
+    }
+
+    @Test
+    public void testBookNotFound() {
+        new Trap("存在しないファイルをオープンしようとする場合、例外が発生すること。") {
+            @Override
+            protected void shouldFail() throws Exception {
+                target.open(xlsFileDir, "NO_SUCH_BOOK/NO_SUCH_SHEET");
+            }
+        }.capture(RuntimeException.class)
+         .whichMessageIs("test data file open failed.");
+    }
+
+    /** 指定したシートが存在しない場合、例外が発生すること。*/
+    @Test(expected = IllegalArgumentException.class)
+    public void testSheetNotFound() {
+        target.open(xlsFileDir, "PoiXlsReaderTestData/NO_SUCH_SHEET");
+    }
+
+    /** 指定したシートが存在しない場合、例外が発生すること(xlsx)。*/
+    @Test(expected = IllegalArgumentException.class)
+    public void testSheetNotFoundXlsx() {
+        target.open(xlsFileDir, "PoiXlsReaderXLSXTestData/NO_SUCH_SHEET");
+    }
+
+    @Test
+    public void testIsResourceExisting() {
+        assertThat(target.isResourceExisting("src/test/java/nablarch/test/core/reader/", "PoiXlsReaderXLSXTestData/SetUpDb"),
+                   is(true));
+        assertThat(target.isResourceExisting("src/test/java/nablarch/test/core/reader/", "NoSuchFile/SetUpDb"), is(false));
+    }
+}
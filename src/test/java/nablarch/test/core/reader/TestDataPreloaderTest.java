@@ -0,0 +1,148 @@
+package nablarch.test.core.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.test.core.util.WeightedLruCache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link TestDataPreloader}のテストクラス。
+ */
+public class TestDataPreloaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** テストクラスと同名のブックのみが読み込み対象となること。 */
+    @Test
+    public void testFindBooks() {
+        TestDataPreloader target = new TestDataPreloader();
+        List<String> names = new ArrayList<String>();
+        for (File book : target.findBooks()) {
+            names.add(book.getPath().replace('\\', '/'));
+        }
+        assertThat(names.contains("src/test/java/nablarch/test/core/reader/BasicTestDataParserTest.xls"), is(true));
+        assertThat(names.contains("src/test/java/nablarch/test/core/db/DbAccessTestSupportTest.xls"), is(true));
+        // 同名のテストクラスが存在しないブックは対象外
+        assertThat(names.contains("src/test/java/nablarch/test/core/reader/PoiXlsReaderTestData.xls"), is(false));
+    }
+
+    /** ブックがパス名の順に探索されること。 */
+    @Test
+    public void testFindBooksInPathOrder() {
+        TestDataPreloader target = new TestDataPreloader();
+        List<File> books = target.findBooks();
+        assertThat(target.findBooks(), is(books));
+        int db = books.indexOf(new File("src/test/java/nablarch/test/core/db/DbAccessTestSupportTest.xls"));
+        int reader = books.indexOf(new File("src/test/java/nablarch/test/core/reader/BasicTestDataParserTest.xls"));
+        assertThat(db >= 0 && db < reader, is(true));
+    }
+
+    /** 読み込み処理が一度だけ開始され、ブックがキャッシュに読み込まれること。 */
+    @Test
+    public void testPreload() throws Exception {
+        File book = copyBook();
+        TestDataPreloader target = new PreloaderForTest(book, true);
+        WeightedLruCache.Statistics before = PoiXlsReader.getBookCacheStatistics();
+        target.beforeTestSuite();
+        target.beforeTestClass();   // 2回目以降は何もしない
+
+        // バックグラウンドのスレッドでの読み込みの完了を待つ
+        long deadline = System.currentTimeMillis() + 10000;
+        while (PoiXlsReader.getBookCacheStatistics().getLoadCount() == before.getLoadCount()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // 読み込み済みのため、キャッシュから取得される
+        PoiXlsReader.preload(book);
+        WeightedLruCache.Statistics after = PoiXlsReader.getBookCacheStatistics();
+        assertThat(after.getLoadCount() - before.getLoadCount(), is(1L));
+        assertThat(after.getMissCount() - before.getMissCount(), is(1L));
+        assertThat(after.getHitCount() - before.getHitCount(), is(1L));
+    }
+
+    /** ブックのキャッシュに空きがない場合、ブックが読み込まれないこと。 */
+    @Test
+    public void testPreloadWithoutFreeWeight() throws Exception {
+        File book = copyBook();
+        PreloaderForTest target = new PreloaderForTest(book, false);
+        WeightedLruCache.Statistics before = PoiXlsReader.getBookCacheStatistics();
+        target.beforeTestSuite();
+        // バックグラウンドのスレッドで、キャッシュの空きが確認されるのを待つ
+        assertThat(target.checked.await(10, TimeUnit.SECONDS), is(true));
+        WeightedLruCache.Statistics after = PoiXlsReader.getBookCacheStatistics();
+        assertThat(after.getLoadCount(), is(before.getLoadCount()));
+        assertThat(after.getMissCount(), is(before.getMissCount()));
+    }
+
+    /**
+     * キャッシュされていないブックを用意する。
+     *
+     * @return ブック
+     * @throws IOException 予期しない例外
+     */
+    private File copyBook() throws IOException {
+        File book = new File(folder.getRoot(), "TestDataPreloaderTest.xls");
+        InputStream in = new FileInputStream("src/test/java/nablarch/test/core/reader/BasicTestDataParserTest.xls");
+        try {
+            OutputStream out = new FileOutputStream(book);
+            try {
+                byte[] buf = new byte[8192];
+                for (int n; (n = in.read(buf)) != -1;) {
+                    out.write(buf, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        return book;
+    }
+
+    /** 指定したブックのみを読み込み対象とする{@link TestDataPreloader}。 */
+    private static class PreloaderForTest extends TestDataPreloader {
+
+        /** 読み込み対象のブック */
+        private final File book;
+
+        /** キャッシュに空きがあるか否か */
+        private final boolean freeWeight;
+
+        /** キャッシュの空きが確認されたことを通知するラッチ */
+        private final CountDownLatch checked = new CountDownLatch(1);
+
+        PreloaderForTest(File book, boolean freeWeight) {
+            this.book = book;
+            this.freeWeight = freeWeight;
+            setThreadCount(1);
+        }
+
+        @Override
+        List<File> findBooks() {
+            return Collections.singletonList(book);
+        }
+
+        @Override
+        boolean hasFreeWeight() {
+            checked.countDown();
+            return freeWeight;
+        }
+    }
+}
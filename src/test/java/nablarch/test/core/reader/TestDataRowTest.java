@@ -0,0 +1,48 @@
+package nablarch.test.core.reader;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * {@link TestDataRow}のテストクラス。
+ */
+public class TestDataRowTest {
+
+    /** 配列の内容をリストとして参照できること。 */
+    @Test
+    public void testList() {
+        TestDataRow target = new TestDataRow(new String[] {"a", null, "c"});
+        assertThat(target.size(), is(3));
+        assertThat(target.get(0), is("a"));
+        assertThat(target.get(1), is(nullValue()));
+        assertThat(target, is(Arrays.asList("a", null, "c")));
+        assertThat(target.hashCode(), is(Arrays.asList("a", null, "c").hashCode()));
+    }
+
+    /** 書き換えができないこと。 */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiable() {
+        new TestDataRow(new String[] {"a"}).set(0, "b");
+    }
+
+    /** 書き換えができないこと(追加)。 */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiableAdd() {
+        new TestDataRow(new String[] {"a"}).add("b");
+    }
+
+    /** 同じ値の文字列は同一インスタンスに置き換えられること。 */
+    @Test
+    public void testStringPool() {
+        TestDataRow.StringPool pool = new TestDataRow.StringPool();
+        String first = new String("null");
+        String second = new String("null");
+        assertThat(pool.intern(first), is(sameInstance(first)));
+        assertThat(pool.intern(second), is(sameInstance(first)));
+        assertThat(pool.intern(null), is(nullValue()));
+    }
+}
@@ -0,0 +1,114 @@
+package nablarch.test.core.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nablarch.test.core.util.interpreter.InterpretationContext;
+import nablarch.test.core.util.interpreter.InterpreterChain;
+import nablarch.test.core.util.interpreter.TestDataInterpreter;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * {@link TestDataSheet}のテストクラス。
+ */
+public class TestDataSheetTest {
+
+    @SuppressWarnings("unchecked")
+    private final TestDataSheet target = new TestDataSheet(Arrays.<List<String>>asList(
+            Arrays.asList("LIST_MAP=first"),          // 0
+            Arrays.asList("col1", "col2"),            // 1
+            Arrays.asList("a", "b"),                  // 2
+            Arrays.asList("SETUP_TABLE=TABLE1"),      // 3
+            Arrays.asList("PK"),                      // 4
+            Arrays.asList("SETUP_TABLE[g1]=TABLE1"),  // 5
+            Arrays.asList("PK"),                      // 6
+            Arrays.asList("SETUP_TABLE=TABLE2"),      // 7
+            Arrays.asList("LIST_MAP=second"),         // 8
+            Arrays.asList("LIST_MAP=first")           // 9
+    ));
+
+    /** 各行のデータ型が取得できること。 */
+    @Test
+    public void testGetDataType() {
+        assertThat(target.size(), is(10));
+        assertThat(target.getDataType(0), is(DataType.LIST_MAP));
+        assertThat(target.getDataType(1), is(DataType.DEFAULT));
+        assertThat(target.getDataType(5), is(DataType.SETUP_TABLE_DATA));
+        assertThat(target.getLine(2), is(Arrays.asList("a", "b")));
+    }
+
+    /** データ型とIDから最初の出現位置が取得できること。 */
+    @Test
+    public void testIndexOf() {
+        assertThat(target.indexOf(DataType.LIST_MAP, "first"), is(0));
+        assertThat(target.indexOf(DataType.LIST_MAP, "second"), is(8));
+        assertThat(target.indexOf(DataType.LIST_MAP, "third"), is(-1));
+        assertThat(target.indexOf(DataType.MESSAGE, "first"), is(-1));
+    }
+
+    /** 定義部から最初の出現位置が取得できること。 */
+    @Test
+    public void testIndexOfDirective() {
+        assertThat(target.indexOfDirective("SETUP_TABLE="), is(3));
+        assertThat(target.indexOfDirective("SETUP_TABLE[g1]="), is(5));
+        assertThat(target.indexOfDirective("SETUP_TABLE[g2]="), is(-1));
+        assertThat(target.indexOfDirective("EXPECTED_TABLE="), is(-1));
+    }
+
+    /** 行が最初に参照された時点で解釈され、その結果が保持されること。 */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLazyInterpretation() {
+        final List<String> interpreted = new ArrayList<String>();
+        InterpreterChain interpreters = new InterpreterChain(Arrays.<TestDataInterpreter>asList(
+                new TestDataInterpreter() {
+                    public String interpret(InterpretationContext context) {
+                        interpreted.add(context.getValue());
+                        return context.getValue().toUpperCase();
+                    }
+                }));
+        TestDataSheet sheet = new TestDataSheet(Arrays.<List<String>>asList(
+                Arrays.asList("LIST_MAP=first"),
+                Arrays.asList("a", "b"),
+                Arrays.asList("LIST_MAP=second"),
+                Arrays.asList("c", "d")
+        ), interpreters);
+
+        // 索引は解釈前の値で作成される
+        assertThat(sheet.indexOf(DataType.LIST_MAP, "second"), is(2));
+        assertThat(sheet.getDataType(3), is(DataType.DEFAULT));
+        assertThat(interpreted.isEmpty(), is(true));
+
+        assertThat(sheet.getLine(3), is(Arrays.asList("C", "D")));
+        assertThat(sheet.getLine(3), is(Arrays.asList("C", "D")));
+        // 参照した行のみ、一度だけ解釈される
+        assertThat(interpreted, is(Arrays.asList("c", "d")));
+    }
+
+    /** 解釈により行が大きくなった場合、推定バイト数に反映されること。 */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWeightGrowsByInterpretation() {
+        InterpreterChain interpreters = new InterpreterChain(Arrays.<TestDataInterpreter>asList(
+                new TestDataInterpreter() {
+                    public String interpret(InterpretationContext context) {
+                        return context.getValue() + context.getValue();
+                    }
+                }));
+        TestDataSheet sheet = new TestDataSheet(Arrays.<List<String>>asList(
+                Arrays.asList("LIST_MAP=first"),
+                Arrays.asList("abc", "de")
+        ), interpreters);
+
+        long before = sheet.estimateWeight();
+        sheet.getLine(1);
+        // 5文字（10バイト）増加する
+        assertThat(sheet.estimateWeight(), is(before + 10));
+        sheet.getLine(1);
+        assertThat(sheet.estimateWeight(), is(before + 10));
+    }
+}
@@ -0,0 +1,102 @@
+package nablarch.test.core.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * {@link TestDataTextConverter}のテストクラス。
+ */
+public class TestDataTextConverterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** ブックと同じディレクトリに、シートごとのファイルが出力されること。 */
+    @Test
+    public void testConvert() throws Exception {
+        File book = createBook(new File(folder.getRoot(), "FooTest.xls"));
+        File outputDir = new TestDataTextConverter().convert(book);
+
+        assertThat(outputDir, is(new File(folder.getRoot(), "FooTest")));
+        assertThat(new File(outputDir, "plain.tsv").isFile(), is(true));
+        // タブ、改行を含むシートはCSV形式で出力される
+        assertThat(new File(outputDir, "special.tsv").exists(), is(false));
+        assertThat(new File(outputDir, "special.csv").isFile(), is(true));
+
+        DelimitedTextReader reader = new DelimitedTextReader();
+        reader.open(folder.getRoot().getPath(), "FooTest/plain");
+        assertThat(reader.readLine(), is(Arrays.asList("LIST_MAP=data")));
+        assertThat(reader.readLine(), is(Arrays.asList("col1", "col2")));
+        assertThat(reader.readLine(), is(Arrays.asList("\"a\"", "b,c")));
+        assertThat(reader.readLine(), nullValue());
+        reader.close();
+
+        reader.open(folder.getRoot().getPath(), "FooTest/special");
+        assertThat(reader.readLine(), is(Arrays.asList("a\tb", "c\nd", "\"e\"")));
+        assertThat(reader.readLine(), nullValue());
+        reader.close();
+    }
+
+    /** ディレクトリ配下のブックが再帰的に探索されること。 */
+    @Test
+    public void testFindBooks() throws Exception {
+        File sub = folder.newFolder("sub");
+        File book1 = createBook(new File(folder.getRoot(), "ATest.xls"));
+        File book2 = createBook(new File(sub, "BTest.xlsx"));
+        new File(sub, "other.txt").createNewFile();
+
+        List<File> books = new TestDataTextConverter().findBooks(folder.getRoot());
+        assertThat(books, is(Arrays.asList(book1, book2)));
+    }
+
+    /** 必要な場合のみ、CSV形式の囲み文字で囲まれること。 */
+    @Test
+    public void testQuoteCsv() {
+        assertThat(TestDataTextConverter.quoteCsv("abc"), is("abc"));
+        assertThat(TestDataTextConverter.quoteCsv("a,b"), is("\"a,b\""));
+        assertThat(TestDataTextConverter.quoteCsv("\"a\""), is("\"\"\"a\"\"\""));
+        assertThat(TestDataTextConverter.quoteCsv("a\r\nb"), is("\"a\r\nb\""));
+    }
+
+    /** 拡張子がブックでない場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotBook() {
+        new TestDataTextConverter().convert(new File("foo.txt"));
+    }
+
+    private File createBook(File file) throws Exception {
+        Workbook book = new HSSFWorkbook();
+        Sheet plain = book.createSheet("plain");
+        setRow(plain.createRow(0), "LIST_MAP=data");
+        setRow(plain.createRow(1), "col1", "col2");
+        setRow(plain.createRow(3), "\"a\"", "b,c");
+        Sheet special = book.createSheet("special");
+        setRow(special.createRow(0), "a\tb", "c\nd", "\"e\"");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            book.write(out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private void setRow(Row row, String... values) {
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package nablarch.test.core.util;
+
+import nablarch.test.support.SystemRepositoryResource;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+
+/**
+ * {@link WeightedLruCache}のテストクラス。
+ */
+public class WeightedLruCacheTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("unit-test.xml");
+
+    /** 文字列長を重みとする */
+    private static final WeightedLruCache.Weigher<String> LENGTH = new WeightedLruCache.Weigher<String>() {
+        public long weigh(String value) {
+            return value.length();
+        }
+    };
+
+    /** 重みの合計が上限を超えた場合、最も長い間参照されていない要素から破棄されること。 */
+    @Test
+    public void testEviction() {
+        WeightedLruCache<String, String> target = new WeightedLruCache<String, String>("test", 10, LENGTH);
+        target.put("a", "aaaa");
+        target.put("b", "bbbb");
+        assertThat(target.get("a"), is("aaaa"));  // aを参照したので、bが最も古くなる
+        target.put("c", "cccc");
+
+        assertThat(target.containsKey("a"), is(true));
+        assertThat(target.containsKey("b"), is(false));
+        assertThat(target.containsKey("c"), is(true));
+
+        WeightedLruCache.Statistics stats = target.getStatistics();
+        assertThat(stats.getSize(), is(2));
+        assertThat(stats.getWeight(), is(8L));
+        assertThat(stats.getEvictionCount(), is(1L));
+        assertThat(stats.getHitCount(), is(1L));
+    }
+
+    /** 単独で上限を超える要素でも、直近に格納した要素は保持されること。 */
+    @Test
+    public void testOversizedEntry() {
+        WeightedLruCache<String, String> target = new WeightedLruCache<String, String>("test", 3, LENGTH);
+        target.put("a", "aa");
+        target.put("b", "bbbbbb");
+        assertThat(target.containsKey("a"), is(false));
+        assertThat(target.get("b"), is("bbbbbb"));
+    }
+
+    /** 同一キーで格納した場合、重みが置き換えられること。 */
+    @Test
+    public void testReplace() {
+        WeightedLruCache<String, String> target = new WeightedLruCache<String, String>("test", 10, LENGTH);
+        target.put("a", "aaaa");
+        target.put("a", "aa");
+        assertThat(target.getStatistics().getWeight(), is(2L));
+        target.clear();
+        assertThat(target.getStatistics().getWeight(), is(0L));
+        assertThat(target.containsKey("a"), is(false));
+    }
+
+    /** 格納後に値が大きくなった場合、重みを見積もり直すと上限を超えた要素が破棄されること。 */
+    @Test
+    public void testReweigh() {
+        WeightedLruCache.Weigher<StringBuilder> length = new WeightedLruCache.Weigher<StringBuilder>() {
+            public long weigh(StringBuilder value) {
+                return value.length();
+            }
+        };
+        WeightedLruCache<String, StringBuilder> target
+                = new WeightedLruCache<String, StringBuilder>("test", 10, length);
+        StringBuilder a = new StringBuilder("aaaa");
+        target.put("a", a);
+        target.put("b", new StringBuilder("bbbb"));
+        target.get("a");
+        a.append("aaaa");
+        assertThat(target.getStatistics().getWeight(), is(8L));
+
+        // 格納されている値と異なる場合は何もしない
+        target.reweigh("a", new StringBuilder("aaaaaaaa"));
+        target.reweigh("c", a);
+        assertThat(target.getStatistics().getWeight(), is(8L));
+
+        target.reweigh("a", a);
+        assertThat(target.containsKey("a"), is(true));
+        assertThat(target.containsKey("b"), is(false));
+        assertThat(target.getStatistics().getWeight(), is(8L));
+        assertThat(target.getStatistics().getEvictionCount(), is(1L));
+    }
+
+    /** キャッシュにない場合のみロードされ、ヒット、ミス、ロードが記録されること。 */
+    @Test
+    public void testLoad() {
+        WeightedLruCache<String, String> target = new WeightedLruCache<String, String>("test", 100, LENGTH);
+        final int[] count = {0};
+        WeightedLruCache.Loader<String, String> loader = new WeightedLruCache.Loader<String, String>() {
+            public String load(String key) {
+                count[0]++;
+                return key + key;
+            }
+        };
+        assertThat(target.get("x", loader), is("xx"));
+        assertThat(target.get("x", loader), is("xx"));
+        assertThat(count[0], is(1));
+
+        WeightedLruCache.Statistics stats = target.getStatistics();
+        assertThat(stats.getMissCount(), is(1L));
+        assertThat(stats.getHitCount(), is(1L));
+        assertThat(stats.getLoadCount(), is(1L));
+        assertThat(stats.getTotalLoadTime() >= 0, is(true));
+        assertThat(stats.toString(), containsString("test size=[1] weight=[2/100]"));
+    }
+
+    /** リポジトリに設定された上限が使用されること。 */
+    @Test
+    public void testFromRepository() {
+        repositoryResource.addComponent("test.max-weight", "5");
+        assertThat(WeightedLruCache.<String, String>fromRepository("test", "test.max-weight", 100, LENGTH)
+                                   .getStatistics().getMaxWeight(), is(5L));
+        assertThat(WeightedLruCache.<String, String>fromRepository("test", "no.such.key", 100, LENGTH)
+                                   .getStatistics().getMaxWeight(), is(100L));
+    }
+
+    /** 上限が0以下の場合、例外が発生すること。 */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxWeight() {
+        new WeightedLruCache<String, String>("test", 0, LENGTH);
+    }
+}
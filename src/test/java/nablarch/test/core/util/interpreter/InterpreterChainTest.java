@@ -0,0 +1,110 @@
+package nablarch.test.core.util.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nablarch.test.FixedSystemTimeProvider;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * {@link InterpreterChain}のテストクラス。
+ */
+public class InterpreterChainTest {
+
+    /**
+     * 標準的な構成の解釈クラスを生成する。
+     *
+     * @return 解釈クラス
+     */
+    static List<TestDataInterpreter> createDefaultInterpreters() {
+        FixedSystemTimeProvider timeProvider = new FixedSystemTimeProvider();
+        timeProvider.setFixedDate("20100914123456");
+        DateTimeInterpreter dateTime = new DateTimeInterpreter();
+        dateTime.setSystemTimeProvider(timeProvider);
+        CompositeInterpreter composite = new CompositeInterpreter();
+        composite.setInterpreters(Arrays.<TestDataInterpreter>asList(new BasicJapaneseCharacterInterpreter()));
+        return Arrays.asList(
+                new BinaryFileInterpreter("src/test/java/nablarch/test/core/util/interpreter/"),
+                new NullInterpreter(),
+                new QuotationTrimmer(),
+                dateTime,
+                new LineSeparatorInterpreter(),
+                composite);
+    }
+
+    /** 全ての解釈クラスを順に起動した場合と同じ結果になること。 */
+    @Test
+    public void testSameResultAsInterpretationContext() {
+        List<TestDataInterpreter> interpreters = createDefaultInterpreters();
+        InterpreterChain target = new InterpreterChain(interpreters);
+        for (String value : Arrays.asList(
+                "abc", "", "123", "null", "NULL", "\"null\"", "\"abc\"", "”abc”", "\"abc",
+                "${systemTime}", "a\\rb", "\"a\\rb\"", "${binaryFile:testdata.txt}",
+                "${半角数字,4}-${半角数字,4}", "x${半角英字,3}")) {
+            String expected = new InterpretationContext(value, interpreters).invokeNext();
+            String actual = target.interpret(value);
+            if (value.contains("${半角")) {
+                // ランダム生成のため長さのみ比較
+                assertThat(value, actual.length(), is(expected.length()));
+            } else {
+                assertThat(value, actual, is(expected));
+            }
+        }
+    }
+
+    /** リテラル値の場合、解釈クラスが起動されないこと。 */
+    @Test
+    public void testSkipLiteral() {
+        final List<String> invoked = new ArrayList<String>();
+        InterpreterChain target = new InterpreterChain(Arrays.<TestDataInterpreter>asList(
+                new ConditionalInterpreter() {
+                    public boolean isApplicable(String value) {
+                        return value.startsWith("#");
+                    }
+                    public String interpret(InterpretationContext context) {
+                        invoked.add("first");
+                        context.setValue(context.getValue().substring(1));
+                        return context.invokeNext();
+                    }
+                },
+                new ConditionalInterpreter() {
+                    public boolean isApplicable(String value) {
+                        return value.endsWith("!");
+                    }
+                    public String interpret(InterpretationContext context) {
+                        invoked.add("second");
+                        return context.getValue().toUpperCase();
+                    }
+                }));
+
+        assertThat(target.interpret("abc"), is("abc"));
+        assertThat(invoked.isEmpty(), is(true));
+
+        // 2番目のみ対象
+        assertThat(target.interpret("abc!"), is("ABC!"));
+        assertThat(invoked, is(Arrays.asList("second")));
+
+        // 先頭から起動し、後続にも委譲される
+        invoked.clear();
+        assertThat(target.interpret("#abc!"), is("ABC!"));
+        assertThat(invoked, is(Arrays.asList("first", "second")));
+    }
+
+    /** {@link ConditionalInterpreter}を実装しない解釈クラスは常に起動されること。 */
+    @Test
+    public void testNotConditional() {
+        InterpreterChain target = new InterpreterChain(Arrays.<TestDataInterpreter>asList(
+                new NullInterpreter(),
+                new TestDataInterpreter() {
+                    public String interpret(InterpretationContext context) {
+                        return "[" + context.getValue() + "]";
+                    }
+                }));
+        assertThat(target.interpret("abc"), is("[abc]"));
+        assertThat(target.interpret("null"), is(nullValue()));
+    }
+}